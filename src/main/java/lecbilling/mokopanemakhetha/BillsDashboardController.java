@@ -1,5 +1,6 @@
 package lecbilling.mokopanemakhetha;
 
+import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -8,11 +9,17 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 import lecbilling.mokopanemakhetha.model.BillingCalculation;
+import lecbilling.mokopanemakhetha.model.CustomerSortKey;
+import lecbilling.mokopanemakhetha.model.Money;
 import lecbilling.mokopanemakhetha.service.BillingService;
 import lecbilling.mokopanemakhetha.service.CustomerService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class BillsDashboardController {
     private static final Logger logger = LoggerFactory.getLogger(BillsDashboardController.class);
 
@@ -34,6 +41,10 @@ public class BillsDashboardController {
     private final CustomerService customerService = CustomerService.getInstance();
     private final BillingService billingService = BillingService.getInstance();
     private Customer selectedCustomer;
+    private PagedCustomerList pagedCustomers;
+
+    // Bills set on this screen in paged mode, where rows are reloaded as they scroll by
+    private final Map<String, Long> sessionBillCents = new HashMap<>();
     private User currentUser;
 
     public void setCurrentUser(User user) {
@@ -50,12 +61,26 @@ public class BillsDashboardController {
             fxCurrentUsageColumn.setCellValueFactory(new PropertyValueFactory<>("electricityUsage"));
             fxCurrentBillColumn.setCellValueFactory(new PropertyValueFactory<>("billAmount"));
 
-            fxCustomerTable.setItems(customerService.getAllCustomers());
-            logger.info("Bills dashboard table initialized with {} customers", fxCustomerTable.getItems().size());
+            if (PagedCustomerList.isWorthPaging(customerService)) {
+                pagedCustomers = new PagedCustomerList();
+                pagedCustomers.bindTo(fxCustomerTable, Map.of(
+                        fxCustomerIdColumn, CustomerSortKey.CUSTOMER_ID,
+                        fxNameColumn, CustomerSortKey.NAME));
+            } else {
+                SortedList<Customer> sortedCustomers = new SortedList<>(customerService.getAllCustomers());
+                sortedCustomers.comparatorProperty().bind(fxCustomerTable.comparatorProperty());
+                fxCustomerTable.setItems(sortedCustomers);
+            }
+            if (pagedCustomers != null) {
+                logger.info("Bills dashboard table initialized in paged mode");
+            } else {
+                logger.info("Bills dashboard table initialized with {} customers", fxCustomerTable.getItems().size());
+            }
 
             fxCustomerTable.getSelectionModel().selectedItemProperty().addListener(
                     (observable, oldValue, newValue) -> handleCustomerSelection(newValue)
             );
+            shutdownOnHidden();
         } catch (Exception e) {
             logger.error("Error initializing bills dashboard table", e);
             PrintUtil.showAlert("Error", "Failed to load customers: " + e.getMessage(), Alert.AlertType.ERROR);
@@ -77,12 +102,21 @@ public class BillsDashboardController {
 
     private void updateStats() {
         try {
-            double totalRevenue = customerService.getAllCustomers().stream()
-                    .mapToDouble(Customer::getBillAmount)
-                    .sum();
-            int billedCustomers = (int) customerService.getAllCustomers().stream()
-                    .filter(c -> c.getBillAmount() > 0)
-                    .count();
+            long totalRevenueCents;
+            int billedCustomers;
+            if (pagedCustomers != null) {
+                totalRevenueCents = sessionBillCents.values().stream().mapToLong(Long::longValue).sum();
+                billedCustomers = (int) sessionBillCents.values().stream().filter(c -> c > 0).count();
+            } else {
+                List<Customer> customers = customerService.getAllCustomers();
+                totalRevenueCents = customers.stream()
+                        .mapToLong(c -> Money.toCents(c.getBillAmount()))
+                        .sum();
+                billedCustomers = (int) customers.stream()
+                        .filter(c -> c.getBillAmount() > 0)
+                        .count();
+            }
+            double totalRevenue = Money.toAmount(totalRevenueCents);
 
             fxTotalBillsLabel.setText(String.valueOf(billedCustomers));
             fxTotalRevenueLabel.setText(String.format("M%.2f", totalRevenue));
@@ -141,6 +175,7 @@ public class BillsDashboardController {
                                 selectedCustomer.getName(), newUsage, calc.getTotalAmount(), calc.getBreakdown()),
                         javafx.scene.control.Alert.AlertType.INFORMATION);
 
+                sessionBillCents.put(selectedCustomer.getCustomerId(), Money.toCents(calc.getTotalAmount()));
                 fxCustomerTable.refresh();
                 updateStats();
             } else {
@@ -196,6 +231,27 @@ public class BillsDashboardController {
         }
     }
 
+    /**
+     * Stop the page loading thread when the window goes away, whether through the Back
+     * button or the window's close button. The table is not in a window yet when
+     * setCurrentUser runs, so the handler is attached once it is.
+     */
+    private void shutdownOnHidden() {
+        fxCustomerTable.sceneProperty().addListener((observable, oldScene, scene) -> {
+            if (scene != null) {
+                scene.windowProperty().addListener((windowObservable, oldWindow, window) -> {
+                    if (window != null) {
+                        window.setOnHidden(event -> {
+                            if (pagedCustomers != null) {
+                                pagedCustomers.shutdown();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
     @FXML
     private void handleBack() {
         try {
@@ -1,48 +1,261 @@
-package lecbilling.mokopanemakhetha;
-
-import javafx.beans.property.*;
-
-public class Customer {
-    private final StringProperty customerId;
-    private final StringProperty name;
-    private final StringProperty address;
-    private final StringProperty meterNumber;
-    private final DoubleProperty electricityUsage;
-    private final DoubleProperty billAmount;
-
-    public Customer(String customerId, String name, String address, String meterNumber) {
-        this.customerId = new SimpleStringProperty(customerId);
-        this.name = new SimpleStringProperty(name);
-        this.address = new SimpleStringProperty(address);
-        this.meterNumber = new SimpleStringProperty(meterNumber);
-        this.electricityUsage = new SimpleDoubleProperty(0.0);
-        this.billAmount = new SimpleDoubleProperty(0.0);
-    }
-
-    // Property getters
-    public StringProperty customerIdProperty() { return customerId; }
-    public StringProperty nameProperty() { return name; }
-    public StringProperty addressProperty() { return address; }
-    public StringProperty meterNumberProperty() { return meterNumber; }
-    public DoubleProperty electricityUsageProperty() { return electricityUsage; }
-    public DoubleProperty billAmountProperty() { return billAmount; }
-
-    // Getters and Setters
-    public String getCustomerId() { return customerId.get(); }
-    public void setCustomerId(String customerId) { this.customerId.set(customerId); }
-
-    public String getName() { return name.get(); }
-    public void setName(String name) { this.name.set(name); }
-
-    public String getAddress() { return address.get(); }
-    public void setAddress(String address) { this.address.set(address); }
-
-    public String getMeterNumber() { return meterNumber.get(); }
-    public void setMeterNumber(String meterNumber) { this.meterNumber.set(meterNumber); }
-
-    public double getElectricityUsage() { return electricityUsage.get(); }
-    public void setElectricityUsage(double electricityUsage) { this.electricityUsage.set(electricityUsage); }
-
-    public double getBillAmount() { return billAmount.get(); }
-    public void setBillAmount(double billAmount) { this.billAmount.set(billAmount); }
-}
\ No newline at end of file
+package lecbilling.mokopanemakhetha;
+
+import javafx.beans.property.*;
+
+/**
+ * A customer row. Values live either in a CustomerStore row or, for a standalone customer,
+ * in a small holder of their own. JavaFX properties are only created when something asks
+ * for one, typically a table cell showing the row, and then write through to the values.
+ */
+public class Customer {
+    // Set while the values live in a store row; volatile so a reader that sees it cleared
+    // also sees the values copied out by detach()
+    private volatile CustomerStore store;
+    private int row;
+
+    // Values of a standalone or detached customer
+    private Values values;
+
+    // Created on the first xxxProperty() call
+    private Properties properties;
+
+    private static final class Values {
+        String customerId;
+        String name;
+        String address;
+        String meterNumber;
+        double electricityUsage;
+        double billAmount;
+    }
+
+    private static final class Properties {
+        StringProperty customerId;
+        StringProperty name;
+        StringProperty address;
+        StringProperty meterNumber;
+        DoubleProperty electricityUsage;
+        DoubleProperty billAmount;
+    }
+
+    public Customer(String customerId, String name, String address, String meterNumber) {
+        values = new Values();
+        values.customerId = customerId;
+        values.name = name;
+        values.address = address;
+        values.meterNumber = meterNumber;
+    }
+
+    /**
+     * View over a store row; created by CustomerStore
+     */
+    Customer(CustomerStore store, int row) {
+        this.store = store;
+        this.row = row;
+    }
+
+    int getRow() {
+        return row;
+    }
+
+    boolean isStoredIn(CustomerStore store) {
+        return this.store == store;
+    }
+
+    /**
+     * Copy the values out of the store so the row can be reused; called by CustomerStore
+     */
+    void detach() {
+        Values copy = new Values();
+        copy.customerId = getCustomerId();
+        copy.name = getName();
+        copy.address = getAddress();
+        copy.meterNumber = getMeterNumber();
+        copy.electricityUsage = getElectricityUsage();
+        copy.billAmount = getBillAmount();
+        values = copy;
+        store = null;
+    }
+
+    private Properties properties() {
+        if (properties == null) {
+            properties = new Properties();
+        }
+        return properties;
+    }
+
+    // Property getters
+    public StringProperty customerIdProperty() {
+        Properties p = properties();
+        if (p.customerId == null) {
+            p.customerId = new SimpleStringProperty(this, "customerId", getCustomerId());
+            p.customerId.addListener((obs, oldValue, newValue) -> storeCustomerId(newValue));
+        }
+        return p.customerId;
+    }
+
+    public StringProperty nameProperty() {
+        Properties p = properties();
+        if (p.name == null) {
+            p.name = new SimpleStringProperty(this, "name", getName());
+            p.name.addListener((obs, oldValue, newValue) -> storeName(newValue));
+        }
+        return p.name;
+    }
+
+    public StringProperty addressProperty() {
+        Properties p = properties();
+        if (p.address == null) {
+            p.address = new SimpleStringProperty(this, "address", getAddress());
+            p.address.addListener((obs, oldValue, newValue) -> storeAddress(newValue));
+        }
+        return p.address;
+    }
+
+    public StringProperty meterNumberProperty() {
+        Properties p = properties();
+        if (p.meterNumber == null) {
+            p.meterNumber = new SimpleStringProperty(this, "meterNumber", getMeterNumber());
+            p.meterNumber.addListener((obs, oldValue, newValue) -> storeMeterNumber(newValue));
+        }
+        return p.meterNumber;
+    }
+
+    public DoubleProperty electricityUsageProperty() {
+        Properties p = properties();
+        if (p.electricityUsage == null) {
+            p.electricityUsage = new SimpleDoubleProperty(this, "electricityUsage", getElectricityUsage());
+            p.electricityUsage.addListener((obs, oldValue, newValue) -> storeElectricityUsage(newValue.doubleValue()));
+        }
+        return p.electricityUsage;
+    }
+
+    public DoubleProperty billAmountProperty() {
+        Properties p = properties();
+        if (p.billAmount == null) {
+            p.billAmount = new SimpleDoubleProperty(this, "billAmount", getBillAmount());
+            p.billAmount.addListener((obs, oldValue, newValue) -> storeBillAmount(newValue.doubleValue()));
+        }
+        return p.billAmount;
+    }
+
+    // Getters and Setters
+    public String getCustomerId() {
+        CustomerStore s = store;
+        return s != null ? s.getCustomerId(this) : values.customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        if (properties != null && properties.customerId != null) {
+            properties.customerId.set(customerId);
+        } else {
+            storeCustomerId(customerId);
+        }
+    }
+
+    public String getName() {
+        CustomerStore s = store;
+        return s != null ? s.getName(this) : values.name;
+    }
+
+    public void setName(String name) {
+        if (properties != null && properties.name != null) {
+            properties.name.set(name);
+        } else {
+            storeName(name);
+        }
+    }
+
+    public String getAddress() {
+        CustomerStore s = store;
+        return s != null ? s.getAddress(this) : values.address;
+    }
+
+    public void setAddress(String address) {
+        if (properties != null && properties.address != null) {
+            properties.address.set(address);
+        } else {
+            storeAddress(address);
+        }
+    }
+
+    public String getMeterNumber() {
+        CustomerStore s = store;
+        return s != null ? s.getMeterNumber(this) : values.meterNumber;
+    }
+
+    public void setMeterNumber(String meterNumber) {
+        if (properties != null && properties.meterNumber != null) {
+            properties.meterNumber.set(meterNumber);
+        } else {
+            storeMeterNumber(meterNumber);
+        }
+    }
+
+    public double getElectricityUsage() {
+        CustomerStore s = store;
+        return s != null ? s.getElectricityUsage(this) : values.electricityUsage;
+    }
+
+    public void setElectricityUsage(double electricityUsage) {
+        if (properties != null && properties.electricityUsage != null) {
+            properties.electricityUsage.set(electricityUsage);
+        } else {
+            storeElectricityUsage(electricityUsage);
+        }
+    }
+
+    public double getBillAmount() {
+        CustomerStore s = store;
+        return s != null ? s.getBillAmount(this) : values.billAmount;
+    }
+
+    public void setBillAmount(double billAmount) {
+        if (properties != null && properties.billAmount != null) {
+            properties.billAmount.set(billAmount);
+        } else {
+            storeBillAmount(billAmount);
+        }
+    }
+
+    private void storeCustomerId(String value) {
+        CustomerStore s = store;
+        if (s == null || !s.setCustomerId(this, value)) {
+            values.customerId = value;
+        }
+    }
+
+    private void storeName(String value) {
+        CustomerStore s = store;
+        if (s == null || !s.setName(this, value)) {
+            values.name = value;
+        }
+    }
+
+    private void storeAddress(String value) {
+        CustomerStore s = store;
+        if (s == null || !s.setAddress(this, value)) {
+            values.address = value;
+        }
+    }
+
+    private void storeMeterNumber(String value) {
+        CustomerStore s = store;
+        if (s == null || !s.setMeterNumber(this, value)) {
+            values.meterNumber = value;
+        }
+    }
+
+    private void storeElectricityUsage(double value) {
+        CustomerStore s = store;
+        if (s == null || !s.setElectricityUsage(this, value)) {
+            values.electricityUsage = value;
+        }
+    }
+
+    private void storeBillAmount(double value) {
+        CustomerStore s = store;
+        if (s == null || !s.setBillAmount(this, value)) {
+            values.billAmount = value;
+        }
+    }
+}
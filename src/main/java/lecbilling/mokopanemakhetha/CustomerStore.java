@@ -0,0 +1,221 @@
+package lecbilling.mokopanemakhetha;
+
+import lecbilling.mokopanemakhetha.util.IntArrayList;
+import lecbilling.mokopanemakhetha.util.StringDictionary;
+
+import java.util.Arrays;
+
+/**
+ * Column-oriented storage for many customers. Names and addresses are dictionary
+ * encoded, customer_id and meter_number (unique per customer) are plain string columns,
+ * and usage and bill amount are primitive double columns. Each row is exposed as a
+ * Customer view that holds only the store and its row number; JavaFX properties are
+ * created only for rows that are bound to a cell.
+ *
+ * Rows are recycled after release(), which first copies the values into the released
+ * Customer so references held elsewhere stay valid. Access is synchronized: rows are
+ * written on the JavaFX thread but read by background search and sort threads too.
+ */
+public class CustomerStore {
+    private static final int INITIAL_ROWS = 1024;
+
+    private final StringDictionary names = new StringDictionary(INITIAL_ROWS);
+    private final StringDictionary addresses = new StringDictionary(INITIAL_ROWS / 4);
+
+    private String[] customerIds = new String[INITIAL_ROWS];
+    private String[] meterNumbers = new String[INITIAL_ROWS];
+    private int[] nameCodes = new int[INITIAL_ROWS];
+    private int[] addressCodes = new int[INITIAL_ROWS];
+    private double[] electricityUsage = new double[INITIAL_ROWS];
+    private double[] billAmounts = new double[INITIAL_ROWS];
+
+    private int nextRow;
+    private int liveRows;
+    private final IntArrayList freeRows = new IntArrayList();
+
+    /**
+     * Add a customer and return its row view
+     */
+    public synchronized Customer create(String customerId, String name, String address, String meterNumber) {
+        int row = freeRows.isEmpty() ? nextRow++ : freeRows.removeLast();
+        if (row >= customerIds.length) {
+            grow();
+        }
+        customerIds[row] = customerId;
+        meterNumbers[row] = meterNumber;
+        nameCodes[row] = names.acquire(name);
+        addressCodes[row] = addresses.acquire(address);
+        electricityUsage[row] = 0.0;
+        billAmounts[row] = 0.0;
+        liveRows++;
+        return new Customer(this, row);
+    }
+
+    /**
+     * Free a customer's row. The Customer keeps working as a standalone copy.
+     */
+    public synchronized void release(Customer customer) {
+        if (!customer.isStoredIn(this)) {
+            return;
+        }
+        int row = customer.getRow();
+        customer.detach();
+        names.release(nameCodes[row]);
+        addresses.release(addressCodes[row]);
+        customerIds[row] = null;
+        meterNumbers[row] = null;
+        nameCodes[row] = StringDictionary.NULL_CODE;
+        addressCodes[row] = StringDictionary.NULL_CODE;
+        freeRows.add(row);
+        liveRows--;
+    }
+
+    private void grow() {
+        int capacity = customerIds.length * 2;
+        customerIds = Arrays.copyOf(customerIds, capacity);
+        meterNumbers = Arrays.copyOf(meterNumbers, capacity);
+        nameCodes = Arrays.copyOf(nameCodes, capacity);
+        addressCodes = Arrays.copyOf(addressCodes, capacity);
+        electricityUsage = Arrays.copyOf(electricityUsage, capacity);
+        billAmounts = Arrays.copyOf(billAmounts, capacity);
+    }
+
+    // Row accessors take the Customer and check, under the lock, that it still owns its
+    // row: a view released by another thread reads its detached copy instead, and a setter
+    // returns false so the caller writes the copy.
+
+    synchronized String getCustomerId(Customer customer) {
+        if (!customer.isStoredIn(this)) {
+            return customer.getCustomerId();
+        }
+        int row = customer.getRow();
+        return customerIds[row];
+    }
+
+    synchronized boolean setCustomerId(Customer customer, String value) {
+        if (!customer.isStoredIn(this)) {
+            return false;
+        }
+        int row = customer.getRow();
+        customerIds[row] = value;
+        return true;
+    }
+
+    synchronized String getName(Customer customer) {
+        if (!customer.isStoredIn(this)) {
+            return customer.getName();
+        }
+        int row = customer.getRow();
+        return names.get(nameCodes[row]);
+    }
+
+    synchronized boolean setName(Customer customer, String value) {
+        if (!customer.isStoredIn(this)) {
+            return false;
+        }
+        int row = customer.getRow();
+        int code = names.acquire(value);
+        names.release(nameCodes[row]);
+        nameCodes[row] = code;
+        return true;
+    }
+
+    synchronized String getAddress(Customer customer) {
+        if (!customer.isStoredIn(this)) {
+            return customer.getAddress();
+        }
+        int row = customer.getRow();
+        return addresses.get(addressCodes[row]);
+    }
+
+    synchronized boolean setAddress(Customer customer, String value) {
+        if (!customer.isStoredIn(this)) {
+            return false;
+        }
+        int row = customer.getRow();
+        int code = addresses.acquire(value);
+        addresses.release(addressCodes[row]);
+        addressCodes[row] = code;
+        return true;
+    }
+
+    synchronized String getMeterNumber(Customer customer) {
+        if (!customer.isStoredIn(this)) {
+            return customer.getMeterNumber();
+        }
+        int row = customer.getRow();
+        return meterNumbers[row];
+    }
+
+    synchronized boolean setMeterNumber(Customer customer, String value) {
+        if (!customer.isStoredIn(this)) {
+            return false;
+        }
+        int row = customer.getRow();
+        meterNumbers[row] = value;
+        return true;
+    }
+
+    synchronized double getElectricityUsage(Customer customer) {
+        if (!customer.isStoredIn(this)) {
+            return customer.getElectricityUsage();
+        }
+        int row = customer.getRow();
+        return electricityUsage[row];
+    }
+
+    synchronized boolean setElectricityUsage(Customer customer, double value) {
+        if (!customer.isStoredIn(this)) {
+            return false;
+        }
+        int row = customer.getRow();
+        electricityUsage[row] = value;
+        return true;
+    }
+
+    synchronized double getBillAmount(Customer customer) {
+        if (!customer.isStoredIn(this)) {
+            return customer.getBillAmount();
+        }
+        int row = customer.getRow();
+        return billAmounts[row];
+    }
+
+    synchronized boolean setBillAmount(Customer customer, double value) {
+        if (!customer.isStoredIn(this)) {
+            return false;
+        }
+        int row = customer.getRow();
+        billAmounts[row] = value;
+        return true;
+    }
+
+    public synchronized int size() {
+        return liveRows;
+    }
+
+    /**
+     * Approximate heap held by the columns and dictionaries. Customer views (about 24
+     * bytes each) and any properties created for visible rows are not included.
+     */
+    public synchronized long estimateBytes() {
+        long bytes = 6 * 16L + (long) customerIds.length * (4 + 4 + 4 + 4 + 8 + 8);
+        for (int row = 0; row < nextRow; row++) {
+            if (customerIds[row] != null) {
+                bytes += 40 + customerIds[row].length();
+            }
+            if (meterNumbers[row] != null) {
+                bytes += 40 + meterNumbers[row].length();
+            }
+        }
+        return bytes + names.estimateBytes() + addresses.estimateBytes();
+    }
+
+    /**
+     * Get store statistics
+     */
+    public synchronized String getStats() {
+        return String.format("Customer store: %d customers, %d distinct names, %d distinct addresses, ~%d KB",
+                liveRows, names.size(), addresses.size(), estimateBytes() / 1024);
+    }
+}
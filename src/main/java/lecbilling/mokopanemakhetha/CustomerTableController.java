@@ -1,7 +1,8 @@
 package lecbilling.mokopanemakhetha;
 
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -9,10 +10,15 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import lecbilling.mokopanemakhetha.model.CustomerSortKey;
 import lecbilling.mokopanemakhetha.service.CustomerService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Map;
+
 public class CustomerTableController {
     private static final Logger logger = LoggerFactory.getLogger(CustomerTableController.class);
 
@@ -31,6 +37,12 @@ public class CustomerTableController {
     @FXML private Button fxCalculateBillButton;
 
     private final CustomerService customerService = CustomerService.getInstance();
+    // Only one of these is used: the live search needs the whole customer cache in memory
+    private LiveCustomerSearch liveSearch;
+    private final PauseTransition filterDebounce = new PauseTransition(Duration.millis(300));
+    private PagedCustomerList pagedCustomers;
+    // This table's sorted view of the shared customer list
+    private SortedList<Customer> sortedCustomers;
     private User currentUser;
 
     public void setCurrentUser(User user) {
@@ -48,10 +60,28 @@ public class CustomerTableController {
             fxUsageColumn.setCellValueFactory(new PropertyValueFactory<>("electricityUsage"));
             fxBillColumn.setCellValueFactory(new PropertyValueFactory<>("billAmount"));
 
-            fxCustomerTable.setItems(customerService.getAllCustomers());
-            logger.info("Customer table initialized with {} customers", fxCustomerTable.getItems().size());
+            if (PagedCustomerList.isWorthPaging(customerService)) {
+                pagedCustomers = new PagedCustomerList();
+                pagedCustomers.bindTo(fxCustomerTable, Map.of(
+                        fxCustomerIdColumn, CustomerSortKey.CUSTOMER_ID,
+                        fxNameColumn, CustomerSortKey.NAME,
+                        fxAddressColumn, CustomerSortKey.ADDRESS,
+                        fxMeterNumberColumn, CustomerSortKey.METER_NUMBER));
+                filterDebounce.setOnFinished(event -> pagedCustomers.setFilter(fxSearchField.getText()));
+            } else {
+                liveSearch = new LiveCustomerSearch(this::showSearchResults);
+                sortedCustomers = new SortedList<>(customerService.getAllCustomers());
+                sortedCustomers.comparatorProperty().bind(fxCustomerTable.comparatorProperty());
+                fxCustomerTable.setItems(sortedCustomers);
+            }
+            if (pagedCustomers != null) {
+                logger.info("Customer table initialized in paged mode");
+            } else {
+                logger.info("Customer table initialized with {} customers", fxCustomerTable.getItems().size());
+            }
 
             fxSearchField.textProperty().addListener((observable, oldValue, newValue) -> handleSearch());
+            shutdownOnHidden();
         } catch (Exception e) {
             logger.error("Error initializing customer table", e);
             PrintUtil.showAlert("Error", "Failed to load customers: " + e.getMessage(), Alert.AlertType.ERROR);
@@ -169,21 +199,55 @@ public class CustomerTableController {
     private void handleSearch() {
         try {
             String searchTerm = fxSearchField.getText();
-            if (searchTerm.isEmpty()) {
-                fxCustomerTable.setItems(customerService.getAllCustomers());
+            if (pagedCustomers != null) {
+                // Large customer bases filter in SQL rather than the in-memory index
+                filterDebounce.playFromStart();
+            } else if (searchTerm.isBlank()) {
+                liveSearch.cancel();
+                // Pull pending changes into the shared list; the sorted view follows it
+                customerService.getAllCustomers();
+                fxCustomerTable.setItems(sortedCustomers);
             } else {
-                ObservableList<Customer> searchResults = FXCollections.observableArrayList(
-                    customerService.searchCustomers(searchTerm)
-                );
-                fxCustomerTable.setItems(searchResults);
+                liveSearch.termChanged(searchTerm);
             }
-            logger.debug("Search performed with term: {}", searchTerm);
         } catch (Exception e) {
             logger.error("Error searching customers", e);
             PrintUtil.showAlert("Error", "Failed to search customers: " + e.getMessage(), Alert.AlertType.ERROR);
         }
     }
 
+    private void showSearchResults(List<Customer> results) {
+        fxCustomerTable.setItems(FXCollections.observableArrayList(results));
+        logger.debug("Showing {} customers for search: {}", results.size(), fxSearchField.getText());
+    }
+
+    /**
+     * Stop the search and page loading threads when the window goes away, whether through
+     * the Back button or the window's close button. The table is not in a window yet when
+     * setCurrentUser runs, so the handler is attached once it is.
+     */
+    private void shutdownOnHidden() {
+        fxCustomerTable.sceneProperty().addListener((observable, oldScene, scene) -> {
+            if (scene != null) {
+                scene.windowProperty().addListener((windowObservable, oldWindow, window) -> {
+                    if (window != null) {
+                        window.setOnHidden(event -> shutdownBackgroundWork());
+                    }
+                });
+            }
+        });
+    }
+
+    private void shutdownBackgroundWork() {
+        filterDebounce.stop();
+        if (liveSearch != null) {
+            liveSearch.shutdown();
+        }
+        if (pagedCustomers != null) {
+            pagedCustomers.shutdown();
+        }
+    }
+
     @FXML
     private void handleBack() {
         try {
@@ -197,7 +261,13 @@ public class CustomerTableController {
 
     public void refreshTable() {
         try {
-            fxCustomerTable.setItems(customerService.getAllCustomers());
+            if (pagedCustomers != null) {
+                pagedCustomers.reset();
+            } else {
+                // Pull pending changes into the shared list; the sorted view follows it
+                customerService.getAllCustomers();
+                fxCustomerTable.setItems(sortedCustomers);
+            }
             fxCustomerTable.refresh();
             logger.debug("Customer table refreshed");
         } catch (Exception e) {
@@ -4,6 +4,10 @@ import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.service.BillWriteQueue;
+import lecbilling.mokopanemakhetha.service.MeterStateTable;
+import lecbilling.mokopanemakhetha.service.OverdueScheduler;
 
 import java.io.IOException;
 
@@ -15,6 +19,16 @@ public class HelloApplication extends Application {
         stage.setTitle("LEC Billing - Login");
         stage.setScene(scene);
         stage.show();
+
+        // Starts the background overdue sweep
+        OverdueScheduler.getInstance();
+    }
+
+    @Override
+    public void stop() {
+        BillWriteQueue.shutdownIfStarted(10_000);
+        MeterStateTable.snapshotIfLoaded();
+        DatabaseConfig.closePool();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,163 @@
+package lecbilling.mokopanemakhetha;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+import lecbilling.mokopanemakhetha.service.CustomerCache;
+import lecbilling.mokopanemakhetha.service.CustomerSearchIndex;
+import lecbilling.mokopanemakhetha.service.CustomerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Search-as-you-type for a customer search box.
+ * Keystrokes are debounced and searches run on a background thread; a newer term
+ * interrupts the search in flight and only the latest term's results are delivered.
+ * Recent results are kept in a small LRU cache, and a term that extends the previous one
+ * is answered by narrowing the previous results in place. Every method, and the results
+ * callback, runs on the JavaFX thread.
+ */
+public class LiveCustomerSearch {
+    private static final Logger logger = LoggerFactory.getLogger(LiveCustomerSearch.class);
+
+    private static final Duration DEBOUNCE = Duration.millis(250);
+    private static final int CACHED_TERMS = 64;
+
+    // Terms shorter than this only match prefixes, so their results cannot be narrowed
+    private static final int MIN_REFINE_LENGTH = 3;
+
+    /**
+     * Results for one term, valid while the customer list is at the same version
+     */
+    private static final class CachedResult {
+        final long version;
+        final List<Customer> customers;
+
+        CachedResult(long version, List<Customer> customers) {
+            this.version = version;
+            this.customers = customers;
+        }
+    }
+
+    private final CustomerService customerService = CustomerService.getInstance();
+    private final CustomerCache customerCache = CustomerCache.getInstance();
+    private final Consumer<List<Customer>> onResults;
+    private final PauseTransition debounce = new PauseTransition(DEBOUNCE);
+    private final ExecutorService searchExecutor;
+
+    private final Map<String, CachedResult> recent = new LinkedHashMap<>(CACHED_TERMS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            return size() > CACHED_TERMS;
+        }
+    };
+
+    private long generation;
+    private String pendingTerm = "";
+    private String lastTerm;
+    private CachedResult lastResult;
+    private Future<?> inFlight;
+
+    /**
+     * @param onResults receives the results of the latest term on the JavaFX thread
+     */
+    public LiveCustomerSearch(Consumer<List<Customer>> onResults) {
+        this.onResults = onResults;
+        this.searchExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "customer-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        debounce.setOnFinished(event -> start(pendingTerm, generation));
+    }
+
+    /**
+     * The search box changed; searches once typing pauses
+     */
+    public void termChanged(String term) {
+        generation++;
+        pendingTerm = CustomerSearchIndex.normalizeTerm(term);
+        cancelInFlight();
+        debounce.playFromStart();
+    }
+
+    /**
+     * Drop any pending or running search, e.g. when the box is cleared
+     */
+    public void cancel() {
+        generation++;
+        debounce.stop();
+        cancelInFlight();
+    }
+
+    public void shutdown() {
+        cancel();
+        searchExecutor.shutdownNow();
+    }
+
+    private void cancelInFlight() {
+        if (inFlight != null) {
+            inFlight.cancel(true);
+            inFlight = null;
+        }
+    }
+
+    private void start(String term, long startedGeneration) {
+        if (term.isEmpty()) {
+            return;
+        }
+        long version = customerCache.getVersion();
+
+        CachedResult cached = recent.get(term);
+        if (cached != null && cached.version == version) {
+            deliver(term, cached);
+            return;
+        }
+
+        if (lastResult != null && lastResult.version == version && lastTerm.length() >= MIN_REFINE_LENGTH
+                && term.startsWith(lastTerm) && lastResult.customers.size() < CustomerService.SEARCH_RESULT_LIMIT) {
+            // Every match for the longer term is among the complete matches for the shorter one
+            List<Customer> narrowed = CustomerSearchIndex.rank(lastResult.customers, term,
+                    CustomerService.SEARCH_RESULT_LIMIT);
+            deliver(term, remember(term, version, narrowed));
+            return;
+        }
+
+        inFlight = searchExecutor.submit(() -> {
+            List<Customer> customers = customerService.searchCustomers(term);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            Platform.runLater(() -> {
+                if (startedGeneration == generation) {
+                    inFlight = null;
+                    deliver(term, remember(term, version, customers));
+                }
+            });
+        });
+    }
+
+    private CachedResult remember(String term, long version, List<Customer> customers) {
+        CachedResult result = new CachedResult(version, customers);
+        recent.put(term, result);
+        return result;
+    }
+
+    private void deliver(String term, CachedResult result) {
+        lastTerm = term;
+        lastResult = result;
+        try {
+            onResults.accept(result.customers);
+        } catch (RuntimeException e) {
+            logger.error("Error showing search results for: {}", term, e);
+        }
+    }
+}
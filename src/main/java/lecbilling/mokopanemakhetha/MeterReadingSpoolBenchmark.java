@@ -0,0 +1,134 @@
+package lecbilling.mokopanemakhetha;
+
+import lecbilling.mokopanemakhetha.service.MeterReadingCsv;
+import lecbilling.mokopanemakhetha.service.MeterReadingSpool;
+import lecbilling.mokopanemakhetha.service.MeterReadingSpoolWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Compares scanning meter readings from CSV against the binary spool.
+ * Usage: MeterReadingSpoolBenchmark [readings] (default 2,000,000). Needs no database.
+ */
+public class MeterReadingSpoolBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int readings = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Path dir = Files.createTempDirectory("meter-spool-bench");
+        Path csv = dir.resolve("readings.csv");
+        Path spool = dir.resolve("readings.spool");
+
+        System.out.println("Meter reading spool benchmark, " + readings + " readings");
+        System.out.println("=============================================");
+        writeCsv(csv, readings);
+
+        long started = System.nanoTime();
+        MeterReadingSpoolWriter.convertCsv(csv, spool);
+        report("CSV to spool conversion", readings, System.nanoTime() - started);
+        System.out.printf("File sizes: CSV %d KB, spool %d KB%n", Files.size(csv) / 1024, Files.size(spool) / 1024);
+
+        try (MeterReadingSpool reader = MeterReadingSpool.open(spool)) {
+            started = System.nanoTime();
+            boolean valid = reader.verifyChecksum();
+            report("Spool checksum (" + (valid ? "ok" : "MISMATCH") + ")", readings, System.nanoTime() - started);
+
+            for (int round = 1; round <= ROUNDS; round++) {
+                System.out.println("\nRound " + round);
+                long sum;
+
+                started = System.nanoTime();
+                sum = scanCsv(csv);
+                report("CSV parse", readings, System.nanoTime() - started, sum);
+
+                started = System.nanoTime();
+                sum = scanSpool(reader);
+                report("Spool sequential scan", readings, System.nanoTime() - started, sum);
+
+                started = System.nanoTime();
+                sum = scanSpoolWithMeterNumbers(reader);
+                report("Spool scan with meter strings", readings, System.nanoTime() - started, sum);
+
+                started = System.nanoTime();
+                sum = randomAccess(reader, readings);
+                report("Spool random access", readings, System.nanoTime() - started, sum);
+            }
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(spool);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void writeCsv(Path csv, int readings) throws IOException {
+        Random random = new Random(42);
+        LocalDate readingDate = LocalDate.of(2025, 1, 31);
+        try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            out.write(MeterReadingCsv.HEADER);
+            out.newLine();
+            for (int i = 0; i < readings; i++) {
+                out.write(String.format("MTR%08d,%d.%02d,%s,", i, random.nextInt(100_000), random.nextInt(100),
+                        readingDate.minusDays(random.nextInt(5))));
+                out.newLine();
+            }
+        }
+    }
+
+    private static long scanCsv(Path csv) throws IOException {
+        MeterReadingCsv.Row row = new MeterReadingCsv.Row();
+        long sum = 0;
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            while ((line = in.readLine()) != null) {
+                if (MeterReadingCsv.parse(line, row)) {
+                    sum += row.readingCentiKwh + row.readingDate.toEpochDay() + row.meterNumber.length();
+                }
+            }
+        }
+        return sum;
+    }
+
+    private static long scanSpool(MeterReadingSpool reader) {
+        MeterReadingSpool.Cursor cursor = reader.cursor();
+        long sum = 0;
+        while (cursor.next()) {
+            sum += cursor.readingCentiKwh() + cursor.readingDay() + cursor.meterNumberLength();
+        }
+        return sum;
+    }
+
+    private static long scanSpoolWithMeterNumbers(MeterReadingSpool reader) {
+        MeterReadingSpool.Cursor cursor = reader.cursor();
+        long sum = 0;
+        while (cursor.next()) {
+            sum += cursor.readingCentiKwh() + cursor.readingDate().toEpochDay() + cursor.meterNumber().length();
+        }
+        return sum;
+    }
+
+    private static long randomAccess(MeterReadingSpool reader, int lookups) {
+        Random random = new Random(7);
+        long sum = 0;
+        for (int i = 0; i < lookups; i++) {
+            long index = random.nextInt((int) reader.size());
+            sum += reader.readingCentiKwh(index) + reader.readingDay(index);
+        }
+        return sum;
+    }
+
+    private static void report(String name, int readings, long nanos) {
+        System.out.printf("%-32s %8.1f ms  %,14.0f readings/s%n", name, nanos / 1e6, readings * 1e9 / nanos);
+    }
+
+    private static void report(String name, int readings, long nanos, long checksum) {
+        System.out.printf("%-32s %8.1f ms  %,14.0f readings/s  (checksum %d)%n",
+                name, nanos / 1e6, readings * 1e9 / nanos, checksum);
+    }
+}
@@ -0,0 +1,264 @@
+package lecbilling.mokopanemakhetha;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import lecbilling.mokopanemakhetha.model.CustomerSortKey;
+import lecbilling.mokopanemakhetha.service.CustomerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Read-only customer list for a TableView that loads rows from the database as they are
+ * shown. Only the row count is known up front; pages are fetched on first access and
+ * the least recently used ones are dropped beyond a fixed window, so memory stays flat
+ * however many customers there are. Ordering and filtering are done by SQL.
+ *
+ * The count and every page are read on a background thread. A row whose page is not
+ * loaded yet reads as null (an empty table row) and is replaced once the page arrives.
+ * A page is read with a keyset condition after the last row of the page before it when
+ * that row is known, which covers scrolling; jumping far ahead falls back to an OFFSET
+ * query once. The page after each page that was shown is prefetched.
+ * Must only be used from the JavaFX thread.
+ */
+public class PagedCustomerList extends ObservableListBase<Customer> {
+    private static final Logger logger = LoggerFactory.getLogger(PagedCustomerList.class);
+
+    // Tables switch to paged loading above this many active customers
+    public static final int PAGED_THRESHOLD = 20_000;
+
+    private static final int PAGE_SIZE = 200;
+    private static final int RESIDENT_PAGES = 10;
+
+    // A filter matching at most this many customers has its matches sorted rather than
+    // found by walking the sort order
+    private static final int FEW_MATCHES = 10_000;
+
+    private final CustomerService customerService = CustomerService.getInstance();
+    private final ExecutorService loadExecutor;
+
+    private final Map<Integer, List<Customer>> pages = new LinkedHashMap<>(RESIDENT_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Customer>> eldest) {
+            return size() > RESIDENT_PAGES;
+        }
+    };
+
+    // {sort value, customer_id} of the last row of each page seen, kept after the page is dropped
+    private final Map<Integer, String[]> lastKeys = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+
+    private CustomerSortKey sortKey = CustomerSortKey.NAME;
+    private boolean ascending = true;
+    private String filter;
+    private int size;
+    private long generation;
+
+    public PagedCustomerList() {
+        loadExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "customer-page-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Whether the active customer base is large enough to page rather than load it whole.
+     * Counts at most PAGED_THRESHOLD + 1 rows.
+     */
+    public static boolean isWorthPaging(CustomerService customerService) {
+        return customerService.hasMoreCustomersThan(PAGED_THRESHOLD);
+    }
+
+    /**
+     * Show this list in a table, push its column sorting down to SQL and start loading.
+     * Columns without a sort key (values held only in memory) cannot be sorted.
+     */
+    public void bindTo(TableView<Customer> table, Map<TableColumn<Customer, ?>, CustomerSortKey> sortKeys) {
+        for (TableColumn<Customer, ?> column : table.getColumns()) {
+            column.setSortable(sortKeys.containsKey(column));
+        }
+        table.setItems(this);
+        table.setSortPolicy(t -> {
+            CustomerSortKey key = CustomerSortKey.NAME;
+            boolean asc = true;
+            if (!t.getSortOrder().isEmpty()) {
+                TableColumn<Customer, ?> column = t.getSortOrder().get(0);
+                key = sortKeys.getOrDefault(column, CustomerSortKey.NAME);
+                asc = column.getSortType() == TableColumn.SortType.ASCENDING;
+            }
+            if (key != sortKey || asc != ascending) {
+                sortBy(key, asc);
+            }
+            return true;
+        });
+        reset();
+    }
+
+    @Override
+    public Customer get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        int page = index / PAGE_SIZE;
+        List<Customer> rows = pages.get(page);
+        if (rows == null) {
+            request(page, true);
+            return null;
+        }
+        int offset = index % PAGE_SIZE;
+        // Rows deleted since the count was taken leave the tail of the list empty
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Change the order; the list is reloaded from the first page
+     */
+    public void sortBy(CustomerSortKey sortKey, boolean ascending) {
+        this.sortKey = sortKey;
+        this.ascending = ascending;
+        reset();
+    }
+
+    /**
+     * Show only customers whose name, customer_id, meter number or address contains the term
+     */
+    public void setFilter(String filter) {
+        this.filter = filter == null || filter.isBlank() ? null : filter;
+        reset();
+    }
+
+    /**
+     * Drop every loaded page and recount, e.g. after customers were edited. The list is
+     * empty until the new count arrives.
+     */
+    public void reset() {
+        long startedGeneration = ++generation;
+        pages.clear();
+        lastKeys.clear();
+        loading.clear();
+        resize(0);
+
+        String where = filter;
+        loadExecutor.submit(() -> {
+            int count = customerService.countCustomers(where);
+            Platform.runLater(() -> {
+                if (startedGeneration == generation) {
+                    resize(count);
+                    logger.debug("Paged customer list reset: {} customers by {} {}",
+                            count, sortKey, ascending ? "asc" : "desc");
+                }
+            });
+        });
+    }
+
+    private void resize(int newSize) {
+        int oldSize = size;
+        if (oldSize == 0 && newSize == 0) {
+            return;
+        }
+        size = newSize;
+        beginChange();
+        if (oldSize > 0) {
+            nextRemove(0, Collections.nCopies(oldSize, (Customer) null));
+        }
+        if (newSize > 0) {
+            nextAdd(0, newSize);
+        }
+        endChange();
+    }
+
+    public void shutdown() {
+        loadExecutor.shutdownNow();
+    }
+
+    private List<Customer> fetch(CustomerSortKey key, boolean asc, String where, int page, String[] after,
+                                 boolean fewMatches) {
+        if (after != null) {
+            return customerService.getCustomersPage(key, asc, where, after[0], after[1], 0, PAGE_SIZE, fewMatches);
+        }
+        return customerService.getCustomersPage(key, asc, where, null, null, page * PAGE_SIZE, PAGE_SIZE,
+                fewMatches);
+    }
+
+    private void store(int page, List<Customer> rows) {
+        pages.put(page, rows);
+        if (!rows.isEmpty()) {
+            Customer last = rows.get(rows.size() - 1);
+            lastKeys.put(page, new String[]{sortValue(last), last.getCustomerId()});
+        }
+    }
+
+    /**
+     * Load a page in the background. When the page arrives its rows are reported as
+     * replaced so the table redraws them; a page that was shown also prefetches the next
+     * one, so scrolling into it does not wait on the database.
+     */
+    private void request(int page, boolean prefetchNext) {
+        if ((long) page * PAGE_SIZE >= size || pages.containsKey(page) || !loading.add(page)) {
+            return;
+        }
+        String[] after = page == 0 ? null : lastKeys.get(page - 1);
+        long startedGeneration = generation;
+        CustomerSortKey key = sortKey;
+        boolean asc = ascending;
+        String where = filter;
+        boolean fewMatches = size <= FEW_MATCHES;
+        loadExecutor.submit(() -> {
+            List<Customer> rows = fetch(key, asc, where, page, after, fewMatches);
+            Platform.runLater(() -> {
+                if (startedGeneration != generation) {
+                    return;
+                }
+                loading.remove(page);
+                store(page, rows);
+                int from = page * PAGE_SIZE;
+                int to = Math.min(size, from + PAGE_SIZE);
+                beginChange();
+                for (int i = from; i < to; i++) {
+                    nextSet(i, null);
+                }
+                endChange();
+                if (prefetchNext) {
+                    request(page + 1, false);
+                }
+            });
+        });
+    }
+
+    private String sortValue(Customer customer) {
+        switch (sortKey) {
+            case CUSTOMER_ID:
+                return customer.getCustomerId();
+            case ADDRESS:
+                return customer.getAddress();
+            case METER_NUMBER:
+                return customer.getMeterNumber();
+            default:
+                return customer.getName();
+        }
+    }
+
+    /**
+     * Number of pages currently held in memory
+     */
+    public int getResidentPages() {
+        return pages.size();
+    }
+}
@@ -1,24 +1,31 @@
 package lecbilling.mokopanemakhetha.config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
 
 /**
  * Database configuration for PostgreSQL (Supabase).
- * Simple connection management without HikariCP to avoid compatibility issues.
+ * Connections are served from a HikariCP pool that is created on first use.
  */
 public class DatabaseConfig {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConfig.class);
+    private static final String POOL_NAME = "lec-billing-pool";
+
     private static String jdbcUrl;
     private static String username;
     private static String password;
+    private static Properties poolProperties;
+    private static volatile HikariDataSource dataSource;
+    private static final PoolMetricsTracker metricsTracker = new PoolMetricsTracker();
 
     static {
         try {
@@ -31,6 +38,7 @@ public class DatabaseConfig {
 
     private static void initializeConfiguration() {
         Properties props = loadDatabaseProperties();
+        poolProperties = props;
 
         // Check for DATABASE_URL environment variable (Supabase, Railway, etc.)
         String databaseUrl = System.getenv("DATABASE_URL");
@@ -92,36 +100,86 @@ public class DatabaseConfig {
     }
 
     /**
-     * Get a database connection
+     * Build the pool configuration from database.properties (db.pool.* keys)
      */
-    public static Connection getConnection() throws SQLException {
-        if (jdbcUrl == null) {
-            throw new SQLException("Database is not configured");
+    private static HikariConfig buildPoolConfig() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(POOL_NAME);
+        config.setDriverClassName("org.postgresql.Driver");
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(username);
+        config.setPassword(password);
+
+        config.setMaximumPoolSize(intProperty("db.pool.maximumPoolSize", 10));
+        config.setMinimumIdle(intProperty("db.pool.minimumIdle", 2));
+        config.setConnectionTimeout(longProperty("db.pool.connectionTimeout", 30_000));
+        config.setIdleTimeout(longProperty("db.pool.idleTimeout", 600_000));
+        config.setMaxLifetime(longProperty("db.pool.maxLifetime", 1_800_000));
+        config.setKeepaliveTime(longProperty("db.pool.keepaliveTime", 300_000));
+        config.setLeakDetectionThreshold(longProperty("db.pool.leakDetectionThreshold", 0));
+        // Do not fail application start-up if the database is briefly unreachable
+        config.setInitializationFailTimeout(-1);
+        config.setMetricsTrackerFactory(metricsTracker);
+        config.setRegisterMbeans(false);
+        // Let the driver rewrite JDBC batches of inserts into multi-row statements
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+
+        // Disable prepared statements for Supabase transaction mode pooler (port 6543)
+        // Transaction mode doesn't support prepared statements
+        if (jdbcUrl.contains(":6543/")) {
+            config.addDataSourceProperty("prepareThreshold", "0");
+            logger.debug("Disabled prepared statements for transaction mode pooler");
         }
 
+        return config;
+    }
+
+    private static int intProperty(String key, int defaultValue) {
+        return (int) longProperty(key, defaultValue);
+    }
+
+    private static long longProperty(String key, long defaultValue) {
+        String value = System.getenv(key.toUpperCase().replace('.', '_'));
+        if (value == null || value.isEmpty()) {
+            value = poolProperties.getProperty(key);
+        }
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
         try {
-            // Load PostgreSQL driver
-            Class.forName("org.postgresql.Driver");
-
-            // Create connection properties
-            Properties connectionProps = new Properties();
-            connectionProps.setProperty("user", username);
-            connectionProps.setProperty("password", password);
-
-            // Disable prepared statements for Supabase transaction mode pooler (port 6543)
-            // Transaction mode doesn't support prepared statements
-            if (jdbcUrl.contains(":6543/")) {
-                connectionProps.setProperty("prepareThreshold", "0");
-                logger.debug("Disabled prepared statements for transaction mode pooler");
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value '{}' for {}, using default {}", value, key, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static HikariDataSource getDataSource() throws SQLException {
+        HikariDataSource ds = dataSource;
+        if (ds == null) {
+            synchronized (DatabaseConfig.class) {
+                ds = dataSource;
+                if (ds == null) {
+                    if (jdbcUrl == null) {
+                        throw new SQLException("Database is not configured");
+                    }
+                    ds = new HikariDataSource(buildPoolConfig());
+                    dataSource = ds;
+                    logger.info("Connection pool started: max={} minIdle={}",
+                            ds.getMaximumPoolSize(), ds.getMinimumIdle());
+                }
             }
+        }
+        return ds;
+    }
 
-            // Create connection with properties
-            Connection conn = DriverManager.getConnection(jdbcUrl, connectionProps);
-            logger.debug("Database connection established");
-            return conn;
-        } catch (ClassNotFoundException e) {
-            logger.error("PostgreSQL driver not found", e);
-            throw new SQLException("PostgreSQL driver not found", e);
+    /**
+     * Get a database connection from the pool.
+     * Closing the returned connection hands it back to the pool.
+     */
+    public static Connection getConnection() throws SQLException {
+        try {
+            return getDataSource().getConnection();
         } catch (SQLException e) {
             logger.error("Failed to connect to database: {}", e.getMessage());
             throw e;
@@ -129,17 +187,59 @@ public class DatabaseConfig {
     }
 
     /**
-     * Close a connection (no-op for simple connections, kept for compatibility)
+     * Close the connection pool and release all physical connections
      */
     public static void closePool() {
-        logger.info("Connection pool not used (simple connection mode)");
+        HikariDataSource ds;
+        synchronized (DatabaseConfig.class) {
+            ds = dataSource;
+            dataSource = null;
+        }
+        if (ds != null && !ds.isClosed()) {
+            logger.info("Closing connection pool. {}", getPoolStats(ds));
+            ds.close();
+        } else {
+            logger.info("Connection pool not started");
+        }
     }
 
     /**
-     * Get connection statistics (simplified version)
+     * Get connection pool statistics
      */
     public static String getPoolStats() {
-        return String.format("Simple connection mode - URL: %s, User: %s", jdbcUrl, username);
+        HikariDataSource ds = dataSource;
+        if (ds == null || ds.isClosed()) {
+            return String.format("Connection pool not started - URL: %s, User: %s", jdbcUrl, username);
+        }
+        return getPoolStats(ds);
+    }
+
+    private static String getPoolStats(HikariDataSource ds) {
+        HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+        int active = pool != null ? pool.getActiveConnections() : 0;
+        int idle = pool != null ? pool.getIdleConnections() : 0;
+        int total = pool != null ? pool.getTotalConnections() : 0;
+        int waiting = pool != null ? pool.getThreadsAwaitingConnection() : 0;
+
+        return String.format(
+            "Pool %s - active: %d, idle: %d, total: %d/%d, waiting: %d%n" +
+            "Acquires: %d (avg %.3f ms), timeouts: %d%n" +
+            "Acquire latency: [%s]%n" +
+            "Connections created: %d (%.2f/min, avg %.1f ms to open)",
+            POOL_NAME, active, idle, total, ds.getMaximumPoolSize(), waiting,
+            metricsTracker.getAcquireCount(), metricsTracker.getAverageAcquireMillis(),
+            metricsTracker.getConnectionTimeouts(),
+            metricsTracker.getAcquireHistogram(),
+            metricsTracker.getConnectionsCreated(), metricsTracker.getConnectionCreationRatePerMinute(),
+            metricsTracker.getAverageCreationMillis()
+        );
+    }
+
+    /**
+     * Get the live metrics collected from the pool
+     */
+    public static PoolMetricsTracker getPoolMetrics() {
+        return metricsTracker;
     }
 
     /**
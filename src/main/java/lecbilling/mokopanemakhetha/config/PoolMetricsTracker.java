@@ -0,0 +1,119 @@
+package lecbilling.mokopanemakhetha.config;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects connection pool metrics reported by HikariCP.
+ * Keeps a fixed-bucket acquire-latency histogram and connection creation counters
+ * without any per-event allocation.
+ */
+public class PoolMetricsTracker implements IMetricsTracker, MetricsTrackerFactory {
+
+    // Upper bounds (in microseconds) of the acquire-latency buckets; the last bucket is open-ended
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+        100, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000
+    };
+
+    private final AtomicLongArray acquireBuckets = new AtomicLongArray(BUCKET_BOUNDS_MICROS.length + 1);
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireTotalNanos = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder creationTotalMillis = new LongAdder();
+    private final LongAdder connectionTimeouts = new LongAdder();
+    private final long startedAtNanos = System.nanoTime();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedAcquiredNanos);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+            bucket++;
+        }
+        acquireBuckets.incrementAndGet(bucket);
+        acquireCount.increment();
+        acquireTotalNanos.add(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        connectionsCreated.increment();
+        creationTotalMillis.add(connectionCreatedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        connectionTimeouts.increment();
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    public double getAverageAcquireMillis() {
+        long count = acquireCount.sum();
+        return count == 0 ? 0.0 : acquireTotalNanos.sum() / (count * 1_000_000.0);
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated.sum();
+    }
+
+    public long getConnectionTimeouts() {
+        return connectionTimeouts.sum();
+    }
+
+    /**
+     * Average number of physical connections opened per minute since the pool started
+     */
+    public double getConnectionCreationRatePerMinute() {
+        double minutes = (System.nanoTime() - startedAtNanos) / 60_000_000_000.0;
+        return minutes <= 0 ? 0.0 : connectionsCreated.sum() / minutes;
+    }
+
+    public double getAverageCreationMillis() {
+        long created = connectionsCreated.sum();
+        return created == 0 ? 0.0 : (double) creationTotalMillis.sum() / created;
+    }
+
+    /**
+     * Get the acquire-latency histogram as a printable string
+     */
+    public String getAcquireHistogram() {
+        StringBuilder sb = new StringBuilder();
+        long lower = 0;
+        for (int i = 0; i < acquireBuckets.length(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            if (i < BUCKET_BOUNDS_MICROS.length) {
+                sb.append(formatMicros(lower)).append('-').append(formatMicros(BUCKET_BOUNDS_MICROS[i]));
+                lower = BUCKET_BOUNDS_MICROS[i];
+            } else {
+                sb.append('>').append(formatMicros(lower));
+            }
+            sb.append(": ").append(acquireBuckets.get(i));
+        }
+        return sb.toString();
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros >= 1_000_000) {
+            return (micros / 1_000_000) + "s";
+        }
+        if (micros >= 1_000) {
+            return (micros / 1_000) + "ms";
+        }
+        return micros + "us";
+    }
+}
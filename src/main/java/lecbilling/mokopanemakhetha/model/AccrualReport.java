@@ -0,0 +1,105 @@
+package lecbilling.mokopanemakhetha.model;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Row counts and throughput for one penalty and interest accrual run.
+ * Updated concurrently by chunk workers.
+ */
+public class AccrualReport {
+    private final LocalDate accrualDate;
+    private final int totalChunks;
+    private final AtomicInteger completedChunks = new AtomicInteger();
+    private final AtomicInteger failedChunks = new AtomicInteger();
+    private final LongAdder billsScanned = new LongAdder();
+    private final LongAdder penaltiesWritten = new LongAdder();
+    private final LongAdder penaltyCents = new LongAdder();
+    private final LongAdder interestWritten = new LongAdder();
+    private final LongAdder interestCents = new LongAdder();
+    private final long startedAt = System.nanoTime();
+    private volatile long finishedAt;
+
+    public AccrualReport(LocalDate accrualDate, int totalChunks) {
+        this.accrualDate = accrualDate;
+        this.totalChunks = totalChunks;
+    }
+
+    public void chunkCompleted(long scanned, long penalties, long penaltyAmount, long interest, long interestAmount) {
+        completedChunks.incrementAndGet();
+        billsScanned.add(scanned);
+        penaltiesWritten.add(penalties);
+        penaltyCents.add(penaltyAmount);
+        interestWritten.add(interest);
+        interestCents.add(interestAmount);
+    }
+
+    public void chunkFailed() {
+        failedChunks.incrementAndGet();
+    }
+
+    public void finish() {
+        finishedAt = System.nanoTime();
+    }
+
+    public LocalDate getAccrualDate() {
+        return accrualDate;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public int getCompletedChunks() {
+        return completedChunks.get();
+    }
+
+    public int getFailedChunks() {
+        return failedChunks.get();
+    }
+
+    public long getBillsScanned() {
+        return billsScanned.sum();
+    }
+
+    public long getPenaltiesWritten() {
+        return penaltiesWritten.sum();
+    }
+
+    public long getPenaltyCents() {
+        return penaltyCents.sum();
+    }
+
+    public long getInterestWritten() {
+        return interestWritten.sum();
+    }
+
+    public long getInterestCents() {
+        return interestCents.sum();
+    }
+
+    public double getElapsedSeconds() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        return (end - startedAt) / 1_000_000_000.0;
+    }
+
+    /**
+     * Overdue bills processed per second
+     */
+    public double getThroughput() {
+        double seconds = getElapsedSeconds();
+        return seconds <= 0 ? 0.0 : billsScanned.sum() / seconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "AccrualReport{date=%s, chunks=%d/%d (failed %d), overdue bills=%d, penalties=%d (%s), " +
+            "interest=%d (%s), elapsed=%.2fs, throughput=%.0f bills/s}",
+            accrualDate, getCompletedChunks(), totalChunks, getFailedChunks(), getBillsScanned(),
+            getPenaltiesWritten(), Money.format(getPenaltyCents()),
+            getInterestWritten(), Money.format(getInterestCents()),
+            getElapsedSeconds(), getThroughput());
+    }
+}
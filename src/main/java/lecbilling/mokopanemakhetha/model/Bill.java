@@ -6,6 +6,7 @@ import java.time.LocalDate;
  * Model class representing a customer bill
  */
 public class Bill {
+    private int id;
     private String billNumber;
     private String customerId;
     private LocalDate periodStart;
@@ -13,7 +14,7 @@ public class Bill {
     private double previousReading;
     private double currentReading;
     private double usage;
-    private double amount;
+    private long amountCents;
     private String paymentStatus;
     private LocalDate dueDate;
     private LocalDate paymentDate;
@@ -28,12 +29,20 @@ public class Bill {
         this.periodStart = periodStart;
         this.periodEnd = periodEnd;
         this.usage = usage;
-        this.amount = amount;
+        this.amountCents = Money.toCents(amount);
         this.paymentStatus = paymentStatus;
         this.dueDate = dueDate;
     }
 
     // Getters and Setters
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public String getBillNumber() {
         return billNumber;
     }
@@ -91,11 +100,19 @@ public class Bill {
     }
 
     public double getAmount() {
-        return amount;
+        return Money.toAmount(amountCents);
     }
 
     public void setAmount(double amount) {
-        this.amount = amount;
+        this.amountCents = Money.toCents(amount);
+    }
+
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public void setAmountCents(long amountCents) {
+        this.amountCents = amountCents;
     }
 
     public String getPaymentStatus() {
@@ -126,14 +143,17 @@ public class Bill {
         return "PAID".equalsIgnoreCase(paymentStatus);
     }
 
+    /**
+     * Whether the bill has lapsed; the OVERDUE status is set by the overdue sweep
+     */
     public boolean isOverdue() {
-        return !isPaid() && dueDate != null && LocalDate.now().isAfter(dueDate);
+        return "OVERDUE".equalsIgnoreCase(paymentStatus);
     }
 
     @Override
     public String toString() {
-        return String.format("Bill{number='%s', customer='%s', period=%s to %s, usage=%.2f kWh, amount=M%.2f, status=%s}",
-                billNumber, customerId, periodStart, periodEnd, usage, amount, paymentStatus);
+        return String.format("Bill{number='%s', customer='%s', period=%s to %s, usage=%.2f kWh, amount=%s, status=%s}",
+                billNumber, customerId, periodStart, periodEnd, usage, Money.format(amountCents), paymentStatus);
     }
 }
 
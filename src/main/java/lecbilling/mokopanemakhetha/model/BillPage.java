@@ -0,0 +1,56 @@
+package lecbilling.mokopanemakhetha.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One page of a customer's bill history, newest first.
+ * The page remembers the (period start, bill id) of its last bill so the next page can
+ * continue from there with a keyset query instead of an OFFSET.
+ */
+public class BillPage {
+    private final String customerId;
+    private final List<Bill> bills;
+    private final int pageSize;
+    private final boolean hasMore;
+
+    public BillPage(String customerId, List<Bill> bills, int pageSize, boolean hasMore) {
+        this.customerId = customerId;
+        this.bills = bills;
+        this.pageSize = pageSize;
+        this.hasMore = hasMore;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public List<Bill> getBills() {
+        return bills;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Whether older bills exist beyond this page
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Period start of the last bill on the page, the first half of the next page's cursor
+     */
+    public LocalDate getLastPeriodStart() {
+        return bills.isEmpty() ? null : bills.get(bills.size() - 1).getPeriodStart();
+    }
+
+    /**
+     * Id of the last bill on the page, breaking ties between bills with the same period start
+     */
+    public int getLastBillId() {
+        return bills.isEmpty() ? 0 : bills.get(bills.size() - 1).getId();
+    }
+}
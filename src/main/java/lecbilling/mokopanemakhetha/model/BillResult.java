@@ -0,0 +1,65 @@
+package lecbilling.mokopanemakhetha.model;
+
+/**
+ * Model class for the outcome of creating one bill in a bulk billing run
+ */
+public class BillResult {
+    private final String customerId;
+    private final String billNumber;
+    private final boolean success;
+    private final String message;
+    private final boolean existing;
+
+    private BillResult(String customerId, String billNumber, boolean success, String message, boolean existing) {
+        this.customerId = customerId;
+        this.billNumber = billNumber;
+        this.success = success;
+        this.message = message;
+        this.existing = existing;
+    }
+
+    public static BillResult success(String customerId, String billNumber) {
+        return new BillResult(customerId, billNumber, true, null, false);
+    }
+
+    /**
+     * The customer was already billed for the period; billNumber is the existing bill
+     */
+    public static BillResult existing(String customerId, String billNumber) {
+        return new BillResult(customerId, billNumber, true, "Bill already exists for this period", true);
+    }
+
+    public static BillResult failure(String customerId, String message) {
+        return new BillResult(customerId, null, false, message, false);
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public String getBillNumber() {
+        return billNumber;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Whether the bill was created by an earlier attempt rather than this one
+     */
+    public boolean isExisting() {
+        return existing;
+    }
+
+    @Override
+    public String toString() {
+        return success
+                ? String.format("BillResult{customer='%s', bill='%s'%s}", customerId, billNumber, existing ? ", existing" : "")
+                : String.format("BillResult{customer='%s', failed: %s}", customerId, message);
+    }
+}
@@ -1,84 +1,160 @@
 package lecbilling.mokopanemakhetha.model;
 
 /**
- * Model class for billing calculation breakdown
+ * Model class for billing calculation breakdown.
+ * Usage is held in centi-kWh and amounts in cents; the double accessors are views
+ * for display and for callers that still work in Maloti.
  */
 public class BillingCalculation {
-    private double totalUsage;
-    private double tier1Usage;
-    private double tier2Usage;
-    private double tier3Usage;
-    private double tier1Amount;
-    private double tier2Amount;
-    private double tier3Amount;
-    private double totalAmount;
+    private long totalUsage;
+    private long tier1Usage;
+    private long tier2Usage;
+    private long tier3Usage;
+    private long tier1Amount;
+    private long tier2Amount;
+    private long tier3Amount;
+    private long totalAmount;
+    private TariffSchedule schedule;
 
     public BillingCalculation() {
     }
 
+    // Fixed-point getters and setters (centi-kWh and cents)
+    public long getTotalUsageCentiKwh() {
+        return totalUsage;
+    }
+
+    public void setTotalUsageCentiKwh(long totalUsage) {
+        this.totalUsage = totalUsage;
+    }
+
+    public long getTier1UsageCentiKwh() {
+        return tier1Usage;
+    }
+
+    public void setTier1UsageCentiKwh(long tier1Usage) {
+        this.tier1Usage = tier1Usage;
+    }
+
+    public long getTier2UsageCentiKwh() {
+        return tier2Usage;
+    }
+
+    public void setTier2UsageCentiKwh(long tier2Usage) {
+        this.tier2Usage = tier2Usage;
+    }
+
+    public long getTier3UsageCentiKwh() {
+        return tier3Usage;
+    }
+
+    public void setTier3UsageCentiKwh(long tier3Usage) {
+        this.tier3Usage = tier3Usage;
+    }
+
+    public long getTier1AmountCents() {
+        return tier1Amount;
+    }
+
+    public void setTier1AmountCents(long tier1Amount) {
+        this.tier1Amount = tier1Amount;
+    }
+
+    public long getTier2AmountCents() {
+        return tier2Amount;
+    }
+
+    public void setTier2AmountCents(long tier2Amount) {
+        this.tier2Amount = tier2Amount;
+    }
+
+    public long getTier3AmountCents() {
+        return tier3Amount;
+    }
+
+    public void setTier3AmountCents(long tier3Amount) {
+        this.tier3Amount = tier3Amount;
+    }
+
+    public long getTotalAmountCents() {
+        return totalAmount;
+    }
+
+    public void setTotalAmountCents(long totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
     // Getters and Setters
     public double getTotalUsage() {
-        return totalUsage;
+        return Money.toAmount(totalUsage);
     }
 
     public void setTotalUsage(double totalUsage) {
-        this.totalUsage = totalUsage;
+        this.totalUsage = Money.toCents(totalUsage);
     }
 
     public double getTier1Usage() {
-        return tier1Usage;
+        return Money.toAmount(tier1Usage);
     }
 
     public void setTier1Usage(double tier1Usage) {
-        this.tier1Usage = tier1Usage;
+        this.tier1Usage = Money.toCents(tier1Usage);
     }
 
     public double getTier2Usage() {
-        return tier2Usage;
+        return Money.toAmount(tier2Usage);
     }
 
     public void setTier2Usage(double tier2Usage) {
-        this.tier2Usage = tier2Usage;
+        this.tier2Usage = Money.toCents(tier2Usage);
     }
 
     public double getTier3Usage() {
-        return tier3Usage;
+        return Money.toAmount(tier3Usage);
     }
 
     public void setTier3Usage(double tier3Usage) {
-        this.tier3Usage = tier3Usage;
+        this.tier3Usage = Money.toCents(tier3Usage);
     }
 
     public double getTier1Amount() {
-        return tier1Amount;
+        return Money.toAmount(tier1Amount);
     }
 
     public void setTier1Amount(double tier1Amount) {
-        this.tier1Amount = tier1Amount;
+        this.tier1Amount = Money.toCents(tier1Amount);
     }
 
     public double getTier2Amount() {
-        return tier2Amount;
+        return Money.toAmount(tier2Amount);
     }
 
     public void setTier2Amount(double tier2Amount) {
-        this.tier2Amount = tier2Amount;
+        this.tier2Amount = Money.toCents(tier2Amount);
     }
 
     public double getTier3Amount() {
-        return tier3Amount;
+        return Money.toAmount(tier3Amount);
     }
 
     public void setTier3Amount(double tier3Amount) {
-        this.tier3Amount = tier3Amount;
+        this.tier3Amount = Money.toCents(tier3Amount);
     }
 
     public double getTotalAmount() {
-        return totalAmount;
+        return Money.toAmount(totalAmount);
     }
 
     public void setTotalAmount(double totalAmount) {
-        this.totalAmount = totalAmount;
+        this.totalAmount = Money.toCents(totalAmount);
+    }
+
+    public TariffSchedule getSchedule() {
+        return schedule;
+    }
+
+    public void setSchedule(TariffSchedule schedule) {
+        this.schedule = schedule;
     }
 
     /**
@@ -89,32 +165,26 @@ public class BillingCalculation {
         sb.append("Billing Calculation Breakdown:\n");
         sb.append("==============================\n");
         
-        if (tier1Usage > 0) {
-            sb.append(String.format("Tier 1 (0-100 kWh): %.2f kWh × M1.20 = M%.2f\n", 
-                    tier1Usage, tier1Amount));
-        }
-        
-        if (tier2Usage > 0) {
-            sb.append(String.format("Tier 2 (101-300 kWh): %.2f kWh × M1.50 = M%.2f\n", 
-                    tier2Usage, tier2Amount));
-        }
-        
-        if (tier3Usage > 0) {
-            sb.append(String.format("Tier 3 (Above 300 kWh): %.2f kWh × M2.00 = M%.2f\n", 
-                    tier3Usage, tier3Amount));
+        TariffSchedule tariff = schedule != null ? schedule : TariffSchedule.defaultSchedule();
+        for (int i = 0; i < tariff.getTierCount(); i++) {
+            long usage = tariff.tierUsage(totalUsage, i);
+            if (usage > 0) {
+                sb.append(String.format("Tier %d (%s): %.2f kWh × M%.2f = %s\n",
+                        i + 1, tariff.getTierLabel(i), Money.toAmount(usage), tariff.getRate(i),
+                        Money.format(tariff.tierAmountCents(totalUsage, i))));
+            }
         }
         
         sb.append("==============================\n");
-        sb.append(String.format("Total Usage: %.2f kWh\n", totalUsage));
-        sb.append(String.format("Total Amount: M%.2f\n", totalAmount));
+        sb.append(String.format("Total Usage: %.2f kWh\n", getTotalUsage()));
+        sb.append(String.format("Total Amount: %s\n", Money.format(totalAmount)));
         
         return sb.toString();
     }
 
     @Override
     public String toString() {
-        return String.format("BillingCalculation{usage=%.2f kWh, amount=M%.2f}", 
-                totalUsage, totalAmount);
+        return String.format("BillingCalculation{usage=%.2f kWh, amount=%s}", 
+                getTotalUsage(), Money.format(totalAmount));
     }
 }
-
@@ -0,0 +1,136 @@
+package lecbilling.mokopanemakhetha.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress and throughput report for a partitioned billing run.
+ * Updated concurrently by shard workers; read at any time for progress.
+ */
+public class BillingRunReport {
+    private final int totalShards;
+    private final AtomicInteger completedShards = new AtomicInteger();
+    private final AtomicInteger failedShards = new AtomicInteger();
+    private final LongAdder shardRetries = new LongAdder();
+    private final LongAdder customersRead = new LongAdder();
+    private final LongAdder billsRated = new LongAdder();
+    private final LongAdder billsWritten = new LongAdder();
+    private final LongAdder readingsSkipped = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder rateNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final long startedAt = System.nanoTime();
+    private volatile long finishedAt;
+
+    public BillingRunReport(int totalShards) {
+        this.totalShards = totalShards;
+    }
+
+    public void shardCompleted() {
+        completedShards.incrementAndGet();
+    }
+
+    public void shardFailed() {
+        failedShards.incrementAndGet();
+    }
+
+    public void shardRetried() {
+        shardRetries.increment();
+    }
+
+    public void recordRead(int customers, long nanos) {
+        customersRead.add(customers);
+        readNanos.add(nanos);
+    }
+
+    public void recordRate(int bills, int skipped, long nanos) {
+        billsRated.add(bills);
+        readingsSkipped.add(skipped);
+        rateNanos.add(nanos);
+    }
+
+    public void recordWrite(int bills, long nanos) {
+        billsWritten.add(bills);
+        writeNanos.add(nanos);
+    }
+
+    public void finish() {
+        finishedAt = System.nanoTime();
+    }
+
+    public int getTotalShards() {
+        return totalShards;
+    }
+
+    public int getCompletedShards() {
+        return completedShards.get();
+    }
+
+    public int getFailedShards() {
+        return failedShards.get();
+    }
+
+    public long getShardRetries() {
+        return shardRetries.sum();
+    }
+
+    public long getCustomersRead() {
+        return customersRead.sum();
+    }
+
+    public long getBillsRated() {
+        return billsRated.sum();
+    }
+
+    public long getBillsWritten() {
+        return billsWritten.sum();
+    }
+
+    public long getReadingsSkipped() {
+        return readingsSkipped.sum();
+    }
+
+    public boolean isFinished() {
+        return finishedAt != 0;
+    }
+
+    public double getElapsedSeconds() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        return (end - startedAt) / 1_000_000_000.0;
+    }
+
+    /**
+     * Bills per second for one phase, based on the time spent in that phase summed over all shards
+     */
+    private static double perSecond(long count, long nanos) {
+        return nanos == 0 ? 0.0 : count * 1_000_000_000.0 / nanos;
+    }
+
+    public double getReadThroughput() {
+        return perSecond(customersRead.sum(), readNanos.sum());
+    }
+
+    public double getRateThroughput() {
+        return perSecond(billsRated.sum(), rateNanos.sum());
+    }
+
+    public double getWriteThroughput() {
+        return perSecond(billsWritten.sum(), writeNanos.sum());
+    }
+
+    public double getOverallThroughput() {
+        double seconds = getElapsedSeconds();
+        return seconds <= 0 ? 0.0 : billsWritten.sum() / seconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "BillingRunReport{shards=%d/%d (failed %d, retries %d), read=%d, rated=%d, written=%d, skipped=%d, " +
+            "elapsed=%.2fs, throughput: read=%.0f/s, rate=%.0f/s, write=%.0f/s, overall=%.0f bills/s}",
+            getCompletedShards(), totalShards, getFailedShards(), getShardRetries(),
+            getCustomersRead(), getBillsRated(), getBillsWritten(), getReadingsSkipped(),
+            getElapsedSeconds(), getReadThroughput(), getRateThroughput(), getWriteThroughput(),
+            getOverallThroughput());
+    }
+}
@@ -0,0 +1,110 @@
+package lecbilling.mokopanemakhetha.model;
+
+import java.nio.file.Path;
+
+/**
+ * Summary of one customer bulk import: how many rows were imported and why the others
+ * were rejected. Each rejected row is listed in the reject file.
+ */
+public class CustomerImportReport {
+
+    /**
+     * Outcome of a single customer row
+     */
+    public enum RowStatus {
+        IMPORTED,
+        DUPLICATE_CUSTOMER_ID,
+        DUPLICATE_METER_NUMBER,
+        DUPLICATE_IN_FILE,
+        INVALID
+    }
+
+    private final Path sourceFile;
+    private final Path rejectFile;
+    private final long[] counts = new long[RowStatus.values().length];
+    private long linesRead;
+    private long batchesCommitted;
+    private long bloomChecks;
+    private long databaseChecks;
+    private final long startedAt = System.nanoTime();
+    private long finishedAt;
+
+    public CustomerImportReport(Path sourceFile, Path rejectFile) {
+        this.sourceFile = sourceFile;
+        this.rejectFile = rejectFile;
+    }
+
+    public void lineRead() {
+        linesRead++;
+    }
+
+    public void record(RowStatus status) {
+        counts[status.ordinal()]++;
+    }
+
+    public void record(RowStatus status, long rows) {
+        counts[status.ordinal()] += rows;
+    }
+
+    public void batchCommitted() {
+        batchesCommitted++;
+    }
+
+    /**
+     * Rows screened by the Bloom filters, and those the filters could not clear
+     */
+    public void duplicateScreened(long checked, long sentToDatabase) {
+        bloomChecks += checked;
+        databaseChecks += sentToDatabase;
+    }
+
+    public void finish() {
+        finishedAt = System.nanoTime();
+    }
+
+    public Path getSourceFile() {
+        return sourceFile;
+    }
+
+    public Path getRejectFile() {
+        return rejectFile;
+    }
+
+    public long getCount(RowStatus status) {
+        return counts[status.ordinal()];
+    }
+
+    public long getRejectedCount() {
+        return linesRead - counts[RowStatus.IMPORTED.ordinal()];
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public long getBatchesCommitted() {
+        return batchesCommitted;
+    }
+
+    public double getElapsedSeconds() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        return (end - startedAt) / 1_000_000_000.0;
+    }
+
+    public double getRowsPerMinute() {
+        double seconds = getElapsedSeconds();
+        return seconds == 0 ? 0 : linesRead / seconds * 60;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "CustomerImportReport{file=%s, lines=%d, imported=%d, duplicateId=%d, duplicateMeter=%d, " +
+            "duplicateInFile=%d, invalid=%d, bloomChecks=%d, databaseChecks=%d, batches=%d, " +
+            "elapsed=%.2fs, rate=%.0f rows/min}",
+            sourceFile.getFileName(), linesRead, getCount(RowStatus.IMPORTED),
+            getCount(RowStatus.DUPLICATE_CUSTOMER_ID), getCount(RowStatus.DUPLICATE_METER_NUMBER),
+            getCount(RowStatus.DUPLICATE_IN_FILE), getCount(RowStatus.INVALID), bloomChecks, databaseChecks,
+            batchesCommitted, getElapsedSeconds(), getRowsPerMinute());
+    }
+}
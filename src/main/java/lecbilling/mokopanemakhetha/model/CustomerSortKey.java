@@ -0,0 +1,22 @@
+package lecbilling.mokopanemakhetha.model;
+
+/**
+ * Customer columns a paged customer list can be ordered by. Each maps to a customers
+ * column that has a partial (column, customer_id) index for keyset pagination.
+ */
+public enum CustomerSortKey {
+    NAME("name"),
+    CUSTOMER_ID("customer_id"),
+    ADDRESS("address"),
+    METER_NUMBER("meter_number");
+
+    private final String column;
+
+    CustomerSortKey(String column) {
+        this.column = column;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+}
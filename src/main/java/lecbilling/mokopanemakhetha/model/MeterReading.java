@@ -0,0 +1,84 @@
+package lecbilling.mokopanemakhetha.model;
+
+import java.time.LocalDate;
+
+/**
+ * Model class for a meter reading to be billed
+ */
+public class MeterReading {
+    private String customerId;
+    private double previousReading;
+    private double currentReading;
+    private LocalDate periodStart;
+    private LocalDate periodEnd;
+
+    public MeterReading() {
+    }
+
+    public MeterReading(String customerId, double previousReading, double currentReading,
+                        LocalDate periodStart, LocalDate periodEnd) {
+        this.customerId = customerId;
+        this.previousReading = previousReading;
+        this.currentReading = currentReading;
+        this.periodStart = periodStart;
+        this.periodEnd = periodEnd;
+    }
+
+    // Getters and Setters
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public double getPreviousReading() {
+        return previousReading;
+    }
+
+    public void setPreviousReading(double previousReading) {
+        this.previousReading = previousReading;
+    }
+
+    public double getCurrentReading() {
+        return currentReading;
+    }
+
+    public void setCurrentReading(double currentReading) {
+        this.currentReading = currentReading;
+    }
+
+    public LocalDate getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(LocalDate periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public LocalDate getPeriodEnd() {
+        return periodEnd;
+    }
+
+    public void setPeriodEnd(LocalDate periodEnd) {
+        this.periodEnd = periodEnd;
+    }
+
+    public double getUsage() {
+        return Money.toAmount(getUsageCentiKwh());
+    }
+
+    /**
+     * Usage in centi-kWh, computed from readings rounded to two decimals like the database stores them
+     */
+    public long getUsageCentiKwh() {
+        return Money.toCents(currentReading) - Money.toCents(previousReading);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MeterReading{customer='%s', previous=%.2f, current=%.2f, period=%s to %s}",
+                customerId, previousReading, currentReading, periodStart, periodEnd);
+    }
+}
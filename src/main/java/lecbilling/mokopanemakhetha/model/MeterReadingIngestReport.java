@@ -0,0 +1,193 @@
+package lecbilling.mokopanemakhetha.model;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress and outcome of one meter-reading file run through the ingestion pipeline.
+ * Updated concurrently by the stage threads; read at any time for per-stage throughput
+ * and queue depths. Each rejected reading is listed in the reject file.
+ */
+public class MeterReadingIngestReport {
+
+    /**
+     * Pipeline stages, in the order readings pass through them
+     */
+    public enum Stage {
+        PARSE,
+        ENRICH,
+        VALIDATE,
+        RATE,
+        PERSIST
+    }
+
+    /**
+     * Outcome of a single reading
+     */
+    public enum RowStatus {
+        BILLED,
+        ALREADY_BILLED,
+        UNKNOWN_METER,
+        NEGATIVE_USAGE,
+        DUPLICATE_IN_FILE,
+        INVALID,
+        FAILED,
+        // Written in a committed batch whose results could not be read back
+        UNCONFIRMED
+    }
+
+    private final Path sourceFile;
+    private final Path rejectFile;
+    private final LongAdder[] counts = adders(RowStatus.values().length);
+    private final LongAdder[] stageRows = adders(Stage.values().length);
+    private final LongAdder[] stageNanos = adders(Stage.values().length);
+
+    // Depth of the queue feeding each stage, as last seen by that stage, and its peak
+    private final AtomicIntegerArray queueDepths = new AtomicIntegerArray(Stage.values().length);
+    private final AtomicIntegerArray peakQueueDepths = new AtomicIntegerArray(Stage.values().length);
+
+    private final LongAdder rollovers = new LongAdder();
+    private final LongAdder billedCents = new LongAdder();
+    private final LongAdder batchesCommitted = new LongAdder();
+    private final long startedAt = System.nanoTime();
+    private volatile long finishedAt;
+
+    public MeterReadingIngestReport(Path sourceFile, Path rejectFile) {
+        this.sourceFile = sourceFile;
+        this.rejectFile = rejectFile;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    public void record(RowStatus status) {
+        counts[status.ordinal()].increment();
+    }
+
+    public void billed(long amountCents) {
+        counts[RowStatus.BILLED.ordinal()].increment();
+        billedCents.add(amountCents);
+    }
+
+    public void rolloverDetected() {
+        rollovers.increment();
+    }
+
+    public void batchCommitted() {
+        batchesCommitted.increment();
+    }
+
+    /**
+     * Rows a stage finished and the time it spent on them
+     */
+    public void stageProcessed(Stage stage, int rows, long nanos) {
+        stageRows[stage.ordinal()].add(rows);
+        stageNanos[stage.ordinal()].add(nanos);
+    }
+
+    public void queueDepth(Stage stage, int depth) {
+        queueDepths.set(stage.ordinal(), depth);
+        peakQueueDepths.accumulateAndGet(stage.ordinal(), depth, Math::max);
+    }
+
+    public void finish() {
+        finishedAt = System.nanoTime();
+    }
+
+    public Path getSourceFile() {
+        return sourceFile;
+    }
+
+    public Path getRejectFile() {
+        return rejectFile;
+    }
+
+    public long getCount(RowStatus status) {
+        return counts[status.ordinal()].sum();
+    }
+
+    public long getRejectedCount() {
+        long rejected = 0;
+        for (RowStatus status : RowStatus.values()) {
+            if (status != RowStatus.BILLED) {
+                rejected += getCount(status);
+            }
+        }
+        return rejected;
+    }
+
+    public long getRollovers() {
+        return rollovers.sum();
+    }
+
+    public long getBilledCents() {
+        return billedCents.sum();
+    }
+
+    public long getBatchesCommitted() {
+        return batchesCommitted.sum();
+    }
+
+    public long getStageRows(Stage stage) {
+        return stageRows[stage.ordinal()].sum();
+    }
+
+    /**
+     * Rows per second while the stage was busy; the slowest stage bounds the pipeline
+     */
+    public double getStageThroughput(Stage stage) {
+        long nanos = stageNanos[stage.ordinal()].sum();
+        return nanos == 0 ? 0.0 : getStageRows(stage) * 1_000_000_000.0 / nanos;
+    }
+
+    /**
+     * Batches waiting in front of a stage when it last took one
+     */
+    public int getQueueDepth(Stage stage) {
+        return queueDepths.get(stage.ordinal());
+    }
+
+    public int getPeakQueueDepth(Stage stage) {
+        return peakQueueDepths.get(stage.ordinal());
+    }
+
+    public boolean isFinished() {
+        return finishedAt != 0;
+    }
+
+    public double getElapsedSeconds() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        return (end - startedAt) / 1_000_000_000.0;
+    }
+
+    public double getReadingsPerHour() {
+        double seconds = getElapsedSeconds();
+        return seconds <= 0 ? 0.0 : getStageRows(Stage.PERSIST) / seconds * 3600;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stages = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            if (stages.length() > 0) {
+                stages.append(", ");
+            }
+            stages.append(String.format("%s=%d@%.0f/s q%d/%d", stage.name().toLowerCase(), getStageRows(stage),
+                    getStageThroughput(stage), getQueueDepth(stage), getPeakQueueDepth(stage)));
+        }
+        return String.format(
+            "MeterReadingIngestReport{file=%s, billed=%d, alreadyBilled=%d, unknownMeter=%d, negativeUsage=%d, " +
+            "duplicateInFile=%d, invalid=%d, failed=%d, unconfirmed=%d, rollovers=%d, batches=%d, elapsed=%.2fs, " +
+            "rate=%.0f readings/h, stages: %s}",
+            sourceFile.getFileName(), getCount(RowStatus.BILLED), getCount(RowStatus.ALREADY_BILLED),
+            getCount(RowStatus.UNKNOWN_METER), getCount(RowStatus.NEGATIVE_USAGE),
+            getCount(RowStatus.DUPLICATE_IN_FILE), getCount(RowStatus.INVALID), getCount(RowStatus.FAILED),
+            getCount(RowStatus.UNCONFIRMED), getRollovers(), getBatchesCommitted(), getElapsedSeconds(), getReadingsPerHour(), stages);
+    }
+}
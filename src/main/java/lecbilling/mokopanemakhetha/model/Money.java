@@ -0,0 +1,85 @@
+package lecbilling.mokopanemakhetha.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point helpers for amounts held as long cents (and usage as long centi-kWh).
+ * The database stores both as DECIMAL(10, 2), so a long with two implied decimals
+ * round-trips exactly and sums never lose precision.
+ */
+public final class Money {
+
+    /**
+     * Scale factor between a two-decimal value and its long representation
+     */
+    public static final long SCALE = 100;
+
+    private static final double[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    // SQL fragments for exact long <-> DECIMAL(10, 2) mapping with setLong/getLong
+    public static final String SQL_PARAM = "CAST(? AS NUMERIC) / 100";
+
+    private Money() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * SQL expression that reads a DECIMAL(10, 2) column (or sum) as long cents
+     */
+    public static String sqlCents(String expression) {
+        return "CAST((" + expression + ") * 100 AS BIGINT)";
+    }
+
+    /**
+     * Convert a two-decimal value to its long representation, rounding half up like
+     * PostgreSQL does when it stores a double into a DECIMAL(10, 2) column.
+     */
+    public static long toCents(double value) {
+        return toFixed(value, 2);
+    }
+
+    /**
+     * Convert a decimal value to a long with the given number of implied decimals
+     */
+    public static long toFixed(double value, int decimals) {
+        double scaled = value * POWERS_OF_TEN[decimals];
+        double nearest = Math.rint(scaled);
+        // Fast path: the value already has no more than the requested decimals
+        if (Math.abs(scaled - nearest) < 1e-6 && Math.abs(scaled) < 1e15) {
+            return (long) nearest;
+        }
+        return BigDecimal.valueOf(value).setScale(decimals, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Convert long cents back to a double amount for display and charts
+     */
+    public static double toAmount(long cents) {
+        return cents / (double) SCALE;
+    }
+
+    /**
+     * Divide a fixed-point product, rounding half away from zero
+     */
+    public static long divideRounded(long value, long divisor) {
+        long half = divisor / 2;
+        return value >= 0 ? (value + half) / divisor : -((-value + half) / divisor);
+    }
+
+    /**
+     * Format cents as a currency string, e.g. "M1234.50"
+     */
+    public static String format(long cents) {
+        return (cents < 0 ? "-M" : "M") + toPlainString(Math.abs(cents));
+    }
+
+    /**
+     * Format cents as a plain decimal string, e.g. "1234.50", for files and exports
+     */
+    public static String toPlainString(long cents) {
+        long abs = Math.abs(cents);
+        String fraction = String.valueOf(abs % SCALE);
+        return (cents < 0 ? "-" : "") + (abs / SCALE) + "." + (fraction.length() == 1 ? "0" + fraction : fraction);
+    }
+}
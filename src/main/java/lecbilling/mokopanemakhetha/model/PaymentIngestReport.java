@@ -0,0 +1,93 @@
+package lecbilling.mokopanemakhetha.model;
+
+import java.nio.file.Path;
+
+/**
+ * Summary of one bank payment file run: how many rows fell into each reconciliation
+ * outcome and the amount actually applied. Row-level detail goes to the report file.
+ */
+public class PaymentIngestReport {
+
+    /**
+     * Reconciliation outcome of a single payment row
+     */
+    public enum RowStatus {
+        MATCHED,
+        UNMATCHED,
+        DUPLICATE,
+        AMOUNT_MISMATCH,
+        INVALID
+    }
+
+    private final Path sourceFile;
+    private final Path reportFile;
+    private final long[] counts = new long[RowStatus.values().length];
+    private long linesRead;
+    private long matchedCents;
+    private long batchesCommitted;
+    private final long startedAt = System.nanoTime();
+    private long finishedAt;
+
+    public PaymentIngestReport(Path sourceFile, Path reportFile) {
+        this.sourceFile = sourceFile;
+        this.reportFile = reportFile;
+    }
+
+    public void lineRead() {
+        linesRead++;
+    }
+
+    public void record(RowStatus status, long amountCents) {
+        counts[status.ordinal()]++;
+        if (status == RowStatus.MATCHED) {
+            matchedCents += amountCents;
+        }
+    }
+
+    public void batchCommitted() {
+        batchesCommitted++;
+    }
+
+    public void finish() {
+        finishedAt = System.nanoTime();
+    }
+
+    public Path getSourceFile() {
+        return sourceFile;
+    }
+
+    public Path getReportFile() {
+        return reportFile;
+    }
+
+    public long getCount(RowStatus status) {
+        return counts[status.ordinal()];
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public long getMatchedCents() {
+        return matchedCents;
+    }
+
+    public long getBatchesCommitted() {
+        return batchesCommitted;
+    }
+
+    public double getElapsedSeconds() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        return (end - startedAt) / 1_000_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "PaymentIngestReport{file=%s, lines=%d, matched=%d (%s), unmatched=%d, duplicate=%d, " +
+            "amountMismatch=%d, invalid=%d, batches=%d, elapsed=%.2fs}",
+            sourceFile.getFileName(), linesRead, getCount(RowStatus.MATCHED), Money.format(matchedCents),
+            getCount(RowStatus.UNMATCHED), getCount(RowStatus.DUPLICATE), getCount(RowStatus.AMOUNT_MISMATCH),
+            getCount(RowStatus.INVALID), batchesCommitted, getElapsedSeconds());
+    }
+}
@@ -0,0 +1,115 @@
+package lecbilling.mokopanemakhetha.model;
+
+/**
+ * Columnar result of rating many usage values at once.
+ * Each column is a primitive array indexed by row; the arrays are reused between
+ * batches and only grow when a larger batch is rated. Usage columns hold centi-kWh
+ * and amount columns hold cents.
+ */
+public class RatedBatch {
+    private int size;
+    private long[] usage = new long[0];
+    private long[] tier1Usage = new long[0];
+    private long[] tier2Usage = new long[0];
+    private long[] tier3Usage = new long[0];
+    private long[] tier1Amount = new long[0];
+    private long[] tier2Amount = new long[0];
+    private long[] tier3Amount = new long[0];
+    private long[] totalAmount = new long[0];
+
+    public RatedBatch() {
+    }
+
+    public RatedBatch(int capacity) {
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Make room for the given number of rows and reset the batch size to it
+     */
+    public void resize(int rows) {
+        ensureCapacity(rows);
+        size = rows;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (usage.length >= capacity) {
+            return;
+        }
+        usage = new long[capacity];
+        tier1Usage = new long[capacity];
+        tier2Usage = new long[capacity];
+        tier3Usage = new long[capacity];
+        tier1Amount = new long[capacity];
+        tier2Amount = new long[capacity];
+        tier3Amount = new long[capacity];
+        totalAmount = new long[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Column accessors, valid for indexes below size()
+    public long[] usage() {
+        return usage;
+    }
+
+    public long[] tier1Usage() {
+        return tier1Usage;
+    }
+
+    public long[] tier2Usage() {
+        return tier2Usage;
+    }
+
+    public long[] tier3Usage() {
+        return tier3Usage;
+    }
+
+    public long[] tier1Amount() {
+        return tier1Amount;
+    }
+
+    public long[] tier2Amount() {
+        return tier2Amount;
+    }
+
+    public long[] tier3Amount() {
+        return tier3Amount;
+    }
+
+    public long[] totalAmount() {
+        return totalAmount;
+    }
+
+    /**
+     * Copy the first count rows of another batch into this one, starting at row offset
+     */
+    public void copyRows(RatedBatch from, int count, int offset) {
+        System.arraycopy(from.usage, 0, usage, offset, count);
+        System.arraycopy(from.tier1Usage, 0, tier1Usage, offset, count);
+        System.arraycopy(from.tier2Usage, 0, tier2Usage, offset, count);
+        System.arraycopy(from.tier3Usage, 0, tier3Usage, offset, count);
+        System.arraycopy(from.tier1Amount, 0, tier1Amount, offset, count);
+        System.arraycopy(from.tier2Amount, 0, tier2Amount, offset, count);
+        System.arraycopy(from.tier3Amount, 0, tier3Amount, offset, count);
+        System.arraycopy(from.totalAmount, 0, totalAmount, offset, count);
+    }
+
+    /**
+     * Copy one row into a BillingCalculation, for callers that need the object form
+     */
+    public BillingCalculation toCalculation(int row) {
+        BillingCalculation calc = new BillingCalculation();
+        calc.setTotalUsageCentiKwh(usage[row]);
+        calc.setTier1UsageCentiKwh(tier1Usage[row]);
+        calc.setTier2UsageCentiKwh(tier2Usage[row]);
+        calc.setTier3UsageCentiKwh(tier3Usage[row]);
+        calc.setTier1AmountCents(tier1Amount[row]);
+        calc.setTier2AmountCents(tier2Amount[row]);
+        calc.setTier3AmountCents(tier3Amount[row]);
+        calc.setTotalAmountCents(totalAmount[row]);
+        return calc;
+    }
+}
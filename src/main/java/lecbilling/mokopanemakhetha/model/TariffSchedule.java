@@ -0,0 +1,216 @@
+package lecbilling.mokopanemakhetha.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Immutable, compiled tariff schedule.
+ * Tiers are stored as parallel primitive arrays of lower bounds and rates, together with the
+ * precomputed charge for all tiers below each bound, so rating a usage value is a scan over
+ * the tiers with no allocation.
+ *
+ * All arithmetic is fixed point: usage in centi-kWh, rates in ten-thousandths of a Maloti
+ * per kWh and amounts in cents. Each tier charge is rounded to the cent on its own, so a
+ * bill total is always the exact sum of its tier amounts.
+ */
+public final class TariffSchedule {
+    public static final String DEFAULT_CUSTOMER_CLASS = "RESIDENTIAL";
+
+    /**
+     * Rates are stored as long values with four implied decimals (DECIMAL(10, 4))
+     */
+    public static final long RATE_SCALE = 10_000;
+
+    // Keeps usage (at most DECIMAL(10, 2), i.e. 10^10 centi-kWh) times rate inside a long
+    private static final long MAX_RATE_UNITS = 900_000_000L;
+
+    // centi-kWh x rate units carries 2 + 4 decimals; dividing by this leaves cents
+    private static final long CENTS_DIVISOR = RATE_SCALE;
+
+    private final int id;
+    private final String name;
+    private final String customerClass;
+    private final int version;
+    private final LocalDate effectiveFrom;
+    private final long[] lowerBounds;
+    private final long[] rates;
+    private final long[] cumulativeCents;
+
+    /**
+     * @param lowerBounds tier lower bounds in centi-kWh, starting at 0
+     * @param rates       tier rates in ten-thousandths of a Maloti per kWh
+     */
+    public TariffSchedule(int id, String name, String customerClass, int version, LocalDate effectiveFrom,
+                          long[] lowerBounds, long[] rates) {
+        if (lowerBounds.length == 0 || lowerBounds.length != rates.length) {
+            throw new IllegalArgumentException("Tariff schedule needs one rate per tier");
+        }
+        if (lowerBounds[0] != 0) {
+            throw new IllegalArgumentException("First tier must start at 0 kWh");
+        }
+        for (int i = 0; i < lowerBounds.length; i++) {
+            if (i > 0 && lowerBounds[i] <= lowerBounds[i - 1]) {
+                throw new IllegalArgumentException("Tier bounds must be strictly increasing");
+            }
+            if (rates[i] < 0 || rates[i] > MAX_RATE_UNITS) {
+                throw new IllegalArgumentException("Tier rate out of range: " + rates[i]);
+            }
+        }
+
+        this.id = id;
+        this.name = name;
+        this.customerClass = customerClass;
+        this.version = version;
+        this.effectiveFrom = effectiveFrom;
+        this.lowerBounds = lowerBounds.clone();
+        this.rates = rates.clone();
+
+        // Charge for fully consuming every tier below tier i, summed from the lowest tier up
+        this.cumulativeCents = new long[lowerBounds.length];
+        for (int i = 1; i < lowerBounds.length; i++) {
+            cumulativeCents[i] = cumulativeCents[i - 1] + chargeCents(lowerBounds[i] - lowerBounds[i - 1], rates[i - 1]);
+        }
+    }
+
+    /**
+     * Built-in schedule used until tariffs are loaded from the database
+     */
+    public static TariffSchedule defaultSchedule() {
+        return new TariffSchedule(0, "Default residential tariff", DEFAULT_CUSTOMER_CLASS, 0, LocalDate.MIN,
+                new long[]{0, 10_000, 30_000}, new long[]{12_000, 15_000, 20_000});
+    }
+
+    /**
+     * Charge in cents for usage billed at one rate, rounded half up to the cent
+     */
+    public static long chargeCents(long usageCentiKwh, long rate) {
+        return Money.divideRounded(usageCentiKwh * rate, CENTS_DIVISOR);
+    }
+
+    /**
+     * Total charge in cents for the given usage in centi-kWh
+     */
+    public long amountCentsFor(long usage) {
+        int tier = tierOf(usage);
+        if (tier < 0) {
+            return 0;
+        }
+        return cumulativeCents[tier] + chargeCents(usage - lowerBounds[tier], rates[tier]);
+    }
+
+    /**
+     * Total charge for a usage in kWh, as a display amount
+     */
+    public double amountFor(double usage) {
+        return Money.toAmount(amountCentsFor(Money.toCents(usage)));
+    }
+
+    /**
+     * Index of the highest tier the usage (centi-kWh) reaches, or -1 when there is no usage
+     */
+    public int tierOf(long usage) {
+        int tier = -1;
+        for (int i = 0; i < lowerBounds.length && usage > lowerBounds[i]; i++) {
+            tier = i;
+        }
+        return tier;
+    }
+
+    /**
+     * Usage in centi-kWh billed within the given tier
+     */
+    public long tierUsage(long usage, int tier) {
+        if (usage <= lowerBounds[tier]) {
+            return 0;
+        }
+        long upper = tier + 1 < lowerBounds.length ? lowerBounds[tier + 1] : Long.MAX_VALUE;
+        return Math.min(usage, upper) - lowerBounds[tier];
+    }
+
+    /**
+     * Charge in cents for the usage billed within the given tier
+     */
+    public long tierAmountCents(long usage, int tier) {
+        return chargeCents(tierUsage(usage, tier), rates[tier]);
+    }
+
+    public int getTierCount() {
+        return lowerBounds.length;
+    }
+
+    /**
+     * Lower bound of a tier in centi-kWh
+     */
+    public long getLowerBoundCentiKwh(int tier) {
+        return lowerBounds[tier];
+    }
+
+    /**
+     * Upper bound of a tier in centi-kWh, Long.MAX_VALUE for the top tier
+     */
+    public long getUpperBoundCentiKwh(int tier) {
+        return tier + 1 < lowerBounds.length ? lowerBounds[tier + 1] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Rate of a tier in ten-thousandths of a Maloti per kWh
+     */
+    public long getRateUnits(int tier) {
+        return rates[tier];
+    }
+
+    public double getLowerBound(int tier) {
+        return Money.toAmount(lowerBounds[tier]);
+    }
+
+    public double getRate(int tier) {
+        return rates[tier] / (double) RATE_SCALE;
+    }
+
+    public long getCumulativeCents(int tier) {
+        return cumulativeCents[tier];
+    }
+
+    /**
+     * Human readable range of a tier, e.g. "101-300 kWh" or "Above 300 kWh"
+     */
+    public String getTierLabel(int tier) {
+        if (tier + 1 >= lowerBounds.length) {
+            return tier == 0 ? "All usage" : String.format("Above %s kWh", formatKwh(lowerBounds[tier]));
+        }
+        long from = tier == 0 ? 0 : lowerBounds[tier] + Money.SCALE;
+        return String.format("%s-%s kWh", formatKwh(from), formatKwh(lowerBounds[tier + 1]));
+    }
+
+    private static String formatKwh(long centiKwh) {
+        return centiKwh % Money.SCALE == 0
+                ? String.valueOf(centiKwh / Money.SCALE)
+                : String.valueOf(Money.toAmount(centiKwh));
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCustomerClass() {
+        return customerClass;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public LocalDate getEffectiveFrom() {
+        return effectiveFrom;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TariffSchedule{name='%s', class=%s, version=%d, from=%s, bounds=%s, rates=%s}",
+                name, customerClass, version, effectiveFrom, Arrays.toString(lowerBounds), Arrays.toString(rates));
+    }
+}
@@ -0,0 +1,188 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Allocates unique bill numbers of the form BILL-YYYY-NNNNNNN.
+ * Each year has its own PostgreSQL sequence (bill_number_seq_YYYY) that advances in
+ * blocks; a process reserves a whole block with one nextval call and hands numbers
+ * out from memory until the block is used up (hi/lo allocation).
+ */
+public class BillNumberAllocator {
+    private static final Logger logger = LoggerFactory.getLogger(BillNumberAllocator.class);
+    private static BillNumberAllocator instance;
+
+    private static final int DEFAULT_BLOCK_SIZE = 50;
+    private static final String PREFIX = "BILL-";
+    private static final String NUMBER_FORMAT = "BILL-%d-%07d";
+
+    private final int blockSize;
+
+    // Guards the block and statistics. A lock rather than synchronized, because reserving a
+    // block does database I/O and must not pin the carrier of a virtual thread while it waits.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Current reserved block: numbers [nextValue, blockEnd) belong to this process
+    private int currentYear;
+    private long nextValue;
+    private long blockEnd;
+
+    // Allocation statistics
+    private long numbersIssued;
+    private long blocksReserved;
+    private long numbersDiscarded;
+
+    private BillNumberAllocator(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public static synchronized BillNumberAllocator getInstance() {
+        if (instance == null) {
+            instance = new BillNumberAllocator(DEFAULT_BLOCK_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Allocate the next bill number for the current year
+     */
+    public String nextBillNumber() throws SQLException {
+        return nextBillNumber(LocalDate.now().getYear());
+    }
+
+    /**
+     * Allocate the next bill number for the given year
+     */
+    public String nextBillNumber(int year) throws SQLException {
+        lock.lock();
+        try {
+            if (year != currentYear || nextValue >= blockEnd) {
+                if (year != currentYear && currentYear != 0) {
+                    numbersDiscarded += blockEnd - nextValue;
+                    logger.info("Bill number year rolled over from {} to {}", currentYear, year);
+                }
+                reserveBlock(year);
+            }
+            numbersIssued++;
+            return String.format(NUMBER_FORMAT, year, nextValue++);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reserve the given number of bill numbers at once, for bulk billing runs
+     */
+    public String[] nextBillNumbers(int year, int count) throws SQLException {
+        String[] numbers = new String[count];
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                numbers[i] = nextBillNumber(year);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return numbers;
+    }
+
+    private void reserveBlock(int year) throws SQLException {
+        String sequence = sequenceName(year);
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            long increment = ensureSequence(conn, sequence, year);
+
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT nextval('" + sequence + "')")) {
+                rs.next();
+                long hi = rs.getLong(1);
+                currentYear = year;
+                nextValue = hi;
+                blockEnd = hi + increment;
+                blocksReserved++;
+                logger.debug("Reserved bill numbers {}-{} for {}", hi, blockEnd - 1, year);
+            }
+        }
+    }
+
+    /**
+     * Create the sequence for a year if it does not exist yet. A new sequence starts
+     * after the highest bill number already used that year so older numbers never collide.
+     * Returns the sequence increment, which is the block size every process must use.
+     */
+    private long ensureSequence(Connection conn, String sequence, int year) throws SQLException {
+        String incrementQuery = "SELECT increment_by FROM pg_sequences " +
+                               "WHERE schemaname = current_schema() AND sequencename = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(incrementQuery)) {
+            pstmt.setString(1, sequence);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        }
+
+        long start = 1;
+        String maxQuery = "SELECT COALESCE(MAX(CAST(SUBSTRING(bill_number FROM ?) AS BIGINT)), 0) " +
+                         "FROM bills WHERE bill_number ~ ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(maxQuery)) {
+            String yearPrefix = PREFIX + year + "-";
+            pstmt.setInt(1, yearPrefix.length() + 1);
+            pstmt.setString(2, "^" + yearPrefix + "[0-9]+$");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    start = rs.getLong(1) + 1;
+                }
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE SEQUENCE IF NOT EXISTS " + sequence +
+                        " INCREMENT BY " + blockSize + " START WITH " + start);
+        }
+        logger.info("Created bill number sequence {} starting at {}", sequence, start);
+        return blockSize;
+    }
+
+    private static String sequenceName(int year) {
+        return "bill_number_seq_" + year;
+    }
+
+    /**
+     * Get allocation statistics
+     */
+    public String getStats() {
+        lock.lock();
+        try {
+            return String.format(
+                "Bill numbers issued: %d, blocks reserved: %d, remaining in block: %d, discarded: %d",
+                numbersIssued, blocksReserved, Math.max(0, blockEnd - nextValue), numbersDiscarded);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getNumbersIssued() {
+        lock.lock();
+        try {
+            return numbersIssued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBlocksReserved() {
+        lock.lock();
+        try {
+            return blocksReserved;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service for the running unpaid bill count and outstanding amount.
+ * The totals live in the bill_totals table, spread over a few slots and maintained by a
+ * trigger on bills inside the same transaction as every bill insert or payment, so reading
+ * them is a primary-key scan of a handful of rows. A background job compares them with a
+ * full aggregate over bills and rewrites them if they have drifted.
+ */
+public class BillTotalsService {
+    private static final Logger logger = LoggerFactory.getLogger(BillTotalsService.class);
+    private static BillTotalsService instance;
+
+    // Must match the number of slots seeded in bill_totals
+    private static final int SLOTS = 16;
+
+    private static final long RECONCILE_INTERVAL_MINUTES = 60;
+
+    private static final String READ_TOTALS =
+            "SELECT COUNT(*), COALESCE(SUM(unpaid_count), 0), " +
+            Money.sqlCents("COALESCE(SUM(outstanding_amount), 0)") + " FROM bill_totals";
+
+    private static final String AGGREGATE_BILLS =
+            "SELECT COUNT(*), " + Money.sqlCents("COALESCE(SUM(bill_amount), 0)") +
+            " FROM bills WHERE payment_status IN ('UNPAID', 'OVERDUE')";
+
+    private ScheduledExecutorService reconcileExecutor;
+
+    // Reconciliation statistics
+    private volatile long lastReconciledAt;
+    private volatile long reconciliations;
+    private volatile long repairs;
+
+    private BillTotalsService() {
+    }
+
+    public static synchronized BillTotalsService getInstance() {
+        if (instance == null) {
+            instance = new BillTotalsService();
+            instance.startReconcile();
+        }
+        return instance;
+    }
+
+    /**
+     * Get the number of unpaid bills
+     */
+    public int getUnpaidCount() {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return (int) readTotals(conn)[0];
+        } catch (SQLException e) {
+            logger.error("Error getting unpaid bills count", e);
+        }
+        return 0;
+    }
+
+    /**
+     * Get the total outstanding amount in cents
+     */
+    public long getOutstandingCents() {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return readTotals(conn)[1];
+        } catch (SQLException e) {
+            logger.error("Error getting total outstanding amount", e);
+        }
+        return 0;
+    }
+
+    /**
+     * Read {unpaid count, outstanding cents} on the caller's connection. Falls back to
+     * aggregating bills directly if the totals table is missing or not seeded.
+     */
+    long[] readTotals(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(READ_TOTALS)) {
+            if (rs.next() && rs.getInt(1) == SLOTS) {
+                return new long[]{rs.getLong(2), rs.getLong(3)};
+            }
+            logger.warn("bill_totals is not seeded, aggregating bills instead");
+        } catch (SQLException e) {
+            if (!conn.getAutoCommit()) {
+                throw e;
+            }
+            logger.warn("Error reading bill_totals, aggregating bills instead: {}", e.getMessage());
+        }
+        return aggregateBills(conn);
+    }
+
+    private long[] aggregateBills(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(AGGREGATE_BILLS)) {
+            rs.next();
+            return new long[]{rs.getLong(1), rs.getLong(2)};
+        }
+    }
+
+    /**
+     * Compare the running totals with a full aggregate over bills and repair them if they
+     * differ. The cheap unlocked comparison runs first; only a mismatch takes the table lock,
+     * which waits for in-flight bill transactions and holds off new ones while the totals
+     * are recomputed. Returns true if the totals had drifted.
+     */
+    public synchronized boolean reconcile() {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            reconciliations++;
+            lastReconciledAt = System.currentTimeMillis();
+            if (matches(conn)) {
+                return false;
+            }
+
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("LOCK TABLE bill_totals IN SHARE ROW EXCLUSIVE MODE");
+                if (matches(conn)) {
+                    conn.commit();
+                    return false;
+                }
+
+                long[] actual = aggregateBills(conn);
+                stmt.executeUpdate("DELETE FROM bill_totals");
+                String insert = "INSERT INTO bill_totals (slot, unpaid_count, outstanding_amount) " +
+                               "SELECT s, CASE WHEN s = 0 THEN ? ELSE 0 END, " +
+                               "CASE WHEN s = 0 THEN " + Money.SQL_PARAM + " ELSE 0 END " +
+                               "FROM generate_series(0, ?) AS s";
+                try (PreparedStatement pstmt = conn.prepareStatement(insert)) {
+                    pstmt.setLong(1, actual[0]);
+                    pstmt.setLong(2, actual[1]);
+                    pstmt.setInt(3, SLOTS - 1);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+                repairs++;
+                logger.warn("Repaired bill totals drift: now {} unpaid bills, {} outstanding",
+                        actual[0], Money.format(actual[1]));
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            logger.error("Error reconciling bill totals", e);
+        }
+        return false;
+    }
+
+    private boolean matches(Connection conn) throws SQLException {
+        long[] actual = aggregateBills(conn);
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(READ_TOTALS)) {
+            rs.next();
+            return rs.getInt(1) == SLOTS && rs.getLong(2) == actual[0] && rs.getLong(3) == actual[1];
+        }
+    }
+
+    private void startReconcile() {
+        reconcileExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bill-totals-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconcileExecutor.scheduleWithFixedDelay(this::reconcile,
+                RECONCILE_INTERVAL_MINUTES, RECONCILE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Get reconciliation statistics
+     */
+    public String getStats() {
+        return String.format("Bill totals reconciliations: %d, repairs: %d, last run: %s",
+                reconciliations, repairs,
+                lastReconciledAt == 0 ? "never" : new Timestamp(lastReconciledAt).toString());
+    }
+}
@@ -0,0 +1,337 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.BillResult;
+import lecbilling.mokopanemakhetha.model.BillingCalculation;
+import lecbilling.mokopanemakhetha.model.MeterReading;
+import lecbilling.mokopanemakhetha.util.StringIntMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind path for bill creation.
+ * Bills are rated and given their bill number on the caller's thread and acknowledged at
+ * once; a single background writer drains the bounded queue and commits many bills per
+ * transaction, flushing when a group is full or the oldest queued bill has waited long
+ * enough. Inserts are idempotent per customer and period, so a group that fails on a
+ * broken connection is simply retried.
+ *
+ * Shutdown waits for bills that are still being enqueued, flushes the queue and fails the
+ * callbacks of anything it could not write in time. It runs from a JVM shutdown hook as
+ * well, so System.exit and SIGTERM flush the queue too.
+ */
+public class BillWriteQueue {
+    private static final Logger logger = LoggerFactory.getLogger(BillWriteQueue.class);
+    private static BillWriteQueue instance;
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int MAX_GROUP_SIZE = BillingService.BULK_CHUNK_SIZE;
+    private static final long FLUSH_INTERVAL_MILLIS = 200;
+    private static final long ENQUEUE_TIMEOUT_MILLIS = 500;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_BACKOFF_MILLIS = 1_000;
+    private static final long SHUTDOWN_HOOK_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * A rated bill waiting to be written
+     */
+    private static final class QueuedBill {
+        final MeterReading reading;
+        final int customerDbId;
+        final BillingCalculation calc;
+        final String billNumber;
+        final Consumer<BillResult> onComplete;
+
+        QueuedBill(MeterReading reading, int customerDbId, BillingCalculation calc, String billNumber,
+                   Consumer<BillResult> onComplete) {
+            this.reading = reading;
+            this.customerDbId = customerDbId;
+            this.calc = calc;
+            this.billNumber = billNumber;
+            this.onComplete = onComplete;
+        }
+    }
+
+    private final BillingService billingService = BillingService.getInstance();
+    private final CustomerIdCache customerIdCache = CustomerIdCache.getInstance();
+    private final BillNumberAllocator billNumberAllocator = BillNumberAllocator.getInstance();
+    private final BlockingQueue<QueuedBill> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile boolean accepting = true;
+    private boolean shutDown;
+
+    // Held shared by enqueue from the accepting check until the bill is queued, and
+    // exclusively by shutdown to stop accepting, so no acknowledged bill is left behind
+    private final ReentrantReadWriteLock admission = new ReentrantReadWriteLock();
+
+    // Queue statistics
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder groupsCommitted = new LongAdder();
+
+    private BillWriteQueue() {
+        writer = new Thread(this::drain, "bill-writer");
+        writer.setDaemon(true);
+    }
+
+    public static synchronized BillWriteQueue getInstance() {
+        if (instance == null) {
+            instance = new BillWriteQueue();
+            instance.writer.start();
+            BillWriteQueue started = instance;
+            Runtime.getRuntime().addShutdownHook(new Thread(
+                    () -> started.shutdown(SHUTDOWN_HOOK_TIMEOUT_MILLIS), "bill-queue-shutdown"));
+        }
+        return instance;
+    }
+
+    /**
+     * Flush and stop the queue if it was ever started, e.g. on application shutdown
+     */
+    public static synchronized void shutdownIfStarted(long timeoutMillis) {
+        if (instance != null) {
+            instance.shutdown(timeoutMillis);
+        }
+    }
+
+    /**
+     * Rate a bill, allocate its number and queue it for writing.
+     * The returned result is the acknowledgement: on success it carries the bill number the
+     * bill will be stored under. onComplete (may be null) is called from the writer thread
+     * once the bill is committed or has finally failed.
+     */
+    public BillResult enqueue(MeterReading reading, Consumer<BillResult> onComplete) {
+        admission.readLock().lock();
+        try {
+            if (!accepting) {
+                return BillResult.failure(reading.getCustomerId(), "Bill queue is shut down");
+            }
+            return rateAndQueue(reading, onComplete);
+        } finally {
+            admission.readLock().unlock();
+        }
+    }
+
+    private BillResult rateAndQueue(MeterReading reading, Consumer<BillResult> onComplete) {
+        String customerId = reading.getCustomerId();
+        if (reading.getPeriodStart() == null || reading.getPeriodEnd() == null) {
+            return BillResult.failure(customerId, "Missing billing period");
+        }
+        if (reading.getUsageCentiKwh() < 0) {
+            return BillResult.failure(customerId, "Current reading is less than previous reading");
+        }
+        int customerDbId = customerIdCache.idForCustomerId(customerId);
+        if (customerDbId == CustomerIdCache.NOT_FOUND) {
+            return BillResult.failure(customerId, "Customer not found");
+        }
+
+        BillingCalculation calc = billingService.calculateBill(reading.getUsageCentiKwh(),
+                billingService.scheduleFor(customerDbId, reading.getPeriodEnd()));
+        String billNumber;
+        try {
+            billNumber = billNumberAllocator.nextBillNumber();
+        } catch (SQLException e) {
+            logger.error("Error generating bill number for customer: {}", customerId, e);
+            return BillResult.failure(customerId, "Could not allocate bill number");
+        }
+
+        QueuedBill bill = new QueuedBill(reading, customerDbId, calc, billNumber, onComplete);
+        try {
+            if (!queue.offer(bill, ENQUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                logger.warn("Bill queue full, rejected bill for customer: {}", customerId);
+                return BillResult.failure(customerId, "Bill queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return BillResult.failure(customerId, "Interrupted while queueing bill");
+        }
+        enqueued.increment();
+        return BillResult.success(customerId, billNumber);
+    }
+
+    /**
+     * Writer loop: wait for a bill, gather more until the group is full or the flush
+     * interval has passed, then write the group in one transaction
+     */
+    private void drain() {
+        List<QueuedBill> group = new ArrayList<>(MAX_GROUP_SIZE);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                QueuedBill first = queue.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS);
+                while (group.size() < MAX_GROUP_SIZE) {
+                    queue.drainTo(group, MAX_GROUP_SIZE - group.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (group.size() >= MAX_GROUP_SIZE || remaining <= 0 || !accepting) {
+                        break;
+                    }
+                    QueuedBill next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown: stop waiting and write whatever is queued
+                accepting = false;
+                queue.drainTo(group, MAX_GROUP_SIZE - group.size());
+            }
+
+            if (!group.isEmpty()) {
+                writeGroup(group);
+                group.clear();
+            }
+        }
+        logger.info("Bill writer stopped: {}", getStats());
+    }
+
+    private void writeGroup(List<QueuedBill> group) {
+        int size = group.size();
+        List<MeterReading> rows = new ArrayList<>(size);
+        BillingCalculation[] calcs = new BillingCalculation[size];
+        StringIntMap idMap = new StringIntMap(size, CustomerIdCache.NOT_FOUND);
+        List<Integer> pending = new ArrayList<>(size);
+        String[] billNumbers = new String[size];
+        for (int i = 0; i < size; i++) {
+            QueuedBill bill = group.get(i);
+            rows.add(bill.reading);
+            calcs[i] = bill.calc;
+            idMap.put(bill.reading.getCustomerId(), bill.customerDbId);
+            pending.add(i);
+            billNumbers[i] = bill.billNumber;
+        }
+
+        BillResult[] results = new BillResult[size];
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            // Nothing from a failed attempt is known to be committed; inserts are idempotent
+            Arrays.fill(results, null);
+            try (Connection conn = DatabaseConfig.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(BillingService.INSERT_BILL_BY_CUSTOMER_ID)) {
+                    billingService.writeChunk(conn, pstmt, rows, calcs, idMap, pending, billNumbers, 0, size, results);
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                groupsCommitted.increment();
+                break;
+            } catch (SQLException e) {
+                if (attempt == MAX_ATTEMPTS || (!accepting && attempt >= 2)) {
+                    logger.error("Bill group of {} failed after {} attempts", size, attempt, e);
+                    for (int i = 0; i < size; i++) {
+                        if (results[i] == null) {
+                            results[i] = BillResult.failure(rows.get(i).getCustomerId(), e.getMessage());
+                        }
+                    }
+                    break;
+                }
+                logger.warn("Bill group of {} failed on attempt {}, retrying: {}", size, attempt, e.getMessage());
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                } catch (InterruptedException ie) {
+                    accepting = false;
+                }
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            BillResult result = results[i];
+            if (result.isSuccess()) {
+                written.increment();
+            } else {
+                failed.increment();
+                logger.error("Queued bill {} for customer {} was not written: {}",
+                        billNumbers[i], result.getCustomerId(), result.getMessage());
+            }
+            notify(group.get(i).onComplete, result);
+        }
+    }
+
+    private void notify(Consumer<BillResult> onComplete, BillResult result) {
+        if (onComplete == null) {
+            return;
+        }
+        try {
+            onComplete.accept(result);
+        } catch (RuntimeException e) {
+            logger.warn("Bill completion callback failed", e);
+        }
+    }
+
+    /**
+     * Stop accepting bills and wait for the writer to flush everything already queued.
+     * Bills still queued when the timeout runs out are failed through their callbacks.
+     * Only the first call does anything.
+     */
+    public synchronized void shutdown(long timeoutMillis) {
+        if (shutDown) {
+            return;
+        }
+        shutDown = true;
+        // Waits for enqueue calls that are past the accepting check
+        admission.writeLock().lock();
+        try {
+            accepting = false;
+        } finally {
+            admission.writeLock().unlock();
+        }
+        logger.info("Flushing {} queued bills", queue.size());
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            // Make the writer stop waiting; it finishes the group it holds
+            writer.interrupt();
+        }
+
+        List<QueuedBill> unwritten = new ArrayList<>();
+        queue.drainTo(unwritten);
+        if (!unwritten.isEmpty()) {
+            logger.error("Bill writer did not finish within {} ms, {} queued bills were not written",
+                    timeoutMillis, unwritten.size());
+        }
+        for (QueuedBill bill : unwritten) {
+            failed.increment();
+            notify(bill.onComplete, BillResult.failure(bill.reading.getCustomerId(),
+                    "Bill queue shut down before bill " + bill.billNumber + " was written"));
+        }
+    }
+
+    /**
+     * Number of bills acknowledged but not yet taken by the writer
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Get queue statistics
+     */
+    public String getStats() {
+        long groups = groupsCommitted.sum();
+        return String.format(
+            "Bill queue depth: %d, enqueued: %d, rejected: %d, written: %d, failed: %d, " +
+            "groups: %d (avg %.1f bills)",
+            queue.size(), enqueued.sum(), rejected.sum(), written.sum(), failed.sum(),
+            groups, groups == 0 ? 0.0 : (double) written.sum() / groups);
+    }
+}
@@ -0,0 +1,307 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.BillingRunReport;
+import lecbilling.mokopanemakhetha.model.MeterReading;
+import lecbilling.mokopanemakhetha.model.RatedBatch;
+import lecbilling.mokopanemakhetha.model.TariffSchedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Partitioned month-end billing engine.
+ * Active customers are split into shards by ranges of internal id, so each shard is read
+ * with a primary key range scan; every shard is read, rated and written on its own virtual
+ * thread and committed in its own transaction. A semaphore keeps the number of shards
+ * talking to the database at once below the connection pool size.
+ *
+ * Runs are resumable: a shard only picks up customers that have no bill for the period yet,
+ * so re-running a crashed cycle bills exactly the customers that were missed.
+ */
+public class BillingRunEngine {
+    private static final Logger logger = LoggerFactory.getLogger(BillingRunEngine.class);
+
+    private static final int DEFAULT_SHARD_COUNT = 64;
+    private static final int DEFAULT_DB_CONCURRENCY = 4;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 500;
+
+    /**
+     * Supplies the meter reading to bill for a customer, or null to skip the customer
+     */
+    @FunctionalInterface
+    public interface ReadingProvider {
+        MeterReading readingFor(String customerId, LocalDate periodStart, LocalDate periodEnd);
+    }
+
+    /**
+     * Notified each time a shard finishes, successfully or not
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(BillingRunReport report);
+    }
+
+    /**
+     * Counts and phase timings of one shard attempt, added to the report only once the
+     * shard has committed so a retried shard is counted once
+     */
+    private static final class ShardStats {
+        int customersRead;
+        long readNanos;
+        int billsRated;
+        int readingsSkipped;
+        long rateNanos;
+        int billsWritten;
+        long writeNanos;
+
+        void addTo(BillingRunReport report) {
+            report.recordRead(customersRead, readNanos);
+            report.recordRate(billsRated, readingsSkipped, rateNanos);
+            report.recordWrite(billsWritten, writeNanos);
+        }
+    }
+
+    private final BillingService billingService = BillingService.getInstance();
+    private final BillNumberAllocator billNumberAllocator = BillNumberAllocator.getInstance();
+    private final int shardCount;
+    private final int maxAttempts;
+    private final Semaphore dbPermits;
+
+    public BillingRunEngine() {
+        this(DEFAULT_SHARD_COUNT, DEFAULT_DB_CONCURRENCY, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    public BillingRunEngine(int shardCount, int dbConcurrency, int maxAttempts) {
+        if (shardCount < 1 || dbConcurrency < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Shard count, DB concurrency and attempts must be positive");
+        }
+        this.shardCount = shardCount;
+        this.maxAttempts = maxAttempts;
+        this.dbPermits = new Semaphore(dbConcurrency);
+    }
+
+    /**
+     * Bill every active customer for the given period and wait for all shards to finish
+     */
+    public BillingRunReport run(LocalDate periodStart, LocalDate periodEnd,
+                                ReadingProvider readings, ProgressListener listener) {
+        logger.info("Starting billing run for {} to {} with {} shards", periodStart, periodEnd, shardCount);
+        BillingRunReport report = new BillingRunReport(shardCount);
+
+        long[] bounds;
+        try {
+            bounds = shardBounds();
+        } catch (SQLException e) {
+            logger.error("Could not read the customer id range, billing run aborted", e);
+            for (int shard = 0; shard < shardCount; shard++) {
+                report.shardFailed();
+            }
+            report.finish();
+            notifyProgress(listener, report);
+            return report;
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                final int shardNo = shard;
+                executor.submit(() -> runShard(shardNo, bounds[shardNo], bounds[shardNo + 1],
+                        periodStart, periodEnd, readings, listener, report));
+            }
+        }
+
+        report.finish();
+        logger.info("Billing run for {} to {} finished: {}", periodStart, periodEnd, report);
+        return report;
+    }
+
+    /**
+     * Split the active customers' id range into one contiguous range per shard.
+     * Shard i covers ids [bounds[i], bounds[i + 1]); the last range is open-ended so
+     * customers added during the run are not missed.
+     */
+    private long[] shardBounds() throws SQLException {
+        String query = "SELECT MIN(id), MAX(id) FROM customers WHERE is_active = TRUE";
+        long minId = 0, maxId = -1;
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            if (rs.next() && rs.getObject(1) != null) {
+                minId = rs.getLong(1);
+                maxId = rs.getLong(2);
+            }
+        }
+        long span = maxId - minId + 1;
+        long[] bounds = new long[shardCount + 1];
+        for (int shard = 0; shard < shardCount; shard++) {
+            bounds[shard] = minId + span * shard / shardCount;
+        }
+        bounds[shardCount] = Long.MAX_VALUE;
+        return bounds;
+    }
+
+    /**
+     * Process one shard, restarting it from scratch after a failure
+     */
+    private void runShard(int shard, long fromId, long toId, LocalDate periodStart, LocalDate periodEnd,
+                          ReadingProvider readings, ProgressListener listener, BillingRunReport report) {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                ShardStats stats = new ShardStats();
+                processShard(shard, fromId, toId, periodStart, periodEnd, readings, stats);
+                stats.addTo(report);
+                report.shardCompleted();
+                notifyProgress(listener, report);
+                return;
+            } catch (SQLException e) {
+                if (attempt < maxAttempts) {
+                    logger.warn("Shard {} failed on attempt {}, retrying: {}", shard, attempt, e.getMessage());
+                    report.shardRetried();
+                    try {
+                        Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                } else {
+                    logger.error("Shard {} failed after {} attempts", shard, attempt, e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                // Not a database failure, so retrying would fail the same way
+                logger.error("Shard {} failed", shard, e);
+                break;
+            }
+        }
+        report.shardFailed();
+        notifyProgress(listener, report);
+    }
+
+    private void processShard(int shard, long fromId, long toId, LocalDate periodStart, LocalDate periodEnd,
+                              ReadingProvider readings, ShardStats stats)
+            throws SQLException, InterruptedException {
+        // Read phase: customers in this shard that are not billed for the period yet
+        long phaseStart = System.nanoTime();
+        List<Integer> customerDbIds = new ArrayList<>();
+        List<String> customerIds = new ArrayList<>();
+        List<String> customerClasses = new ArrayList<>();
+        // Ordered by class so each tariff schedule is rated in one run
+        String query = "SELECT c.id, c.customer_id, c.customer_class FROM customers c " +
+                      "WHERE c.is_active = TRUE AND c.id >= ? AND c.id < ? " +
+                      "AND NOT EXISTS (SELECT 1 FROM bills b WHERE b.customer_id = c.id " +
+                      "AND b.billing_period_start = ? AND b.billing_period_end = ?) " +
+                      "ORDER BY c.customer_class";
+
+        dbPermits.acquire();
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setLong(1, fromId);
+            pstmt.setLong(2, toId);
+            pstmt.setDate(3, Date.valueOf(periodStart));
+            pstmt.setDate(4, Date.valueOf(periodEnd));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    customerDbIds.add(rs.getInt(1));
+                    customerIds.add(rs.getString(2));
+                    customerClasses.add(rs.getString(3));
+                }
+            }
+        } finally {
+            dbPermits.release();
+        }
+        stats.customersRead = customerIds.size();
+        stats.readNanos = System.nanoTime() - phaseStart;
+
+        // Rate phase: pure computation, no database access
+        phaseStart = System.nanoTime();
+        Map<String, TariffSchedule> schedules = new HashMap<>();
+        TariffSchedule[] billedSchedules = new TariffSchedule[customerIds.size()];
+        List<Integer> billedDbIds = new ArrayList<>();
+        List<MeterReading> billedReadings = new ArrayList<>();
+        long[] usages = new long[customerIds.size()];
+        int skipped = 0;
+        for (int i = 0; i < customerIds.size(); i++) {
+            MeterReading reading = readings.readingFor(customerIds.get(i), periodStart, periodEnd);
+            if (reading == null || reading.getUsageCentiKwh() < 0) {
+                skipped++;
+                continue;
+            }
+            reading.setPeriodStart(periodStart);
+            reading.setPeriodEnd(periodEnd);
+            billedDbIds.add(customerDbIds.get(i));
+            billedSchedules[billedReadings.size()] = schedules.computeIfAbsent(customerClasses.get(i),
+                    customerClass -> billingService.scheduleFor(customerClass, periodEnd));
+            usages[billedReadings.size()] = reading.getUsageCentiKwh();
+            billedReadings.add(reading);
+        }
+        int billCount = billedReadings.size();
+        RatedBatch rated = new RatedBatch(billCount);
+        billingService.calculateBills(usages, billedSchedules, billCount, rated);
+        stats.billsRated = billCount;
+        stats.readingsSkipped = skipped;
+        stats.rateNanos = System.nanoTime() - phaseStart;
+
+        if (billCount == 0) {
+            return;
+        }
+
+        // Write phase: the whole shard commits or rolls back as one transaction
+        phaseStart = System.nanoTime();
+        String[] billNumbers = billNumberAllocator.nextBillNumbers(LocalDate.now().getYear(), billCount);
+
+        dbPermits.acquire();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(BillingService.INSERT_BILL_BY_CUSTOMER_ID)) {
+                for (int i = 0; i < billCount; i++) {
+                    billingService.bindBill(pstmt, billNumbers[i], billedDbIds.get(i),
+                            billedReadings.get(i), rated, i);
+                    pstmt.addBatch();
+                    if ((i + 1) % BillingService.BULK_CHUNK_SIZE == 0) {
+                        pstmt.executeBatch();
+                    }
+                }
+                pstmt.executeBatch();
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                // Roll back before autocommit is restored, which would commit the open transaction
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            dbPermits.release();
+        }
+        // Readings of customers already billed for the period are ignored by the table
+        for (int i = 0; i < billCount; i++) {
+            MeterStateTable.recordBillIfLoaded(billedDbIds.get(i), billedReadings.get(i));
+        }
+        stats.billsWritten = billCount;
+        stats.writeNanos = System.nanoTime() - phaseStart;
+        logger.debug("Shard {} committed {} bills", shard, billCount);
+    }
+
+    private void notifyProgress(ProgressListener listener, BillingRunReport report) {
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onProgress(report);
+        } catch (RuntimeException e) {
+            logger.warn("Billing run progress listener failed", e);
+        }
+    }
+}
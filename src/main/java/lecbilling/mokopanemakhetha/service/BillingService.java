@@ -2,14 +2,27 @@ package lecbilling.mokopanemakhetha.service;
 
 import lecbilling.mokopanemakhetha.config.DatabaseConfig;
 import lecbilling.mokopanemakhetha.model.Bill;
+import lecbilling.mokopanemakhetha.model.BillPage;
+import lecbilling.mokopanemakhetha.model.BillResult;
 import lecbilling.mokopanemakhetha.model.BillingCalculation;
+import lecbilling.mokopanemakhetha.model.MeterReading;
+import lecbilling.mokopanemakhetha.model.Money;
+import lecbilling.mokopanemakhetha.model.RatedBatch;
+import lecbilling.mokopanemakhetha.model.TariffSchedule;
+import lecbilling.mokopanemakhetha.util.StringIntMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Service for managing billing operations and calculations
@@ -18,10 +31,37 @@ public class BillingService {
     private static final Logger logger = LoggerFactory.getLogger(BillingService.class);
     private static BillingService instance;
 
-    // Tiered pricing rates (in Maloti per kWh)
-    private static final double RATE_TIER_1 = 1.20;  // 0-100 kWh
-    private static final double RATE_TIER_2 = 1.50;  // 101-300 kWh
-    private static final double RATE_TIER_3 = 2.00;  // Above 300 kWh
+    private final BillNumberAllocator billNumberAllocator = BillNumberAllocator.getInstance();
+    private final TariffService tariffService = TariffService.getInstance();
+    private final CustomerIdCache customerIdCache = CustomerIdCache.getInstance();
+    private final BillTotalsService billTotalsService = BillTotalsService.getInstance();
+
+    // Number of bills written per transaction in bulk billing runs
+    static final int BULK_CHUNK_SIZE = 500;
+
+    // Readings, usages and amounts (10 columns) are bound as longs with two implied decimals
+    private static final String FIXED_POINT_PARAMS = String.join(", ", Collections.nCopies(10, Money.SQL_PARAM));
+
+    // Idempotent: a customer has at most one bill per period, so a retried insert is a no-op
+    static final String INSERT_BILL_BY_CUSTOMER_ID =
+            "INSERT INTO bills (bill_number, customer_id, billing_period_start, " +
+            "billing_period_end, previous_reading, current_reading, electricity_usage, " +
+            "rate_tier_1_usage, rate_tier_2_usage, rate_tier_3_usage, " +
+            "rate_tier_1_amount, rate_tier_2_amount, rate_tier_3_amount, " +
+            "bill_amount, due_date, payment_status, created_by) " +
+            "VALUES (?, ?, ?, ?, " + FIXED_POINT_PARAMS + ", ?, 'UNPAID', ?) " +
+            "ON CONFLICT (customer_id, billing_period_start, billing_period_end) DO NOTHING";
+
+    private static final String BILL_HISTORY_COLUMNS =
+            "SELECT b.id, b.bill_number, b.billing_period_start, b.billing_period_end, " +
+            "b.electricity_usage, " + Money.sqlCents("b.bill_amount") + " AS bill_amount_cents, " +
+            "b.payment_status, b.due_date " +
+            "FROM bills b ";
+
+    private static final String BILL_HISTORY_ORDER = "ORDER BY b.billing_period_start DESC, b.id DESC";
+
+    // Rows per round trip when streaming bill history through a server-side cursor
+    private static final int STREAM_FETCH_SIZE = 500;
 
     private BillingService() {
     }
@@ -34,45 +74,126 @@ public class BillingService {
     }
 
     /**
-     * Calculate bill amount based on electricity usage with tiered pricing
+     * Calculate bill amount based on electricity usage with the tariff in force today
      */
     public BillingCalculation calculateBill(double usage) {
-        logger.debug("Calculating bill for usage: {} kWh", usage);
-        
+        return calculateBill(usage, tariffService.getCurrentSchedule());
+    }
+
+    /**
+     * Calculate bill amount with a specific tariff schedule.
+     * Bills store three tier columns, so tiers beyond the third are added to tier 3.
+     */
+    public BillingCalculation calculateBill(double usage, TariffSchedule schedule) {
+        return calculateBill(Money.toCents(usage), schedule);
+    }
+
+    /**
+     * Calculate a bill for a usage in centi-kWh, entirely in fixed point
+     */
+    public BillingCalculation calculateBill(long usage, TariffSchedule schedule) {
         BillingCalculation calc = new BillingCalculation();
-        calc.setTotalUsage(usage);
-        
-        double remainingUsage = usage;
-        
-        // Tier 3: Above 300 kWh
-        if (remainingUsage > 300) {
-            double tier3Usage = remainingUsage - 300;
-            calc.setTier3Usage(tier3Usage);
-            calc.setTier3Amount(tier3Usage * RATE_TIER_3);
-            remainingUsage = 300;
-        }
-        
-        // Tier 2: 101-300 kWh
-        if (remainingUsage > 100) {
-            double tier2Usage = remainingUsage - 100;
-            calc.setTier2Usage(tier2Usage);
-            calc.setTier2Amount(tier2Usage * RATE_TIER_2);
-            remainingUsage = 100;
+        calc.setTotalUsageCentiKwh(usage);
+        calc.setSchedule(schedule);
+
+        long tier1Usage = 0, tier2Usage = 0, tier3Usage = 0;
+        long tier1Amount = 0, tier2Amount = 0, tier3Amount = 0;
+        for (int tier = schedule.tierOf(usage); tier >= 0; tier--) {
+            long tierUsage = schedule.tierUsage(usage, tier);
+            long tierAmount = TariffSchedule.chargeCents(tierUsage, schedule.getRateUnits(tier));
+            if (tier == 0) {
+                tier1Usage += tierUsage;
+                tier1Amount += tierAmount;
+            } else if (tier == 1) {
+                tier2Usage += tierUsage;
+                tier2Amount += tierAmount;
+            } else {
+                tier3Usage += tierUsage;
+                tier3Amount += tierAmount;
+            }
         }
-        
-        // Tier 1: 0-100 kWh
-        if (remainingUsage > 0) {
-            calc.setTier1Usage(remainingUsage);
-            calc.setTier1Amount(remainingUsage * RATE_TIER_1);
+
+        calc.setTier1UsageCentiKwh(tier1Usage);
+        calc.setTier1AmountCents(tier1Amount);
+        calc.setTier2UsageCentiKwh(tier2Usage);
+        calc.setTier2AmountCents(tier2Amount);
+        calc.setTier3UsageCentiKwh(tier3Usage);
+        calc.setTier3AmountCents(tier3Amount);
+
+        long totalAmount = tier1Amount + tier2Amount + tier3Amount;
+        calc.setTotalAmountCents(totalAmount);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Bill calculated: {} kWh = {}", Money.toAmount(usage), Money.format(totalAmount));
         }
-        
-        double totalAmount = calc.getTier1Amount() + calc.getTier2Amount() + calc.getTier3Amount();
-        calc.setTotalAmount(totalAmount);
-        
-        logger.debug("Bill calculated: {} kWh = M{}", usage, String.format("%.2f", totalAmount));
         return calc;
     }
 
+    /**
+     * Rate many usage values at once into a reusable columnar batch.
+     * Produces the same figures as calculateBill without allocating per row.
+     */
+    public void calculateBills(double[] usages, int count, TariffSchedule schedule, RatedBatch out) {
+        RatingKernel.rate(schedule, usages, count, out);
+    }
+
+    /**
+     * Rate many usage values given in centi-kWh into a reusable columnar batch
+     */
+    public void calculateBills(long[] usages, int count, TariffSchedule schedule, RatedBatch out) {
+        RatingKernel.rate(schedule, usages, count, out);
+    }
+
+    /**
+     * Rate rows that may use different tariff schedules. Each run of consecutive rows with
+     * the same schedule is rated with one kernel call, so callers group rows by schedule.
+     */
+    public void calculateBills(long[] usages, TariffSchedule[] schedules, int count, RatedBatch out) {
+        out.resize(count);
+        RatedBatch run = null;
+        long[] runUsages = null;
+        int from = 0;
+        while (from < count) {
+            int to = from + 1;
+            while (to < count && schedules[to] == schedules[from]) {
+                to++;
+            }
+            if (from == 0 && to == count) {
+                calculateBills(usages, count, schedules[0], out);
+                return;
+            }
+            if (run == null) {
+                run = new RatedBatch(count);
+                runUsages = new long[count];
+            }
+            System.arraycopy(usages, from, runUsages, 0, to - from);
+            calculateBills(runUsages, to - from, schedules[from], run);
+            out.copyRows(run, to - from, from);
+            from = to;
+        }
+    }
+
+    /**
+     * Customer class of an internal customer id
+     */
+    String customerClassOf(int customerDbId) {
+        return customerIdCache.customerClassOf(customerDbId);
+    }
+
+    /**
+     * Get the tariff schedule a customer is billed on for a billing period
+     */
+    TariffSchedule scheduleFor(int customerDbId, LocalDate periodEnd) {
+        return scheduleFor(customerClassOf(customerDbId), periodEnd);
+    }
+
+    /**
+     * Get the tariff schedule of a customer class for a billing period
+     */
+    TariffSchedule scheduleFor(String customerClass, LocalDate periodEnd) {
+        return tariffService.getSchedule(customerClass, periodEnd);
+    }
+
     /**
      * Create a new bill for a customer
      */
@@ -80,48 +201,44 @@ public class BillingService {
                              LocalDate periodStart, LocalDate periodEnd) {
         logger.info("Creating bill for customer: {}", customerId);
         
-        double usage = currentReading - previousReading;
+        long usage = Money.toCents(currentReading) - Money.toCents(previousReading);
         if (usage < 0) {
             logger.error("Invalid reading: current reading is less than previous reading");
             return false;
         }
         
-        BillingCalculation calc = calculateBill(usage);
-        String billNumber = generateBillNumber();
-        LocalDate dueDate = periodEnd.plusDays(15); // 15 days after period end
-        
-        String query = "INSERT INTO bills (bill_number, customer_id, billing_period_start, " +
-                      "billing_period_end, previous_reading, current_reading, electricity_usage, " +
-                      "rate_tier_1_usage, rate_tier_2_usage, rate_tier_3_usage, " +
-                      "rate_tier_1_amount, rate_tier_2_amount, rate_tier_3_amount, " +
-                      "bill_amount, due_date, payment_status, created_by) " +
-                      "SELECT ?, c.id, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'UNPAID', ? " +
-                      "FROM customers c WHERE c.customer_id = ?";
+        int customerDbId = customerIdCache.idForCustomerId(customerId);
+        if (customerDbId == CustomerIdCache.NOT_FOUND) {
+            logger.error("Customer not found: {}", customerId);
+            return false;
+        }
+
+        MeterReading reading = new MeterReading(customerId, previousReading, currentReading, periodStart, periodEnd);
+        BillingCalculation calc = calculateBill(usage, scheduleFor(customerDbId, periodEnd));
+        String billNumber;
+        try {
+            billNumber = generateBillNumber();
+        } catch (SQLException e) {
+            logger.error("Error generating bill number for customer: {}", customerId, e);
+            return false;
+        }
 
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_BILL_BY_CUSTOMER_ID)) {
 
-            pstmt.setString(1, billNumber);
-            pstmt.setDate(2, Date.valueOf(periodStart));
-            pstmt.setDate(3, Date.valueOf(periodEnd));
-            pstmt.setDouble(4, previousReading);
-            pstmt.setDouble(5, currentReading);
-            pstmt.setDouble(6, usage);
-            pstmt.setDouble(7, calc.getTier1Usage());
-            pstmt.setDouble(8, calc.getTier2Usage());
-            pstmt.setDouble(9, calc.getTier3Usage());
-            pstmt.setDouble(10, calc.getTier1Amount());
-            pstmt.setDouble(11, calc.getTier2Amount());
-            pstmt.setDouble(12, calc.getTier3Amount());
-            pstmt.setDouble(13, calc.getTotalAmount());
-            pstmt.setDate(14, Date.valueOf(dueDate));
-            pstmt.setInt(15, 1); // Default to admin - should come from session
-            pstmt.setString(16, customerId);
+            bindBill(pstmt, billNumber, customerDbId, reading, calc);
 
             int rowsAffected = pstmt.executeUpdate();
             
             if (rowsAffected > 0) {
                 logger.info("Bill created successfully: {} for customer: {}", billNumber, customerId);
+                MeterStateTable.recordBillIfLoaded(customerDbId, reading);
+                return true;
+            }
+
+            String existing = findExistingBillNumber(conn, customerDbId, periodStart, periodEnd);
+            if (existing != null) {
+                logger.info("Customer {} already billed for {} to {}: {}", customerId, periodStart, periodEnd, existing);
                 return true;
             }
         } catch (SQLException e) {
@@ -131,36 +248,311 @@ public class BillingService {
         return false;
     }
 
+    /**
+     * Create a bill without waiting for the database. The bill is rated and numbered now and
+     * written in the background by the BillWriteQueue; the returned result carries the bill
+     * number, and onComplete (may be null) reports the outcome once the bill is committed.
+     */
+    public BillResult createBillAsync(String customerId, double currentReading, double previousReading,
+                                      LocalDate periodStart, LocalDate periodEnd, Consumer<BillResult> onComplete) {
+        MeterReading reading = new MeterReading(customerId, previousReading, currentReading, periodStart, periodEnd);
+        return BillWriteQueue.getInstance().enqueue(reading, onComplete);
+    }
+
+    /**
+     * Create bills for a whole billing cycle.
+     * Customer ids are resolved with a single query, tier breakdowns are computed in memory
+     * on each customer's tariff schedule and bills are written with batched inserts, one
+     * transaction per chunk.
+     * Readings for a customer and period that is already billed are reported as existing
+     * bills, so a failed run can simply be retried.
+     * Returns one result per reading, in the iteration order of the collection.
+     */
+    public List<BillResult> createBills(Collection<MeterReading> readings) {
+        long started = System.nanoTime();
+        List<MeterReading> rows = new ArrayList<>(readings);
+        BillResult[] results = new BillResult[rows.size()];
+        logger.info("Creating {} bills in bulk", rows.size());
+
+        // Validate every reading first
+        BillingCalculation[] calcs = new BillingCalculation[rows.size()];
+        Set<String> customerIds = new HashSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            MeterReading reading = rows.get(i);
+            String error = validateReading(reading);
+            if (error != null) {
+                results[i] = BillResult.failure(reading == null ? null : reading.getCustomerId(), error);
+                continue;
+            }
+            customerIds.add(reading.getCustomerId());
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            StringIntMap idMap = customerIdCache.resolveCustomerIds(conn, customerIds);
+
+            List<Integer> pending = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                if (results[i] != null) {
+                    continue;
+                }
+                MeterReading reading = rows.get(i);
+                if (!idMap.containsKey(reading.getCustomerId())) {
+                    results[i] = BillResult.failure(reading.getCustomerId(), "Customer not found");
+                    continue;
+                }
+                calcs[i] = calculateBill(reading.getUsageCentiKwh(),
+                        scheduleFor(idMap.get(reading.getCustomerId()), reading.getPeriodEnd()));
+                pending.add(i);
+            }
+
+            String[] billNumbers = billNumberAllocator.nextBillNumbers(LocalDate.now().getYear(), pending.size());
+
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_BILL_BY_CUSTOMER_ID)) {
+                for (int from = 0; from < pending.size(); from += BULK_CHUNK_SIZE) {
+                    int to = Math.min(from + BULK_CHUNK_SIZE, pending.size());
+                    writeChunk(conn, pstmt, rows, calcs, idMap, pending, billNumbers, from, to, results);
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            logger.error("Error during bulk bill creation", e);
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = BillResult.failure(rows.get(i).getCustomerId(), e.getMessage());
+                }
+            }
+        }
+
+        long created = Arrays.stream(results).filter(BillResult::isSuccess).count();
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        logger.info("Bulk billing created {}/{} bills in {} s ({} bills/min)", created, rows.size(),
+                String.format("%.2f", seconds), String.format("%.0f", seconds > 0 ? created * 60 / seconds : 0));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Write one chunk of bills in a single transaction. If the batch fails, the chunk is
+     * rolled back and retried row by row so only the offending rows are reported as failed.
+     * Once the batch is committed it is never replayed; if the results then cannot be read
+     * back, the rows are reported as unconfirmed and meter state catches up on its refresh.
+     */
+    void writeChunk(Connection conn, PreparedStatement pstmt, List<MeterReading> rows,
+                            BillingCalculation[] calcs, StringIntMap idMap, List<Integer> pending,
+                            String[] billNumbers, int from, int to, BillResult[] results) throws SQLException {
+        int[] counts;
+        try {
+            for (int p = from; p < to; p++) {
+                int i = pending.get(p);
+                MeterReading reading = rows.get(i);
+                bindBill(pstmt, billNumbers[p], idMap.get(reading.getCustomerId()), reading, calcs[i]);
+                pstmt.addBatch();
+            }
+            counts = pstmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            logger.warn("Batch of {} bills failed, retrying row by row: {}", to - from, e.getMessage());
+            pstmt.clearBatch();
+            conn.rollback();
+            writeRowByRow(conn, pstmt, rows, calcs, idMap, pending, billNumbers, from, to, results);
+            return;
+        }
+
+        try {
+            Set<String> inserted = insertedBillNumbers(conn, counts, billNumbers, from, to);
+            for (int p = from; p < to; p++) {
+                int i = pending.get(p);
+                MeterReading reading = rows.get(i);
+                if (inserted.contains(billNumbers[p])) {
+                    results[i] = BillResult.success(reading.getCustomerId(), billNumbers[p]);
+                    MeterStateTable.recordBillIfLoaded(idMap.get(reading.getCustomerId()), reading);
+                } else {
+                    results[i] = existingResult(conn, idMap.get(reading.getCustomerId()), reading);
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            logger.error("Batch of {} bills was committed but its results could not be read back", to - from, e);
+            conn.rollback();
+            for (int p = from; p < to; p++) {
+                int i = pending.get(p);
+                if (results[i] == null) {
+                    results[i] = BillResult.failure(rows.get(i).getCustomerId(),
+                            "Bill was saved but could not be confirmed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Insert a rolled-back chunk one row at a time, each under its own savepoint
+     */
+    private void writeRowByRow(Connection conn, PreparedStatement pstmt, List<MeterReading> rows,
+                               BillingCalculation[] calcs, StringIntMap idMap, List<Integer> pending,
+                               String[] billNumbers, int from, int to, BillResult[] results) throws SQLException {
+        // Meter state only learns about the bills once they are committed
+        List<MeterReading> inserted = new ArrayList<>(to - from);
+        for (int p = from; p < to; p++) {
+            int i = pending.get(p);
+            MeterReading reading = rows.get(i);
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                bindBill(pstmt, billNumbers[p], idMap.get(reading.getCustomerId()), reading, calcs[i]);
+                int rowsAffected = pstmt.executeUpdate();
+                conn.releaseSavepoint(savepoint);
+                if (rowsAffected > 0) {
+                    results[i] = BillResult.success(reading.getCustomerId(), billNumbers[p]);
+                    inserted.add(reading);
+                } else {
+                    results[i] = existingResult(conn, idMap.get(reading.getCustomerId()), reading);
+                }
+            } catch (SQLException e) {
+                conn.rollback(savepoint);
+                results[i] = BillResult.failure(reading.getCustomerId(), e.getMessage());
+                logger.error("Error creating bill for customer: {}", reading.getCustomerId(), e);
+            }
+        }
+        conn.commit();
+        for (MeterReading reading : inserted) {
+            MeterStateTable.recordBillIfLoaded(idMap.get(reading.getCustomerId()), reading);
+        }
+    }
+
+    /**
+     * Bill numbers of the chunk that were actually inserted. Update counts say so directly,
+     * except when the driver rewrote the batch into multi-row inserts and only reports
+     * SUCCESS_NO_INFO; then the numbers are checked with one query.
+     */
+    Set<String> insertedBillNumbers(Connection conn, int[] counts, String[] billNumbers,
+                                    int from, int to) throws SQLException {
+        Set<String> inserted = new HashSet<>((to - from) * 2);
+        boolean known = counts.length == to - from;
+        for (int c = 0; known && c < counts.length; c++) {
+            if (counts[c] == Statement.SUCCESS_NO_INFO) {
+                known = false;
+            } else if (counts[c] > 0) {
+                inserted.add(billNumbers[from + c]);
+            }
+        }
+        if (known) {
+            return inserted;
+        }
+
+        inserted.clear();
+        String query = "SELECT bill_number FROM bills WHERE bill_number = ANY(?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", Arrays.copyOfRange(billNumbers, from, to)));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    inserted.add(rs.getString(1));
+                }
+            }
+        }
+        return inserted;
+    }
+
+    private BillResult existingResult(Connection conn, int customerDbId, MeterReading reading) throws SQLException {
+        String existing = findExistingBillNumber(conn, customerDbId, reading.getPeriodStart(), reading.getPeriodEnd());
+        return existing != null
+                ? BillResult.existing(reading.getCustomerId(), existing)
+                : BillResult.failure(reading.getCustomerId(), "Bill was not created");
+    }
+
+    /**
+     * Bill number of the customer's bill for exactly this period, or null if there is none
+     */
+    private String findExistingBillNumber(Connection conn, int customerDbId, LocalDate periodStart,
+                                          LocalDate periodEnd) throws SQLException {
+        String query = "SELECT bill_number FROM bills " +
+                      "WHERE customer_id = ? AND billing_period_start = ? AND billing_period_end = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, customerDbId);
+            pstmt.setObject(2, periodStart);
+            pstmt.setObject(3, periodEnd);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    void bindBill(PreparedStatement pstmt, String billNumber, int customerDbId,
+                  MeterReading reading, BillingCalculation calc) throws SQLException {
+        bindBill(pstmt, billNumber, customerDbId, reading, reading.getUsageCentiKwh(),
+                calc.getTier1UsageCentiKwh(), calc.getTier2UsageCentiKwh(), calc.getTier3UsageCentiKwh(),
+                calc.getTier1AmountCents(), calc.getTier2AmountCents(), calc.getTier3AmountCents(),
+                calc.getTotalAmountCents());
+    }
+
+    void bindBill(PreparedStatement pstmt, String billNumber, int customerDbId,
+                  MeterReading reading, RatedBatch batch, int row) throws SQLException {
+        bindBill(pstmt, billNumber, customerDbId, reading, batch.usage()[row],
+                batch.tier1Usage()[row], batch.tier2Usage()[row], batch.tier3Usage()[row],
+                batch.tier1Amount()[row], batch.tier2Amount()[row], batch.tier3Amount()[row],
+                batch.totalAmount()[row]);
+    }
+
+    private void bindBill(PreparedStatement pstmt, String billNumber, int customerDbId, MeterReading reading,
+                          long usage, long tier1Usage, long tier2Usage, long tier3Usage,
+                          long tier1Amount, long tier2Amount, long tier3Amount,
+                          long totalAmount) throws SQLException {
+        pstmt.setString(1, billNumber);
+        pstmt.setInt(2, customerDbId);
+        pstmt.setDate(3, Date.valueOf(reading.getPeriodStart()));
+        pstmt.setDate(4, Date.valueOf(reading.getPeriodEnd()));
+        pstmt.setLong(5, Money.toCents(reading.getPreviousReading()));
+        pstmt.setLong(6, Money.toCents(reading.getCurrentReading()));
+        pstmt.setLong(7, usage);
+        pstmt.setLong(8, tier1Usage);
+        pstmt.setLong(9, tier2Usage);
+        pstmt.setLong(10, tier3Usage);
+        pstmt.setLong(11, tier1Amount);
+        pstmt.setLong(12, tier2Amount);
+        pstmt.setLong(13, tier3Amount);
+        pstmt.setLong(14, totalAmount);
+        pstmt.setDate(15, Date.valueOf(reading.getPeriodEnd().plusDays(15))); // 15 days after period end
+        pstmt.setInt(16, 1); // Default to admin - should come from session
+    }
+
+    private String validateReading(MeterReading reading) {
+        if (reading == null || reading.getCustomerId() == null) {
+            return "Missing customer ID";
+        }
+        if (reading.getPeriodStart() == null || reading.getPeriodEnd() == null) {
+            return "Missing billing period";
+        }
+        if (reading.getUsageCentiKwh() < 0) {
+            return "Current reading is less than previous reading";
+        }
+        return null;
+    }
+
     /**
      * Get all bills for a customer
      */
     public List<Bill> getCustomerBills(String customerId) {
         logger.debug("Fetching bills for customer: {}", customerId);
         List<Bill> bills = new ArrayList<>();
+
+        int customerDbId = customerIdCache.idForCustomerId(customerId);
+        if (customerDbId == CustomerIdCache.NOT_FOUND) {
+            logger.warn("Customer not found: {}", customerId);
+            return bills;
+        }
         
-        String query = "SELECT b.bill_number, b.billing_period_start, b.billing_period_end, " +
-                      "b.electricity_usage, b.bill_amount, b.payment_status, b.due_date, b.created_at " +
-                      "FROM bills b " +
-                      "JOIN customers c ON b.customer_id = c.id " +
-                      "WHERE c.customer_id = ? " +
-                      "ORDER BY b.billing_period_start DESC";
+        String query = BILL_HISTORY_COLUMNS +
+                      "WHERE b.customer_id = ? " +
+                      BILL_HISTORY_ORDER;
 
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(query)) {
 
-            pstmt.setString(1, customerId);
+            pstmt.setInt(1, customerDbId);
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Bill bill = new Bill();
-                    bill.setBillNumber(rs.getString("bill_number"));
-                    bill.setPeriodStart(rs.getDate("billing_period_start").toLocalDate());
-                    bill.setPeriodEnd(rs.getDate("billing_period_end").toLocalDate());
-                    bill.setUsage(rs.getDouble("electricity_usage"));
-                    bill.setAmount(rs.getDouble("bill_amount"));
-                    bill.setPaymentStatus(rs.getString("payment_status"));
-                    bill.setDueDate(rs.getDate("due_date").toLocalDate());
-                    bills.add(bill);
+                    bills.add(readBill(rs, new Bill(), customerId));
                 }
             }
             
@@ -172,6 +564,135 @@ public class BillingService {
         return bills;
     }
 
+    /**
+     * Get the newest page of a customer's bills
+     */
+    public BillPage getCustomerBillsPage(String customerId, int pageSize) {
+        return getCustomerBillsPage(customerId, null, 0, pageSize);
+    }
+
+    /**
+     * Get the page of bills that follows the given page
+     */
+    public BillPage getNextCustomerBillsPage(BillPage page) {
+        if (!page.hasMore()) {
+            return new BillPage(page.getCustomerId(), new ArrayList<>(), page.getPageSize(), false);
+        }
+        return getCustomerBillsPage(page.getCustomerId(), page.getLastPeriodStart(), page.getLastBillId(),
+                page.getPageSize());
+    }
+
+    /**
+     * Get up to pageSize bills older than the (period start, bill id) cursor, newest first.
+     * A null period start returns the newest page. Served from the
+     * (customer_id, billing_period_start, id) index, so the cost does not depend on how
+     * far back the page is. pageSize must be at least 1.
+     */
+    public BillPage getCustomerBillsPage(String customerId, LocalDate beforePeriodStart, int beforeBillId,
+                                         int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        List<Bill> bills = new ArrayList<>(pageSize);
+        int customerDbId = customerIdCache.idForCustomerId(customerId);
+        if (customerDbId == CustomerIdCache.NOT_FOUND) {
+            logger.warn("Customer not found: {}", customerId);
+            return new BillPage(customerId, bills, pageSize, false);
+        }
+
+        String query = BILL_HISTORY_COLUMNS +
+                      "WHERE b.customer_id = ? " +
+                      (beforePeriodStart != null ? "AND (b.billing_period_start, b.id) < (?, ?) " : "") +
+                      BILL_HISTORY_ORDER + " LIMIT ?";
+
+        boolean hasMore = false;
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+            int param = 1;
+            pstmt.setInt(param++, customerDbId);
+            if (beforePeriodStart != null) {
+                pstmt.setObject(param++, beforePeriodStart);
+                pstmt.setInt(param++, beforeBillId);
+            }
+            // One extra row tells whether another page exists
+            pstmt.setInt(param, pageSize + 1);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (bills.size() == pageSize) {
+                        hasMore = true;
+                        break;
+                    }
+                    bills.add(readBill(rs, new Bill(), customerId));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error fetching bills page for customer: {}", customerId, e);
+        }
+
+        return new BillPage(customerId, bills, pageSize, hasMore);
+    }
+
+    /**
+     * Stream a customer's full bill history, newest first, through a server-side cursor
+     * without building a list. The same Bill instance is refilled for every row, so the
+     * action must copy anything it keeps. Returns the number of bills visited, or -1 on error.
+     */
+    public long forEachCustomerBill(String customerId, Consumer<Bill> action) {
+        int customerDbId = customerIdCache.idForCustomerId(customerId);
+        if (customerDbId == CustomerIdCache.NOT_FOUND) {
+            logger.warn("Customer not found: {}", customerId);
+            return 0;
+        }
+
+        String query = BILL_HISTORY_COLUMNS +
+                      "WHERE b.customer_id = ? " +
+                      BILL_HISTORY_ORDER;
+
+        long count = 0;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            // PostgreSQL only honours the fetch size inside a transaction
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+                pstmt.setFetchSize(STREAM_FETCH_SIZE);
+                pstmt.setInt(1, customerDbId);
+
+                Bill bill = new Bill();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        action.accept(readBill(rs, bill, customerId));
+                        count++;
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            logger.debug("Streamed {} bills for customer: {}", count, customerId);
+        } catch (SQLException e) {
+            logger.error("Error streaming bills for customer: {}", customerId, e);
+            return -1;
+        }
+        return count;
+    }
+
+    private static Bill readBill(ResultSet rs, Bill bill, String customerId) throws SQLException {
+        bill.setId(rs.getInt("id"));
+        bill.setBillNumber(rs.getString("bill_number"));
+        bill.setCustomerId(customerId);
+        bill.setPeriodStart(rs.getObject("billing_period_start", LocalDate.class));
+        bill.setPeriodEnd(rs.getObject("billing_period_end", LocalDate.class));
+        bill.setUsage(rs.getDouble("electricity_usage"));
+        bill.setAmountCents(rs.getLong("bill_amount_cents"));
+        bill.setPaymentStatus(rs.getString("payment_status"));
+        bill.setDueDate(rs.getObject("due_date", LocalDate.class));
+        return bill;
+    }
+
     /**
      * Mark a bill as paid
      */
@@ -201,78 +722,58 @@ public class BillingService {
     }
 
     /**
-     * Get unpaid bills count
+     * Get unpaid bills count from the running totals
      */
     public int getUnpaidBillsCount() {
-        String query = "SELECT COUNT(*) FROM bills WHERE payment_status = 'UNPAID'";
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting unpaid bills count", e);
-        }
-        
-        return 0;
+        return billTotalsService.getUnpaidCount();
     }
 
     /**
      * Get total outstanding amount
      */
     public double getTotalOutstandingAmount() {
-        String query = "SELECT COALESCE(SUM(bill_amount), 0) FROM bills WHERE payment_status = 'UNPAID'";
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            
-            if (rs.next()) {
-                return rs.getDouble(1);
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting total outstanding amount", e);
-        }
-        
-        return 0.0;
+        return Money.toAmount(getTotalOutstandingCents());
     }
 
     /**
-     * Generate a unique bill number
+     * Get total outstanding amount in cents from the running totals
      */
-    private String generateBillNumber() {
-        String query = "SELECT COUNT(*) FROM bills";
-        
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            
-            if (rs.next()) {
-                int count = rs.getInt(1) + 1;
-                return String.format("BILL-%d-%05d", LocalDate.now().getYear(), count);
-            }
-        } catch (SQLException e) {
-            logger.error("Error generating bill number", e);
-        }
-        
-        return String.format("BILL-%d-%05d", LocalDate.now().getYear(), 
-                           System.currentTimeMillis() % 100000);
+    public long getTotalOutstandingCents() {
+        return billTotalsService.getOutstandingCents();
+    }
+
+    /**
+     * Generate a unique bill number from the sequence-backed allocator
+     */
+    private String generateBillNumber() throws SQLException {
+        return billNumberAllocator.nextBillNumber();
+    }
+
+    /**
+     * Get bill number allocation statistics
+     */
+    public String getBillNumberStats() {
+        return billNumberAllocator.getStats();
+    }
+
+    /**
+     * Get running totals reconciliation statistics
+     */
+    public String getBillTotalsStats() {
+        return billTotalsService.getStats();
+    }
+
+    /**
+     * Get customer id cache statistics
+     */
+    public String getCustomerIdCacheStats() {
+        return customerIdCache.getStats();
     }
 
     /**
      * Get pricing rates information
      */
     public String getPricingInfo() {
-        return String.format(
-            "Tiered Pricing Rates:\n" +
-            "Tier 1 (0-100 kWh): M%.2f per kWh\n" +
-            "Tier 2 (101-300 kWh): M%.2f per kWh\n" +
-            "Tier 3 (Above 300 kWh): M%.2f per kWh",
-            RATE_TIER_1, RATE_TIER_2, RATE_TIER_3
-        );
+        return tariffService.getPricingInfo(tariffService.getCurrentSchedule());
     }
 }
-
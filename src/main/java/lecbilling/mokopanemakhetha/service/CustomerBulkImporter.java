@@ -0,0 +1,417 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.CustomerImportReport;
+import lecbilling.mokopanemakhetha.model.CustomerImportReport.RowStatus;
+import lecbilling.mokopanemakhetha.util.BloomFilter;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bulk-loads customers from a CSV file, e.g. when onboarding a district.
+ * Rows are read in batches. Each batch is checked for bad fields and for customer_id or
+ * meter_number values repeated in the file, then screened against two Bloom filters
+ * built from every existing customer; only keys the filters cannot rule out are looked
+ * up, with one = ANY(?) query per batch. The surviving rows are streamed with COPY into
+ * a temporary staging table and merged into customers with a single INSERT ... SELECT,
+ * one transaction per batch. The staging table lives only inside that transaction, so the
+ * import also works through a transaction-mode pooler, where consecutive transactions
+ * may run on different server sessions. Rejected rows are written to a reject file.
+ *
+ * Expected columns: customer_id,name,address,meter_number[,phone_number], with an
+ * optional header row. Fields may be double-quoted.
+ */
+public class CustomerBulkImporter {
+    private static final Logger logger = LoggerFactory.getLogger(CustomerBulkImporter.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 5_000;
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    // Column sizes of the customers table
+    private static final int MAX_CUSTOMER_ID = 20;
+    private static final int MAX_NAME = 100;
+    private static final int MAX_ADDRESS = 255;
+    private static final int MAX_METER_NUMBER = 50;
+    private static final int MAX_PHONE_NUMBER = 20;
+
+    // Created in each batch's transaction and dropped by its commit or rollback
+    private static final String CREATE_STAGING =
+            "CREATE TEMP TABLE customer_import_staging (" +
+            "line_no BIGINT, customer_id VARCHAR(20), name VARCHAR(100), address VARCHAR(255), " +
+            "meter_number VARCHAR(50), phone_number VARCHAR(20)) ON COMMIT DROP";
+
+    private static final String COPY_STAGING =
+            "COPY customer_import_staging (line_no, customer_id, name, address, meter_number, phone_number) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    // Rows that lost a race with a concurrent insert are skipped and reported by the caller
+    private static final String MERGE_STAGING =
+            "INSERT INTO customers (customer_id, name, address, meter_number, phone_number, created_by) " +
+            "SELECT customer_id, name, address, meter_number, phone_number, ? " +
+            "FROM customer_import_staging ORDER BY line_no " +
+            "ON CONFLICT DO NOTHING RETURNING customer_id";
+
+    private static final String FIND_EXISTING =
+            "SELECT customer_id, meter_number FROM customers " +
+            "WHERE customer_id = ANY(?) OR meter_number = ANY(?)";
+
+    private static final String REJECT_HEADER = "line,customer_id,meter_number,status,detail";
+
+    /**
+     * One parsed customer row
+     */
+    private static final class Row {
+        final long lineNo;
+        final String customerId;
+        final String name;
+        final String address;
+        final String meterNumber;
+        final String phoneNumber;
+
+        Row(long lineNo, List<String> fields) {
+            this.lineNo = lineNo;
+            this.customerId = fields.get(0).trim();
+            this.name = fields.get(1).trim();
+            this.address = fields.get(2).trim();
+            this.meterNumber = fields.get(3).trim();
+            this.phoneNumber = fields.size() > 4 && !fields.get(4).isBlank() ? fields.get(4).trim() : null;
+        }
+    }
+
+    private final int batchSize;
+    private final int createdBy;
+
+    /**
+     * @param createdBy users.id recorded as the creator of every imported customer
+     */
+    public CustomerBulkImporter(int createdBy) {
+        this(createdBy, DEFAULT_BATCH_SIZE);
+    }
+
+    public CustomerBulkImporter(int createdBy, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.createdBy = createdBy;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Import a customer CSV file, writing rejected rows to rejectFile
+     */
+    public CustomerImportReport importCsv(Path file, Path rejectFile) throws IOException, SQLException {
+        logger.info("Importing customers from {}", file);
+        CustomerImportReport report = new CustomerImportReport(file, rejectFile);
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+
+            rejects.write(REJECT_HEADER);
+            rejects.newLine();
+
+            long expectedRows = Math.max(Files.size(file) / 60, batchSize);
+            BloomFilter[] existing = loadExistingKeys(conn, expectedRows);
+            CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+
+            Set<String> idsInFile = new HashSet<>();
+            Set<String> metersInFile = new HashSet<>();
+            List<Row> batch = new ArrayList<>(batchSize);
+            List<String> fields = new ArrayList<>(5);
+
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                String line;
+                long lineNo = 0;
+                while ((line = in.readLine()) != null) {
+                    lineNo++;
+                    if (line.isBlank() || (lineNo == 1 && line.toLowerCase().startsWith("customer_id"))) {
+                        continue;
+                    }
+                    report.lineRead();
+
+                    String problem = parse(line, fields);
+                    if (problem != null) {
+                        reject(rejects, report, lineNo, null, null, RowStatus.INVALID, problem);
+                        continue;
+                    }
+                    Row row = new Row(lineNo, fields);
+                    problem = validate(row);
+                    if (problem != null) {
+                        reject(rejects, report, lineNo, row.customerId, row.meterNumber, RowStatus.INVALID, problem);
+                        continue;
+                    }
+                    if (!idsInFile.add(row.customerId)) {
+                        reject(rejects, report, lineNo, row.customerId, row.meterNumber,
+                                RowStatus.DUPLICATE_IN_FILE, "customer_id appears earlier in the file");
+                        continue;
+                    }
+                    if (!metersInFile.add(row.meterNumber)) {
+                        reject(rejects, report, lineNo, row.customerId, row.meterNumber,
+                                RowStatus.DUPLICATE_IN_FILE, "meter_number appears earlier in the file");
+                        continue;
+                    }
+
+                    batch.add(row);
+                    if (batch.size() == batchSize) {
+                        writeBatch(conn, copyManager, batch, existing, rejects, report);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    writeBatch(conn, copyManager, batch, existing, rejects, report);
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        report.finish();
+        logger.info("Customer import finished: {}", report);
+        return report;
+    }
+
+    /**
+     * Build Bloom filters over every customer_id and meter_number already in the table,
+     * including inactive customers, which still hold their unique keys
+     */
+    private BloomFilter[] loadExistingKeys(Connection conn, long expectedNewRows) throws SQLException {
+        long existingRows = 0;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM customers")) {
+            if (rs.next()) {
+                existingRows = rs.getLong(1);
+            }
+        }
+        long expected = existingRows + expectedNewRows;
+        BloomFilter ids = new BloomFilter(expected, BLOOM_FALSE_POSITIVE_RATE);
+        BloomFilter meters = new BloomFilter(expected, BLOOM_FALSE_POSITIVE_RATE);
+
+        boolean autoCommit = conn.getAutoCommit();
+        // A fetch size only streams inside a transaction
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(10_000);
+            try (ResultSet rs = stmt.executeQuery("SELECT customer_id, meter_number FROM customers")) {
+                while (rs.next()) {
+                    ids.put(rs.getString(1));
+                    meters.put(rs.getString(2));
+                }
+            }
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        logger.info("Loaded {} existing customers into duplicate filters ({} KB)",
+                ids.getInsertedCount(), (ids.bytes() + meters.bytes()) / 1024);
+        return new BloomFilter[]{ids, meters};
+    }
+
+    /**
+     * Drop rows that clash with existing customers, then COPY and merge the rest
+     */
+    private void writeBatch(Connection conn, CopyManager copyManager, List<Row> batch, BloomFilter[] existing,
+                            BufferedWriter rejects, CustomerImportReport report) throws IOException, SQLException {
+        List<Row> candidates = rejectExisting(conn, batch, existing, rejects, report);
+        if (candidates.isEmpty()) {
+            // End the transaction the duplicate lookup may have opened
+            conn.commit();
+            return;
+        }
+
+        StringBuilder csv = new StringBuilder(candidates.size() * 96);
+        for (Row row : candidates) {
+            csv.append(row.lineNo).append(',');
+            appendCsv(csv, row.customerId).append(',');
+            appendCsv(csv, row.name).append(',');
+            appendCsv(csv, row.address).append(',');
+            appendCsv(csv, row.meterNumber).append(',');
+            if (row.phoneNumber != null) {
+                appendCsv(csv, row.phoneNumber);
+            }
+            csv.append('\n');
+        }
+
+        Set<String> inserted = new HashSet<>();
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_STAGING);
+            }
+            copyManager.copyIn(COPY_STAGING, new StringReader(csv.toString()));
+            try (PreparedStatement merge = conn.prepareStatement(MERGE_STAGING)) {
+                merge.setInt(1, createdBy);
+                try (ResultSet rs = merge.executeQuery()) {
+                    while (rs.next()) {
+                        inserted.add(rs.getString(1));
+                    }
+                }
+            }
+            conn.commit();
+            report.batchCommitted();
+        } catch (SQLException | IOException e) {
+            conn.rollback();
+            throw e;
+        }
+
+        for (Row row : candidates) {
+            if (inserted.contains(row.customerId)) {
+                report.record(RowStatus.IMPORTED);
+            } else {
+                reject(rejects, report, row.lineNo, row.customerId, row.meterNumber,
+                        RowStatus.DUPLICATE_CUSTOMER_ID, "customer_id or meter_number was added by another user during the import");
+            }
+        }
+        // Later batches must see this batch's keys as existing
+        for (Row row : candidates) {
+            existing[0].put(row.customerId);
+            existing[1].put(row.meterNumber);
+        }
+        logger.debug("Imported batch of {} customers", inserted.size());
+    }
+
+    /**
+     * Reject rows whose customer_id or meter_number is already taken. Only rows the Bloom
+     * filters flag as possibly present are looked up in the database.
+     */
+    private List<Row> rejectExisting(Connection conn, List<Row> batch, BloomFilter[] existing,
+                                     BufferedWriter rejects, CustomerImportReport report)
+            throws IOException, SQLException {
+        List<String> maybeIds = new ArrayList<>();
+        List<String> maybeMeters = new ArrayList<>();
+        for (Row row : batch) {
+            if (existing[0].mightContain(row.customerId)) {
+                maybeIds.add(row.customerId);
+            }
+            if (existing[1].mightContain(row.meterNumber)) {
+                maybeMeters.add(row.meterNumber);
+            }
+        }
+        report.duplicateScreened(batch.size(), Math.max(maybeIds.size(), maybeMeters.size()));
+        if (maybeIds.isEmpty() && maybeMeters.isEmpty()) {
+            return batch;
+        }
+
+        Set<String> takenIds = new HashSet<>();
+        Set<String> takenMeters = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(FIND_EXISTING)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", maybeIds.toArray()));
+            pstmt.setArray(2, conn.createArrayOf("varchar", maybeMeters.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    takenIds.add(rs.getString(1));
+                    takenMeters.add(rs.getString(2));
+                }
+            }
+        }
+
+        List<Row> candidates = new ArrayList<>(batch.size());
+        for (Row row : batch) {
+            if (takenIds.contains(row.customerId)) {
+                reject(rejects, report, row.lineNo, row.customerId, row.meterNumber,
+                        RowStatus.DUPLICATE_CUSTOMER_ID, "customer_id already exists");
+            } else if (takenMeters.contains(row.meterNumber)) {
+                reject(rejects, report, row.lineNo, row.customerId, row.meterNumber,
+                        RowStatus.DUPLICATE_METER_NUMBER, "meter_number already exists");
+            } else {
+                candidates.add(row);
+            }
+        }
+        return candidates;
+    }
+
+    private static String validate(Row row) {
+        if (row.customerId.isEmpty() || row.customerId.length() > MAX_CUSTOMER_ID) {
+            return "customer_id must be 1-" + MAX_CUSTOMER_ID + " characters";
+        }
+        if (row.name.isEmpty() || row.name.length() > MAX_NAME) {
+            return "name must be 1-" + MAX_NAME + " characters";
+        }
+        if (row.address.isEmpty() || row.address.length() > MAX_ADDRESS) {
+            return "address must be 1-" + MAX_ADDRESS + " characters";
+        }
+        if (row.meterNumber.isEmpty() || row.meterNumber.length() > MAX_METER_NUMBER) {
+            return "meter_number must be 1-" + MAX_METER_NUMBER + " characters";
+        }
+        if (row.phoneNumber != null && row.phoneNumber.length() > MAX_PHONE_NUMBER) {
+            return "phone_number must be at most " + MAX_PHONE_NUMBER + " characters";
+        }
+        return null;
+    }
+
+    /**
+     * Split one CSV line into fields, honouring double quotes; returns a problem or null
+     */
+    private static String parse(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return "unterminated quoted field";
+        }
+        fields.add(field.toString());
+        if (fields.size() < 4 || fields.size() > 5) {
+            return "expected 4 or 5 fields, found " + fields.size();
+        }
+        return null;
+    }
+
+    private static StringBuilder appendCsv(StringBuilder csv, String value) {
+        csv.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                csv.append('"');
+            }
+            csv.append(c);
+        }
+        return csv.append('"');
+    }
+
+    private static void reject(BufferedWriter rejects, CustomerImportReport report, long lineNo, String customerId,
+                               String meterNumber, RowStatus status, String detail) throws IOException {
+        report.record(status);
+        StringBuilder line = new StringBuilder(64).append(lineNo).append(',');
+        appendCsv(line, customerId == null ? "" : customerId).append(',');
+        appendCsv(line, meterNumber == null ? "" : meterNumber).append(',');
+        line.append(status).append(',');
+        appendCsv(line, detail);
+        rejects.write(line.toString());
+        rejects.newLine();
+    }
+}
@@ -0,0 +1,399 @@
+package lecbilling.mokopanemakhetha.service;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import lecbilling.mokopanemakhetha.Customer;
+import lecbilling.mokopanemakhetha.CustomerStore;
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide list of active customers shared by every screen.
+ * The list is loaded once and then kept current by reading only the customers whose
+ * updated_at moved past the last seen watermark; a soft delete bumps updated_at too, so
+ * deactivated customers are dropped from the list by the same delta. Customer objects
+ * are updated in place, so values held only in memory (current usage and bill) survive
+ * a refresh. Their values live in a columnar CustomerStore rather than in per-customer
+ * JavaFX properties. The list is only modified on the JavaFX thread; screens get a read-only
+ * view and sort it through their own SortedList.
+ */
+public class CustomerCache {
+    private static final Logger logger = LoggerFactory.getLogger(CustomerCache.class);
+    private static CustomerCache instance;
+
+    private static final long REFRESH_INTERVAL_SECONDS = 30;
+
+    // Screens asking for the list within this window reuse it without a database round trip
+    private static final long MIN_SYNC_INTERVAL_MILLIS = 2_000;
+
+    // updated_at is the transaction start time, so re-read a window behind the watermark
+    // to pick up rows from transactions that committed after the previous refresh
+    private static final long WATERMARK_OVERLAP_MILLIS = 60_000;
+
+    private static final String SELECT_COLUMNS =
+            "SELECT customer_id, name, address, meter_number, is_active, updated_at FROM customers";
+
+    private static final Comparator<Customer> BY_NAME =
+            Comparator.comparing(Customer::getName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+
+    /**
+     * One customer row as read from the database
+     */
+    private static final class Row {
+        final String customerId;
+        final String name;
+        final String address;
+        final String meterNumber;
+        final boolean active;
+        final Timestamp updatedAt;
+
+        Row(ResultSet rs) throws SQLException {
+            this.customerId = rs.getString("customer_id");
+            this.name = rs.getString("name");
+            this.address = rs.getString("address");
+            this.meterNumber = rs.getString("meter_number");
+            this.active = rs.getBoolean("is_active");
+            this.updatedAt = rs.getTimestamp("updated_at");
+        }
+    }
+
+    /**
+     * Last applied state of a customer; inactive customers are kept with a null customer
+     * so that an older delta cannot bring them back
+     */
+    private static final class Entry {
+        Customer customer;
+        Row row;
+    }
+
+    private final ObservableList<Customer> customers = FXCollections.observableArrayList();
+    private final ObservableList<Customer> readOnlyCustomers = FXCollections.unmodifiableObservableList(customers);
+    private final CustomerSearchIndex searchIndex = new CustomerSearchIndex();
+    private final CustomerStore store = new CustomerStore();
+
+    // Only touched while applying changes on the JavaFX thread
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private Timestamp watermark;
+    private volatile long lastSyncMillis;
+
+    // Bumped whenever the list changes, so derived results such as search hits can be reused
+    private volatile long version;
+    private ScheduledExecutorService refreshExecutor;
+
+    // Cache statistics
+    private final LongAdder fullLoads = new LongAdder();
+    private final LongAdder deltaQueries = new LongAdder();
+    private final LongAdder deltaRowsApplied = new LongAdder();
+    private final LongAdder servedFromCache = new LongAdder();
+
+    private CustomerCache() {
+    }
+
+    public static synchronized CustomerCache getInstance() {
+        if (instance == null) {
+            instance = new CustomerCache();
+            instance.sync();
+            instance.startRefresh();
+        }
+        return instance;
+    }
+
+    /**
+     * Pull changes into the cache if it has been created; screens that page customers from
+     * the database never load it
+     */
+    public static void syncIfLoaded() {
+        CustomerCache cache;
+        synchronized (CustomerCache.class) {
+            cache = instance;
+        }
+        if (cache != null) {
+            cache.sync();
+        }
+    }
+
+    /**
+     * Get a read-only view of the shared list of active customers. A full load is ordered
+     * by name; customers added later are appended, so tables wrap the list in a SortedList.
+     * Pulls pending changes first unless the list was synced moments ago.
+     */
+    public ObservableList<Customer> getCustomers() {
+        if (System.currentTimeMillis() - lastSyncMillis >= MIN_SYNC_INTERVAL_MILLIS) {
+            sync();
+        } else {
+            servedFromCache.increment();
+        }
+        return readOnlyCustomers;
+    }
+
+    /**
+     * Search active customers by name, customer_id, meter number or address, best matches
+     * first. Answered from the in-memory index after pulling pending changes.
+     */
+    public List<Customer> search(String term, int limit) {
+        if (System.currentTimeMillis() - lastSyncMillis >= MIN_SYNC_INTERVAL_MILLIS) {
+            sync();
+        }
+        return searchIndex.search(term, limit);
+    }
+
+    /**
+     * Counter that changes whenever customers are added, changed or removed
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Pull changes now, e.g. right after this process wrote a customer
+     */
+    public void sync() {
+        boolean full = !hasWatermark();
+        List<Row> rows = fetch(full);
+        if (rows != null) {
+            applyOnFxThread(rows, full);
+        }
+    }
+
+    /**
+     * Reload every customer, replacing the list contents while keeping the existing
+     * Customer objects of customers that are still active
+     */
+    public void reload() {
+        List<Row> rows = fetch(true);
+        if (rows != null) {
+            applyOnFxThread(rows, true);
+        }
+    }
+
+    private synchronized boolean hasWatermark() {
+        return watermark != null;
+    }
+
+    /**
+     * Read all active customers for a full load, otherwise every customer changed since
+     * the watermark. Returns null if the query failed.
+     */
+    private synchronized List<Row> fetch(boolean full) {
+        boolean all = full || watermark == null;
+        String query = all ? SELECT_COLUMNS + " WHERE is_active = TRUE"
+                           : SELECT_COLUMNS + " WHERE updated_at >= ?";
+        List<Row> rows = new ArrayList<>();
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+            if (!all) {
+                pstmt.setTimestamp(1, new Timestamp(watermark.getTime() - WATERMARK_OVERLAP_MILLIS));
+            }
+            Timestamp newest = all ? null : watermark;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Row row = new Row(rs);
+                    rows.add(row);
+                    newest = later(newest, row.updatedAt);
+                }
+            }
+
+            if (all) {
+                fullLoads.increment();
+                // An empty table still gets a watermark so later calls only read deltas
+                watermark = newest != null ? newest : new Timestamp(System.currentTimeMillis());
+            } else {
+                deltaQueries.increment();
+                watermark = newest;
+            }
+            lastSyncMillis = System.currentTimeMillis();
+            return rows;
+        } catch (SQLException e) {
+            logger.error("Error loading customers from database", e);
+        }
+        return null;
+    }
+
+    private void applyOnFxThread(List<Row> rows, boolean full) {
+        if (!full && rows.isEmpty()) {
+            return;
+        }
+        if (Platform.isFxApplicationThread()) {
+            apply(rows, full);
+            return;
+        }
+        try {
+            Platform.runLater(() -> apply(rows, full));
+        } catch (IllegalStateException e) {
+            // No JavaFX toolkit (e.g. a batch run), so nothing can be observing the list
+            synchronized (entries) {
+                apply(rows, full);
+            }
+        }
+    }
+
+    private void apply(List<Row> rows, boolean full) {
+        if (full) {
+            replaceAll(rows);
+            return;
+        }
+        int applied = 0;
+        for (Row row : rows) {
+            if (applyRow(row)) {
+                applied++;
+            }
+        }
+        deltaRowsApplied.add(applied);
+        if (applied > 0) {
+            version++;
+            logger.debug("Applied {} customer changes to shared list", applied);
+        }
+    }
+
+    private void replaceAll(List<Row> rows) {
+        Map<String, Entry> previous = new HashMap<>(entries);
+        entries.clear();
+        List<Customer> loaded = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Entry entry = previous.remove(row.customerId);
+            Customer customer = entry != null ? entry.customer : null;
+            if (customer == null) {
+                customer = store.create(row.customerId, row.name, row.address, row.meterNumber);
+            } else {
+                copy(row, customer);
+            }
+            entries.put(row.customerId, entry(customer, row));
+            loaded.add(customer);
+        }
+        loaded.sort(BY_NAME);
+        customers.setAll(loaded);
+        searchIndex.rebuild(loaded);
+        // Customers that are gone keep working for whoever still holds them, as copies.
+        // Released only now, once neither the list nor the index hands them out.
+        for (Entry gone : previous.values()) {
+            if (gone.customer != null) {
+                store.release(gone.customer);
+            }
+        }
+        version++;
+        logger.info("Retrieved {} customers from database", customers.size());
+    }
+
+    /**
+     * Apply one changed row; returns false if the cache already holds this or a newer state
+     */
+    private boolean applyRow(Row row) {
+        Entry entry = entries.get(row.customerId);
+        if (entry != null && row.updatedAt != null && entry.row.updatedAt != null
+                && row.updatedAt.before(entry.row.updatedAt)) {
+            return false;
+        }
+
+        if (!row.active) {
+            if (entry != null && entry.customer != null) {
+                customers.remove(entry.customer);
+                searchIndex.remove(row.customerId);
+                store.release(entry.customer);
+                entry.customer = null;
+                entry.row = row;
+                return true;
+            }
+            if (entry == null) {
+                entries.put(row.customerId, entry(null, row));
+            }
+            return false;
+        }
+
+        if (entry == null || entry.customer == null) {
+            Customer customer = store.create(row.customerId, row.name, row.address, row.meterNumber);
+            customers.add(customer);
+            searchIndex.put(customer);
+            entries.put(row.customerId, entry(customer, row));
+            return true;
+        }
+
+        // Compare with the last applied row as well as the object: a form may already have
+        // edited the shared Customer before saving it
+        Customer customer = entry.customer;
+        Row applied = entry.row;
+        entry.row = row;
+        if (sameFields(row, applied) && same(row, customer)) {
+            return false;
+        }
+        copy(row, customer);
+        if (!Objects.equals(row.name, applied.name)) {
+            // Report the rename as a replacement so sorted views move the customer
+            int index = customers.indexOf(customer);
+            if (index >= 0) {
+                customers.set(index, customer);
+            }
+        }
+        searchIndex.put(customer);
+        return true;
+    }
+
+    private static boolean same(Row row, Customer customer) {
+        return Objects.equals(row.name, customer.getName())
+                && Objects.equals(row.address, customer.getAddress())
+                && Objects.equals(row.meterNumber, customer.getMeterNumber());
+    }
+
+    private static boolean sameFields(Row a, Row b) {
+        return Objects.equals(a.name, b.name)
+                && Objects.equals(a.address, b.address)
+                && Objects.equals(a.meterNumber, b.meterNumber);
+    }
+
+    private static void copy(Row row, Customer customer) {
+        customer.setName(row.name);
+        customer.setAddress(row.address);
+        customer.setMeterNumber(row.meterNumber);
+    }
+
+    private static Entry entry(Customer customer, Row row) {
+        Entry entry = new Entry();
+        entry.customer = customer;
+        entry.row = row;
+        return entry;
+    }
+
+    private static Timestamp later(Timestamp a, Timestamp b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.after(a) ? b : a;
+    }
+
+    private void startRefresh() {
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "customer-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(this::sync,
+                REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Get cache statistics
+     */
+    public String getStats() {
+        return String.format(
+            "Customer cache: %d customers, %d full loads, %d delta queries (%d rows applied), " +
+            "%d requests served without a query; %s; %s",
+            customers.size(), fullLoads.sum(), deltaQueries.sum(), deltaRowsApplied.sum(),
+            servedFromCache.sum(), store.getStats(), searchIndex.getStats());
+    }
+}
@@ -0,0 +1,356 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.TariffSchedule;
+import lecbilling.mokopanemakhetha.util.StringIntMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process map from customer business keys (customer_id and meter_number) to the
+ * internal customers.id, so billing can read and write bills by integer key without
+ * joining customers. The customer class is kept per id to pick the tariff schedule.
+ * The map is loaded in bulk on first use and kept fresh by polling for rows whose
+ * updated_at moved past the last seen watermark.
+ */
+public class CustomerIdCache {
+    private static final Logger logger = LoggerFactory.getLogger(CustomerIdCache.class);
+    private static CustomerIdCache instance;
+
+    public static final int NOT_FOUND = -1;
+
+    private static final long REFRESH_INTERVAL_SECONDS = 30;
+
+    // updated_at is the transaction start time, so re-read a window behind the watermark
+    // to pick up rows from transactions that committed after the previous refresh
+    private static final long WATERMARK_OVERLAP_MILLIS = 60_000;
+
+    private static final String SELECT_COLUMNS =
+            "SELECT id, customer_id, meter_number, customer_class, updated_at FROM customers";
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StringIntMap byCustomerId = new StringIntMap(1024, NOT_FOUND);
+    private final StringIntMap byMeterNumber = new StringIntMap(1024, NOT_FOUND);
+
+    // Reverse index so a changed meter number can be removed from byMeterNumber
+    private String[] meterById = new String[1024];
+    private String[] classById = new String[1024];
+
+    private volatile Timestamp watermark;
+    private volatile long lastRefreshMillis;
+    private ScheduledExecutorService refreshExecutor;
+
+    // Cache statistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder databaseLookups = new LongAdder();
+    private final LongAdder deltaRowsApplied = new LongAdder();
+
+    private CustomerIdCache() {
+    }
+
+    public static synchronized CustomerIdCache getInstance() {
+        if (instance == null) {
+            instance = new CustomerIdCache();
+            instance.loadAll();
+            instance.startRefresh();
+        }
+        return instance;
+    }
+
+    /**
+     * Get the internal id for a customer_id, falling back to the database on a miss.
+     * Returns NOT_FOUND if no such customer exists.
+     */
+    public int idForCustomerId(String customerId) {
+        int id = lookup(byCustomerId, customerId);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+        return loadOne("customer_id", customerId);
+    }
+
+    /**
+     * Get the internal id for a meter number, falling back to the database on a miss.
+     * Returns NOT_FOUND if no customer has that meter.
+     */
+    public int idForMeterNumber(String meterNumber) {
+        int id = lookup(byMeterNumber, meterNumber);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+        return loadOne("meter_number", meterNumber);
+    }
+
+    /**
+     * Get the customer class of an internal id, falling back to the database on a miss.
+     * Returns the default class if no such customer exists.
+     */
+    public String customerClassOf(int customerDbId) {
+        String customerClass = cachedClass(customerDbId);
+        if (customerClass == null && loadOne("id", customerDbId) != NOT_FOUND) {
+            customerClass = cachedClass(customerDbId);
+        }
+        return customerClass != null ? customerClass : TariffSchedule.DEFAULT_CUSTOMER_CLASS;
+    }
+
+    private String cachedClass(int customerDbId) {
+        lock.readLock().lock();
+        try {
+            return customerDbId >= 0 && customerDbId < classById.length ? classById[customerDbId] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int lookup(StringIntMap map, String key) {
+        if (key == null) {
+            return NOT_FOUND;
+        }
+        int id;
+        lock.readLock().lock();
+        try {
+            id = map.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (id != NOT_FOUND) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return id;
+    }
+
+    /**
+     * Resolve many customer_ids at once. Cache misses are fetched with a single query;
+     * customers that do not exist are left out of the result.
+     */
+    public StringIntMap resolveCustomerIds(Connection conn, Collection<String> customerIds) throws SQLException {
+        StringIntMap resolved = new StringIntMap(customerIds.size(), NOT_FOUND);
+        Set<String> missing = new HashSet<>();
+
+        lock.readLock().lock();
+        try {
+            for (String customerId : customerIds) {
+                int id = byCustomerId.get(customerId);
+                if (id != NOT_FOUND) {
+                    resolved.put(customerId, id);
+                } else {
+                    missing.add(customerId);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.add(resolved.size());
+        misses.add(missing.size());
+
+        if (!missing.isEmpty()) {
+            databaseLookups.increment();
+            String query = SELECT_COLUMNS + " WHERE customer_id = ANY(?)";
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setArray(1, conn.createArrayOf("varchar", missing.toArray()));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    lock.writeLock().lock();
+                    try {
+                        while (rs.next()) {
+                            int id = applyRow(rs);
+                            resolved.put(rs.getString("customer_id"), id);
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private int loadOne(String column, Object key) {
+        if (key == null) {
+            return NOT_FOUND;
+        }
+        databaseLookups.increment();
+        String query = SELECT_COLUMNS + " WHERE " + column + " = ?";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+            pstmt.setObject(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    lock.writeLock().lock();
+                    try {
+                        return applyRow(rs);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error looking up customer by {}: {}", column, key, e);
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Load every customer in one pass, replacing the current contents
+     */
+    public synchronized boolean loadAll() {
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            int rows = 0;
+            Timestamp newest = null;
+            lock.writeLock().lock();
+            try (ResultSet rs = stmt.executeQuery(SELECT_COLUMNS)) {
+                byCustomerId.clear();
+                byMeterNumber.clear();
+                Arrays.fill(meterById, null);
+                Arrays.fill(classById, null);
+                while (rs.next()) {
+                    applyRow(rs);
+                    newest = later(newest, rs.getTimestamp("updated_at"));
+                    rows++;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            watermark = newest;
+            lastRefreshMillis = System.currentTimeMillis();
+            logger.info("Loaded {} customer ids into cache", rows);
+            return true;
+        } catch (SQLException e) {
+            logger.error("Error loading customer id cache", e);
+        }
+        return false;
+    }
+
+    /**
+     * Apply customers changed since the last refresh
+     */
+    public synchronized void refresh() {
+        if (watermark == null) {
+            loadAll();
+            return;
+        }
+
+        String query = SELECT_COLUMNS + " WHERE updated_at >= ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+            pstmt.setTimestamp(1, new Timestamp(watermark.getTime() - WATERMARK_OVERLAP_MILLIS));
+            int rows = 0;
+            Timestamp newest = watermark;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                lock.writeLock().lock();
+                try {
+                    while (rs.next()) {
+                        applyRow(rs);
+                        newest = later(newest, rs.getTimestamp("updated_at"));
+                        rows++;
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            deltaRowsApplied.add(rows);
+            watermark = newest;
+            lastRefreshMillis = System.currentTimeMillis();
+            logger.debug("Applied {} customer changes to id cache", rows);
+        } catch (SQLException e) {
+            logger.warn("Error refreshing customer id cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Insert or update one customer row; caller holds the write lock
+     */
+    private int applyRow(ResultSet rs) throws SQLException {
+        int id = rs.getInt("id");
+        String meterNumber = rs.getString("meter_number");
+
+        if (id >= meterById.length) {
+            meterById = Arrays.copyOf(meterById, Math.max(id + 1, meterById.length * 2));
+            classById = Arrays.copyOf(classById, meterById.length);
+        }
+        String oldMeter = meterById[id];
+        if (oldMeter != null && !oldMeter.equals(meterNumber) && byMeterNumber.get(oldMeter) == id) {
+            byMeterNumber.remove(oldMeter);
+        }
+        meterById[id] = meterNumber;
+        // Few distinct classes, so share one string per class
+        String customerClass = rs.getString("customer_class");
+        classById[id] = customerClass == null ? null : customerClass.intern();
+
+        byCustomerId.put(rs.getString("customer_id"), id);
+        if (meterNumber != null) {
+            byMeterNumber.put(meterNumber, id);
+        }
+        return id;
+    }
+
+    private static Timestamp later(Timestamp a, Timestamp b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.after(a) ? b : a;
+    }
+
+    private void startRefresh() {
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "customer-id-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(this::refresh,
+                REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byCustomerId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Milliseconds since the cache was last brought up to date with the database
+     */
+    public long getStalenessMillis() {
+        return lastRefreshMillis == 0 ? -1 : System.currentTimeMillis() - lastRefreshMillis;
+    }
+
+    /**
+     * Get cache statistics
+     */
+    public String getStats() {
+        return String.format(
+            "Customer id cache: %d customers, hit rate %.1f%% (%d hits, %d misses), " +
+            "%d database lookups, %d delta rows applied, staleness %d ms",
+            size(), getHitRate() * 100, hits.sum(), misses.sum(),
+            databaseLookups.sum(), deltaRowsApplied.sum(), getStalenessMillis());
+    }
+}
@@ -0,0 +1,441 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.Customer;
+import lecbilling.mokopanemakhetha.util.IntArrayList;
+import lecbilling.mokopanemakhetha.util.LongObjectMap;
+import lecbilling.mokopanemakhetha.util.PostingList;
+import lecbilling.mokopanemakhetha.util.StringIntMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over customer name, customer_id, meter_number and address.
+ * Each customer is a document holding its lower-cased fields, each field preceded by a
+ * newline. Every distinct trigram maps to a delta-encoded list of the documents that
+ * contain it. A query intersects the two rarest trigram lists of the term and confirms
+ * each candidate against the document text, so no false matches are returned.
+ *
+ * Documents are never changed in place: an update appends a new document and marks the
+ * old one dead, which keeps every posting list ascending. Dead documents are skipped at
+ * query time and dropped when the index is rebuilt after they outnumber live ones.
+ *
+ * Terms of two characters match at the start of a field or word, and a single character
+ * only at the start of a field.
+ */
+public class CustomerSearchIndex {
+    private static final char FIELD_START = '\n';
+
+    // Rebuild once dead documents exceed both this count and the live count
+    private static final int MIN_DEAD_FOR_REBUILD = 10_000;
+
+    // Match quality, best first
+    private static final int EXACT_FIELD = 0;
+    private static final int FIELD_PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int SUBSTRING = 3;
+    private static final int NO_MATCH = 4;
+
+    private static final Comparator<Customer> BY_NAME =
+            Comparator.comparing(Customer::getName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongObjectMap<PostingList> postings = new LongObjectMap<>(4096);
+    private final StringIntMap docByCustomerId = new StringIntMap(1024, -1);
+
+    // Indexed by document id; null text marks a dead document
+    private String[] texts = new String[1024];
+    private Customer[] customers = new Customer[1024];
+    private int nextDoc;
+    private int liveDocs;
+
+    /**
+     * Index a customer, replacing any earlier version with the same customer_id
+     */
+    public void put(Customer customer) {
+        lock.writeLock().lock();
+        try {
+            kill(customer.getCustomerId());
+            addDocument(customer);
+            if (nextDoc - liveDocs > MIN_DEAD_FOR_REBUILD && nextDoc - liveDocs > liveDocs) {
+                rebuildLocked(liveCustomers());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a customer from the index
+     */
+    public void remove(String customerId) {
+        lock.writeLock().lock();
+        try {
+            kill(customerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the whole index with the given customers
+     */
+    public void rebuild(Collection<Customer> all) {
+        lock.writeLock().lock();
+        try {
+            rebuildLocked(new ArrayList<>(all));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildLocked(List<Customer> all) {
+        postings.clear();
+        docByCustomerId.clear();
+        int capacity = Math.max(1024, Integer.highestOneBit(Math.max(all.size(), 1)) * 2);
+        texts = new String[capacity];
+        customers = new Customer[capacity];
+        nextDoc = 0;
+        liveDocs = 0;
+        for (Customer customer : all) {
+            addDocument(customer);
+        }
+    }
+
+    private List<Customer> liveCustomers() {
+        List<Customer> live = new ArrayList<>(liveDocs);
+        for (int doc = 0; doc < nextDoc; doc++) {
+            if (texts[doc] != null) {
+                live.add(customers[doc]);
+            }
+        }
+        return live;
+    }
+
+    private void kill(String customerId) {
+        int doc = docByCustomerId.get(customerId);
+        if (doc >= 0) {
+            docByCustomerId.remove(customerId);
+            texts[doc] = null;
+            customers[doc] = null;
+            liveDocs--;
+        }
+    }
+
+    private void addDocument(Customer customer) {
+        if (nextDoc == texts.length) {
+            texts = Arrays.copyOf(texts, nextDoc * 2);
+            customers = Arrays.copyOf(customers, nextDoc * 2);
+        }
+        int doc = nextDoc++;
+        String text = documentText(customer);
+        texts[doc] = text;
+        customers[doc] = customer;
+        docByCustomerId.put(customer.getCustomerId(), doc);
+        liveDocs++;
+
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            long key = trigram(text, i);
+            PostingList list = postings.get(key);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(key, list);
+            }
+            // A trigram repeated within the document is only listed once
+            if (list.last() != doc) {
+                list.add(doc);
+            }
+        }
+    }
+
+    private static String documentText(Customer customer) {
+        StringBuilder text = new StringBuilder(64);
+        appendField(text, customer.getName());
+        appendField(text, customer.getCustomerId());
+        appendField(text, customer.getMeterNumber());
+        appendField(text, customer.getAddress());
+        return text.toString();
+    }
+
+    private static void appendField(StringBuilder text, String value) {
+        text.append(FIELD_START);
+        if (value != null) {
+            text.append(normalize(value));
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT).replace(FIELD_START, ' ');
+    }
+
+    private static long trigram(CharSequence text, int offset) {
+        return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) | text.charAt(offset + 2);
+    }
+
+    /**
+     * Find customers matching a term, best matches first: exact customer_id, meter number or
+     * name, then field prefixes, then word prefixes, then other substrings; ties by name.
+     * At most limit customers are returned.
+     */
+    public List<Customer> search(String term, int limit) {
+        String needle = normalizeTerm(term);
+        if (needle.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Matches matches = new Matches(limit);
+
+        lock.readLock().lock();
+        try {
+            if (needle.length() == 1) {
+                for (int doc = 0; doc < nextDoc; doc++) {
+                    if (interrupted(doc)) {
+                        return new ArrayList<>();
+                    }
+                    collect(doc, needle, matches);
+                }
+            } else if (needle.length() == 2) {
+                collectAll(union(candidates(FIELD_START + needle), candidates(' ' + needle)), needle, matches);
+            } else {
+                collectAll(candidates(needle), needle, matches);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (Thread.currentThread().isInterrupted()) {
+            return new ArrayList<>();
+        }
+        return matches.toList();
+    }
+
+    /**
+     * Rank a set of customers against a term with the same rules as search(), without
+     * using the index; used to narrow earlier results when a term is extended
+     */
+    public static List<Customer> rank(Collection<Customer> candidates, String term, int limit) {
+        String needle = normalizeTerm(term);
+        Matches matches = new Matches(limit);
+        if (needle.isEmpty() || limit <= 0) {
+            return matches.toList();
+        }
+        for (Customer customer : candidates) {
+            int score = score(documentText(customer), needle);
+            if (score < NO_MATCH) {
+                matches.add(score, customer);
+            }
+        }
+        return matches.toList();
+    }
+
+    /**
+     * The form a search term is matched in: trimmed and lower-cased
+     */
+    public static String normalizeTerm(String term) {
+        return term == null ? "" : normalize(term.trim());
+    }
+
+    // Long scans check for cancellation every few thousand documents
+    private static boolean interrupted(int i) {
+        return (i & 0xFFF) == 0 && Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * The best matches seen so far: for each match quality, the first names in order,
+     * at most limit of them. A match is dropped without sorting once better qualities
+     * already hold limit customers.
+     */
+    private static final class Matches {
+        final int limit;
+        final List<PriorityQueue<Customer>> byScore = new ArrayList<>(NO_MATCH);
+
+        Matches(int limit) {
+            this.limit = limit;
+            for (int i = 0; i < NO_MATCH; i++) {
+                // Largest name on top, so it is the one evicted
+                byScore.add(new PriorityQueue<>(BY_NAME.reversed()));
+            }
+        }
+
+        void add(int score, Customer customer) {
+            int better = 0;
+            for (int i = 0; i < score; i++) {
+                better += byScore.get(i).size();
+            }
+            if (better >= limit) {
+                return;
+            }
+            PriorityQueue<Customer> bucket = byScore.get(score);
+            if (bucket.size() == limit && BY_NAME.compare(customer, bucket.peek()) >= 0) {
+                return;
+            }
+            bucket.add(customer);
+            if (bucket.size() > limit) {
+                bucket.poll();
+            }
+        }
+
+        List<Customer> toList() {
+            List<Customer> results = new ArrayList<>();
+            for (PriorityQueue<Customer> bucket : byScore) {
+                if (results.size() >= limit) {
+                    break;
+                }
+                List<Customer> sorted = new ArrayList<>(bucket);
+                sorted.sort(BY_NAME);
+                results.addAll(sorted.subList(0, Math.min(sorted.size(), limit - results.size())));
+            }
+            return results;
+        }
+    }
+
+    private void collectAll(IntArrayList docs, String needle, Matches matches) {
+        for (int i = 0; i < docs.size(); i++) {
+            if (interrupted(i)) {
+                return;
+            }
+            collect(docs.get(i), needle, matches);
+        }
+    }
+
+    private void collect(int doc, String needle, Matches matches) {
+        String text = texts[doc];
+        if (text == null) {
+            return;
+        }
+        int score = score(text, needle);
+        if (score < NO_MATCH) {
+            matches.add(score, customers[doc]);
+        }
+    }
+
+    /**
+     * Merge two ascending document lists, dropping duplicates
+     */
+    private static IntArrayList union(IntArrayList a, IntArrayList b) {
+        IntArrayList out = new IntArrayList(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while (i < a.size() || j < b.size()) {
+            int next;
+            if (j == b.size() || (i < a.size() && a.get(i) <= b.get(j))) {
+                next = a.get(i++);
+            } else {
+                next = b.get(j++);
+            }
+            if (out.isEmpty() || out.get(out.size() - 1) != next) {
+                out.add(next);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Documents that contain every trigram of the key. Only the two rarest trigram lists
+     * are intersected; the caller's text check rules out the rest.
+     */
+    private IntArrayList candidates(String key) {
+        IntArrayList out = new IntArrayList();
+        PostingList rarest = null;
+        PostingList second = null;
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            PostingList list = postings.get(trigram(key, i));
+            if (list == null) {
+                return out;
+            }
+            if (rarest == null || list.size() < rarest.size()) {
+                second = rarest;
+                rarest = list;
+            } else if (second == null || list.size() < second.size()) {
+                second = list;
+            }
+        }
+        if (rarest == null) {
+            return out;
+        }
+        int[] docs = rarest.toArray();
+        int count = second == null || second == rarest ? docs.length : second.retainAll(docs, docs.length);
+        for (int i = 0; i < count; i++) {
+            out.add(docs[i]);
+        }
+        return out;
+    }
+
+    /**
+     * Best match quality of the needle anywhere in the document text
+     */
+    private static int score(String text, String needle) {
+        int best = NO_MATCH;
+        int from = text.indexOf(needle);
+        while (from >= 0 && best > EXACT_FIELD) {
+            char before = text.charAt(from - 1);
+            int end = from + needle.length();
+            int score;
+            if (before == FIELD_START) {
+                score = end == text.length() || text.charAt(end) == FIELD_START ? EXACT_FIELD : FIELD_PREFIX;
+            } else if (before == ' ') {
+                score = WORD_PREFIX;
+            } else {
+                score = SUBSTRING;
+            }
+            // One-character terms only match at the start of a field, two-character ones at a word start
+            if (needle.length() == 1 && score > FIELD_PREFIX || needle.length() == 2 && score > WORD_PREFIX) {
+                score = NO_MATCH;
+            }
+            best = Math.min(best, score);
+            from = text.indexOf(needle, from + 1);
+        }
+        return best;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate heap used by the index: posting data, the trigram map, document texts
+     * and the id tables. Customer objects are shared with the customer list and not counted.
+     */
+    public long estimateBytes() {
+        lock.readLock().lock();
+        try {
+            long[] bytes = {postings.tableBytes()};
+            // Posting object and its array header on top of the encoded data
+            postings.forEachValue(list -> bytes[0] += 32 + 16 + list.bytes());
+            for (int doc = 0; doc < nextDoc; doc++) {
+                if (texts[doc] != null) {
+                    // Compact Latin-1 string: object, array header and one byte per char
+                    bytes[0] += 24 + 16 + texts[doc].length();
+                }
+            }
+            bytes[0] += 2L * texts.length * 4 + docByCustomerId.tableBytes();
+            return bytes[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get index statistics
+     */
+    public String getStats() {
+        lock.readLock().lock();
+        try {
+            return String.format("Customer search index: %d customers, %d dead, %d trigrams, ~%d KB",
+                    liveDocs, nextDoc - liveDocs, postings.size(), estimateBytes() / 1024);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
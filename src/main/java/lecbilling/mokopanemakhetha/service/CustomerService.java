@@ -1,15 +1,21 @@
 package lecbilling.mokopanemakhetha.service;
 
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import lecbilling.mokopanemakhetha.Customer;
 import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.CustomerSortKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Service for managing customer operations
@@ -18,6 +24,19 @@ public class CustomerService {
     private static final Logger logger = LoggerFactory.getLogger(CustomerService.class);
     private static CustomerService instance;
 
+    // More matches than this are not useful in a table; refine the term instead
+    public static final int SEARCH_RESULT_LIMIT = 1_000;
+
+    // Rows per round trip for the streaming readers
+    public static final int DEFAULT_STREAM_FETCH_SIZE = 1_000;
+
+    // Shortest filter matched anywhere in a value rather than as a prefix (one trigram)
+    private static final int MIN_CONTAINS_FILTER_LENGTH = 3;
+
+    private static final String STREAM_CUSTOMERS =
+            "SELECT customer_id, name, address, meter_number FROM customers " +
+            "WHERE is_active = TRUE ORDER BY customer_id";
+
     private CustomerService() {
     }
 
@@ -29,35 +48,11 @@ public class CustomerService {
     }
 
     /**
-     * Get all active customers
+     * Get all active customers. Every caller gets the same shared list, kept current by
+     * CustomerCache, so screens no longer reload the whole table.
      */
     public ObservableList<Customer> getAllCustomers() {
-        logger.debug("Fetching all active customers");
-        ObservableList<Customer> customers = FXCollections.observableArrayList();
-        
-        String query = "SELECT customer_id, name, address, meter_number, phone_number, email " +
-                      "FROM customers WHERE is_active = TRUE ORDER BY name";
-
-        try (Connection conn = DatabaseConfig.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-
-            while (rs.next()) {
-                Customer customer = new Customer(
-                    rs.getString("customer_id"),
-                    rs.getString("name"),
-                    rs.getString("address"),
-                    rs.getString("meter_number")
-                );
-                customers.add(customer);
-            }
-            
-            logger.info("Retrieved {} customers from database", customers.size());
-        } catch (SQLException e) {
-            logger.error("Error loading customers from database", e);
-        }
-        
-        return customers;
+        return CustomerCache.getInstance().getCustomers();
     }
 
     /**
@@ -117,6 +112,7 @@ public class CustomerService {
             
             if (rowsAffected > 0) {
                 logger.info("Customer added successfully: {}", customer.getCustomerId());
+                CustomerCache.syncIfLoaded();
                 return true;
             }
         } catch (SQLException e) {
@@ -147,6 +143,7 @@ public class CustomerService {
             
             if (rowsAffected > 0) {
                 logger.info("Customer updated successfully: {}", customer.getCustomerId());
+                CustomerCache.syncIfLoaded();
                 return true;
             } else {
                 logger.warn("No customer found to update: {}", customer.getCustomerId());
@@ -174,6 +171,7 @@ public class CustomerService {
             
             if (rowsAffected > 0) {
                 logger.info("Customer deleted successfully: {}", customerId);
+                CustomerCache.syncIfLoaded();
                 return true;
             } else {
                 logger.warn("No customer found to delete: {}", customerId);
@@ -209,44 +207,260 @@ public class CustomerService {
     }
 
     /**
-     * Search customers by name or meter number
+     * Search customers by name, customer ID, meter number or address, best matches first,
+     * returning at most SEARCH_RESULT_LIMIT customers. Answered from the in-memory search
+     * index rather than a LIKE scan of the table.
      */
     public List<Customer> searchCustomers(String searchTerm) {
         logger.debug("Searching customers with term: {}", searchTerm);
-        List<Customer> customers = new ArrayList<>();
-        
-        String query = "SELECT customer_id, name, address, meter_number " +
-                      "FROM customers WHERE is_active = TRUE AND " +
-                      "(LOWER(name) LIKE LOWER(?) OR LOWER(meter_number) LIKE LOWER(?)) " +
-                      "ORDER BY name";
+        List<Customer> customers = CustomerCache.getInstance().search(searchTerm, SEARCH_RESULT_LIMIT);
+        logger.info("Found {} customers matching search term: {}", customers.size(), searchTerm);
+        return customers;
+    }
+
+    /**
+     * Visit every active customer in customer_id order without holding them all in memory.
+     * Rows come from a server-side cursor, fetchSize at a time; the visitor returns false
+     * to stop early. Returns the number of customers visited, or -1 on a database error.
+     */
+    public long forEachCustomer(int fetchSize, Predicate<Customer> visitor) {
+        long count = 0;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            // PostgreSQL only honours the fetch size inside a transaction
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(STREAM_CUSTOMERS,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+                pstmt.setFetchSize(fetchSize);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        count++;
+                        if (!visitor.test(readCustomer(rs))) {
+                            break;
+                        }
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            logger.debug("Visited {} customers", count);
+        } catch (SQLException e) {
+            logger.error("Error streaming customers", e);
+            return -1;
+        }
+        return count;
+    }
+
+    /**
+     * Stream every active customer in customer_id order from a server-side cursor.
+     * The stream holds a connection until it is closed, so use it in try-with-resources;
+     * short-circuiting operations such as limit() or anyMatch() stop fetching early.
+     * A database error while reading ends the stream with an IllegalStateException.
+     */
+    public Stream<Customer> streamCustomers(int fetchSize) throws SQLException {
+        Connection conn = DatabaseConfig.getConnection();
+        boolean autoCommit;
+        PreparedStatement pstmt = null;
+        ResultSet rs;
+        try {
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            pstmt = conn.prepareStatement(STREAM_CUSTOMERS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            if (pstmt != null) {
+                pstmt.close();
+            }
+            conn.rollback();
+            conn.setAutoCommit(true);
+            conn.close();
+            throw e;
+        }
+
+        Spliterator<Customer> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Customer> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(readCustomer(rs));
+                    return true;
+                } catch (SQLException e) {
+                    logger.error("Error streaming customers", e);
+                    throw new IllegalStateException("Error streaming customers", e);
+                }
+            }
+        };
+
+        PreparedStatement statement = pstmt;
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try (conn; statement; rs) {
+                // Read-only, so rolling back just ends the transaction and drops the cursor
+                conn.rollback();
+                conn.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                logger.warn("Error closing customer stream: {}", e.getMessage());
+            }
+        });
+    }
+
+    private static Customer readCustomer(ResultSet rs) throws SQLException {
+        return new Customer(
+            rs.getString("customer_id"),
+            rs.getString("name"),
+            rs.getString("address"),
+            rs.getString("meter_number")
+        );
+    }
+
+    /**
+     * Count active customers matching a filter (null or blank for all)
+     */
+    public int countCustomers(String filter) {
+        StringBuilder query = new StringBuilder("SELECT COUNT(*) FROM customers WHERE is_active = TRUE");
+        String pattern = appendFilter(query, filter);
 
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+             PreparedStatement pstmt = conn.prepareStatement(query.toString())) {
+
+            if (pattern != null) {
+                bindFilter(pstmt, 1, pattern);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error counting customers", e);
+        }
+        return 0;
+    }
+
+    /**
+     * Get one page of active customers ordered by a sort key, customer_id breaking ties.
+     * With an after key (the sort value and customer_id of the last row of the previous
+     * page) the page is read with a keyset condition; without one, offset rows are skipped.
+     * fewMatches says the filter is known to match few customers: the matches are then
+     * collected through the trigram indexes and sorted, instead of walking the sort order's
+     * index until enough matches turn up, which is slow when the term is rare.
+     */
+    public List<Customer> getCustomersPage(CustomerSortKey sortKey, boolean ascending, String filter,
+                                           String afterSortValue, String afterCustomerId,
+                                           int offset, int pageSize, boolean fewMatches) {
+        String column = sortKey.getColumn();
+        String direction = ascending ? "ASC" : "DESC";
+        boolean keyset = afterCustomerId != null;
+
+        StringBuilder query = new StringBuilder(
+                "SELECT customer_id, name, address, meter_number FROM customers WHERE is_active = TRUE");
+        String pattern = appendFilter(query, filter);
+        if (pattern != null && fewMatches) {
+            query.insert(0, "WITH matches AS MATERIALIZED (")
+                 .append(") SELECT customer_id, name, address, meter_number FROM matches WHERE TRUE");
+        }
+        if (keyset) {
+            if (sortKey == CustomerSortKey.CUSTOMER_ID) {
+                query.append(" AND customer_id ").append(ascending ? ">" : "<").append(" ?");
+            } else {
+                query.append(" AND (").append(column).append(", customer_id) ")
+                     .append(ascending ? ">" : "<").append(" (?, ?)");
+            }
+        }
+        query.append(" ORDER BY ").append(column).append(' ').append(direction);
+        if (sortKey != CustomerSortKey.CUSTOMER_ID) {
+            query.append(", customer_id ").append(direction);
+        }
+        query.append(" LIMIT ?");
+        if (!keyset && offset > 0) {
+            query.append(" OFFSET ?");
+        }
+
+        List<Customer> customers = new ArrayList<>(pageSize);
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query.toString())) {
+
+            int param = 1;
+            if (pattern != null) {
+                param = bindFilter(pstmt, param, pattern);
+            }
+            if (keyset) {
+                if (sortKey != CustomerSortKey.CUSTOMER_ID) {
+                    pstmt.setString(param++, afterSortValue);
+                }
+                pstmt.setString(param++, afterCustomerId);
+            }
+            pstmt.setInt(param++, pageSize);
+            if (!keyset && offset > 0) {
+                pstmt.setInt(param, offset);
+            }
 
-            String searchPattern = "%" + searchTerm + "%";
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
-            
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Customer customer = new Customer(
+                    customers.add(new Customer(
                         rs.getString("customer_id"),
                         rs.getString("name"),
                         rs.getString("address"),
                         rs.getString("meter_number")
-                    );
-                    customers.add(customer);
+                    ));
                 }
             }
-            
-            logger.info("Found {} customers matching search term: {}", customers.size(), searchTerm);
         } catch (SQLException e) {
-            logger.error("Error searching customers", e);
+            logger.error("Error loading customer page ordered by {}", column, e);
         }
-        
         return customers;
     }
 
+    /**
+     * Append the search condition for a filter; returns its LIKE pattern, or null if
+     * there is no filter. The pg_trgm indexes on the lower-cased columns serve the
+     * pattern; terms shorter than a trigram only match prefixes, since a contains
+     * match on them cannot use the index.
+     */
+    private static String appendFilter(StringBuilder query, String filter) {
+        if (filter == null || filter.isBlank()) {
+            return null;
+        }
+        query.append(" AND (LOWER(name) LIKE ? OR LOWER(customer_id) LIKE ? OR LOWER(meter_number) LIKE ?" +
+                     " OR LOWER(address) LIKE ?)");
+        String term = filter.trim().toLowerCase();
+        String escaped = term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return term.length() < MIN_CONTAINS_FILTER_LENGTH ? escaped + "%" : "%" + escaped + "%";
+    }
+
+    private static int bindFilter(PreparedStatement pstmt, int param, String pattern) throws SQLException {
+        // One per column in appendFilter
+        for (int i = 0; i < 4; i++) {
+            pstmt.setString(param++, pattern);
+        }
+        return param;
+    }
+
+    /**
+     * Whether there are more than the given number of active customers. Counts at most
+     * limit + 1 rows, so it stays cheap however large the table is.
+     */
+    public boolean hasMoreCustomersThan(int limit) {
+        String query = "SELECT COUNT(*) FROM (SELECT 1 FROM customers WHERE is_active = TRUE LIMIT ?) c";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+
+            pstmt.setInt(1, limit + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > limit;
+            }
+        } catch (SQLException e) {
+            logger.error("Error counting customers", e);
+        }
+        return false;
+    }
+
     /**
      * Get total customer count
      */
@@ -0,0 +1,79 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.model.Money;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parser for meter-reading CSV lines from field collection devices:
+ * meter_number,current_reading,reading_date[,period_start] with dates as yyyy-MM-dd.
+ */
+public final class MeterReadingCsv {
+    public static final String HEADER = "meter_number,current_reading,reading_date,period_start";
+
+    private MeterReadingCsv() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Fields of one parsed line; reused from line to line
+     */
+    public static final class Row {
+        public String meterNumber;
+        public long readingCentiKwh;
+        public LocalDate readingDate;
+        public LocalDate periodStart;
+        public String error;
+    }
+
+    /**
+     * Whether a line is the optional header row
+     */
+    public static boolean isHeader(String line) {
+        return line.regionMatches(true, 0, "meter_number", 0, 12);
+    }
+
+    /**
+     * Parse a line into row. Returns false, with row.error set, if the line is malformed;
+     * fields parsed before the error are kept so the line can still be reported.
+     */
+    public static boolean parse(String line, Row row) {
+        row.meterNumber = null;
+        row.readingCentiKwh = 0;
+        row.readingDate = null;
+        row.periodStart = null;
+        row.error = null;
+
+        String[] fields = line.split(",", -1);
+        row.meterNumber = fields[0].trim();
+        if (fields.length < 3 || fields.length > 4) {
+            row.error = "Expected 3 or 4 fields";
+            return false;
+        }
+        if (row.meterNumber.isEmpty()) {
+            row.error = "Missing meter number";
+            return false;
+        }
+        try {
+            double reading = Double.parseDouble(fields[1].trim());
+            if (reading < 0 || Double.isNaN(reading) || Double.isInfinite(reading)) {
+                row.error = "Invalid reading";
+                return false;
+            }
+            row.readingCentiKwh = Money.toCents(reading);
+        } catch (NumberFormatException e) {
+            row.error = "Invalid reading";
+            return false;
+        }
+        try {
+            row.readingDate = LocalDate.parse(fields[2].trim());
+            String periodStart = fields.length == 4 ? fields[3].trim() : "";
+            row.periodStart = periodStart.isEmpty() ? null : LocalDate.parse(periodStart);
+        } catch (DateTimeParseException e) {
+            row.error = "Invalid date";
+            return false;
+        }
+        return true;
+    }
+}
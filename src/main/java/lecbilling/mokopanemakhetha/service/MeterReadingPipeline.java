@@ -0,0 +1,634 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.MeterReading;
+import lecbilling.mokopanemakhetha.model.MeterReadingIngestReport;
+import lecbilling.mokopanemakhetha.model.MeterReadingIngestReport.RowStatus;
+import lecbilling.mokopanemakhetha.model.MeterReadingIngestReport.Stage;
+import lecbilling.mokopanemakhetha.model.Money;
+import lecbilling.mokopanemakhetha.model.RatedBatch;
+import lecbilling.mokopanemakhetha.model.TariffSchedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bills meter readings from field collection device files.
+ * Lines are streamed through five stages, each on its own thread: parse, enrich with the
+ * meter's customer and previous reading (MeterStateTable), validate, rate in bulk and
+ * persist with batched inserts, one transaction per batch. Readings travel in batches
+ * through bounded queues, so a slow stage blocks the ones before it and memory stays at
+ * a few batches per queue whatever the file size. Per-stage throughput and queue depths
+ * are kept in the report, which can be read while the run is in progress.
+ *
+ * Input is either a CSV file (see MeterReadingCsv) or a binary spool (MeterReadingSpool),
+ * which skips text parsing altogether. A reading bills the period from the day after the
+ * meter's last billed period (or period_start, or the first of the month for a meter never
+ * billed) to reading_date.
+ */
+public class MeterReadingPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(MeterReadingPipeline.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 1_000;
+    private static final int DEFAULT_QUEUE_CAPACITY = 4;
+    private static final long PROGRESS_INTERVAL_NANOS = 1_000_000_000L;
+
+    // A register that reads below a tenth of its range after reading above nine tenths
+    // has wrapped around rather than run backwards
+    private static final int ROLLOVER_TENTHS = 9;
+
+    private static final String REJECT_HEADER = "line,meter_number,current_reading,reading_date,status,detail";
+
+    /**
+     * Notified about once a second while a file is being ingested
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(MeterReadingIngestReport report);
+    }
+
+    private final BillingService billingService = BillingService.getInstance();
+    private final BillNumberAllocator billNumberAllocator = BillNumberAllocator.getInstance();
+    private final int batchSize;
+    private final int queueCapacity;
+    private volatile MeterReadingIngestReport currentReport;
+
+    /**
+     * Readings in flight between two stages. Columns are indexed by row; a row whose
+     * status is still null has passed every stage so far.
+     */
+    private static final class Batch {
+        final long[] lineNumbers;
+        final String[] meterNumbers;
+        final long[] currentReadings;
+        final LocalDate[] readingDates;
+        final LocalDate[] periodStarts;
+        final int[] customerDbIds;
+        final long[] previousReadings;
+        final LocalDate[] lastPeriodEnds;
+        final long[] usages;
+        final MeterReading[] readings;
+        final RowStatus[] statuses;
+        final String[] details;
+        int count;
+
+        // Rows that reached the rate stage, grouped by tariff schedule, and their rated bills
+        final int[] billable;
+        int billableCount;
+        final RatedBatch rated = new RatedBatch();
+
+        Batch(int size) {
+            lineNumbers = new long[size];
+            meterNumbers = new String[size];
+            currentReadings = new long[size];
+            readingDates = new LocalDate[size];
+            periodStarts = new LocalDate[size];
+            customerDbIds = new int[size];
+            previousReadings = new long[size];
+            lastPeriodEnds = new LocalDate[size];
+            usages = new long[size];
+            readings = new MeterReading[size];
+            statuses = new RowStatus[size];
+            details = new String[size];
+            billable = new int[size];
+        }
+
+        void reject(int row, RowStatus status, String detail) {
+            statuses[row] = status;
+            details[row] = detail;
+        }
+    }
+
+    // Marks the end of the file on every queue
+    private static final Batch END = new Batch(0);
+
+    /**
+     * One step applied to every batch between two queues
+     */
+    @FunctionalInterface
+    private interface StageWork {
+        void process(Batch batch) throws IOException, SQLException;
+    }
+
+    public MeterReadingPipeline() {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public MeterReadingPipeline(int batchSize, int queueCapacity) {
+        if (batchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Batch size and queue capacity must be positive");
+        }
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Report of the run in progress, or of the last run
+     */
+    public MeterReadingIngestReport getCurrentReport() {
+        return currentReport;
+    }
+
+    /**
+     * Ingest a meter-reading file, writing rejected readings to rejectFile.
+     * Waits until every reading is billed or rejected; if a stage fails, the others are
+     * stopped and the failure is thrown. Batches committed before that stay billed, and
+     * running the file again skips them as already billed.
+     */
+    public synchronized MeterReadingIngestReport ingest(Path file, Path rejectFile, ProgressListener listener)
+            throws IOException, SQLException {
+        logger.info("Ingesting meter reading file {}", file);
+        return run(file, (out, report) -> parse(file, out, report), rejectFile, listener);
+    }
+
+    /**
+     * Ingest a binary spool written by MeterReadingSpoolWriter. Records are decoded in place
+     * from the mapped file instead of parsed; everything after that is the same as ingest().
+     * The spool's checksum is verified before any reading is billed.
+     */
+    public synchronized MeterReadingIngestReport ingestSpool(Path spoolFile, Path rejectFile,
+                                                             ProgressListener listener)
+            throws IOException, SQLException {
+        logger.info("Ingesting meter reading spool {}", spoolFile);
+        try (MeterReadingSpool spool = MeterReadingSpool.open(spoolFile)) {
+            if (!spool.verifyChecksum()) {
+                throw new IOException("Checksum mismatch in meter reading spool " + spoolFile);
+            }
+            return run(spoolFile, (out, report) -> readSpool(spool, out, report), rejectFile, listener);
+        }
+    }
+
+    /**
+     * Produces batches onto the first queue, then the end marker
+     */
+    @FunctionalInterface
+    private interface Source {
+        Void produce(BlockingQueue<Batch> out, MeterReadingIngestReport report) throws IOException, InterruptedException;
+    }
+
+    private MeterReadingIngestReport run(Path file, Source source, Path rejectFile, ProgressListener listener)
+            throws IOException, SQLException {
+        MeterReadingIngestReport report = new MeterReadingIngestReport(file, rejectFile);
+        currentReport = report;
+        MeterStateTable meters = MeterStateTable.getInstance();
+
+        BlockingQueue<Batch> toEnrich = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Batch> toValidate = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Batch> toRate = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Batch> toPersist = new ArrayBlockingQueue<>(queueCapacity);
+
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Stage.values().length, r -> {
+            Thread thread = new Thread(r, "meter-pipeline-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            futures.add(stages.submit(() -> source.produce(toEnrich, report)));
+            futures.add(stages.submit(() -> runStage(Stage.ENRICH, toEnrich, toValidate,
+                    enricher(meters), report)));
+            futures.add(stages.submit(() -> runStage(Stage.VALIDATE, toValidate, toRate,
+                    validator(report), report)));
+            futures.add(stages.submit(() -> runStage(Stage.RATE, toRate, toPersist,
+                    rater(), report)));
+            futures.add(stages.submit(() -> persist(toPersist, rejectFile, report, listener)));
+
+            for (int i = 0; i < futures.size(); i++) {
+                stages.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while ingesting " + file);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            logger.error("Meter reading pipeline failed on {}: {}", file, cause.getMessage());
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof SQLException sql) {
+                throw sql;
+            }
+            throw new IllegalStateException("Meter reading pipeline failed", cause);
+        } finally {
+            // Stops the other stages, blocked or not, once one has failed
+            futures.forEach(f -> f.cancel(true));
+            executor.shutdownNow();
+            report.finish();
+        }
+
+        logger.info("Meter reading file ingested: {}", report);
+        return report;
+    }
+
+    /**
+     * Take batches from in, process them and pass them on until the end marker arrives
+     */
+    private Void runStage(Stage stage, BlockingQueue<Batch> in, BlockingQueue<Batch> out, StageWork work,
+                          MeterReadingIngestReport report) throws IOException, SQLException, InterruptedException {
+        while (true) {
+            report.queueDepth(stage, in.size());
+            Batch batch = in.take();
+            if (batch == END) {
+                out.put(END);
+                return null;
+            }
+            long started = System.nanoTime();
+            work.process(batch);
+            report.stageProcessed(stage, batch.count, System.nanoTime() - started);
+            out.put(batch);
+        }
+    }
+
+    /**
+     * Parse stage: split the file into batches of raw readings
+     */
+    private Void parse(Path file, BlockingQueue<Batch> out, MeterReadingIngestReport report)
+            throws IOException, InterruptedException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            MeterReadingCsv.Row parsed = new MeterReadingCsv.Row();
+            Batch batch = new Batch(batchSize);
+            long started = System.nanoTime();
+            long lineNo = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank() || (lineNo == 1 && MeterReadingCsv.isHeader(line))) {
+                    continue;
+                }
+                parseLine(line, lineNo, parsed, batch, batch.count++);
+                if (batch.count == batchSize) {
+                    report.stageProcessed(Stage.PARSE, batch.count, System.nanoTime() - started);
+                    out.put(batch);
+                    batch = new Batch(batchSize);
+                    started = System.nanoTime();
+                }
+            }
+            if (batch.count > 0) {
+                report.stageProcessed(Stage.PARSE, batch.count, System.nanoTime() - started);
+                out.put(batch);
+            }
+        }
+        out.put(END);
+        return null;
+    }
+
+    private static void parseLine(String line, long lineNo, MeterReadingCsv.Row parsed, Batch batch, int row) {
+        batch.lineNumbers[row] = lineNo;
+        if (!MeterReadingCsv.parse(line, parsed)) {
+            batch.reject(row, RowStatus.INVALID, parsed.error);
+        }
+        batch.meterNumbers[row] = parsed.meterNumber;
+        batch.currentReadings[row] = parsed.readingCentiKwh;
+        batch.readingDates[row] = parsed.readingDate;
+        batch.periodStarts[row] = parsed.periodStart;
+    }
+
+    /**
+     * Spool source: fill batches straight from the mapped records, with no text parsing.
+     * Record numbers, counted from 1, stand in for line numbers in the reject file.
+     */
+    private Void readSpool(MeterReadingSpool spool, BlockingQueue<Batch> out, MeterReadingIngestReport report)
+            throws InterruptedException {
+        MeterReadingSpool.Cursor cursor = spool.cursor();
+        Batch batch = new Batch(batchSize);
+        long started = System.nanoTime();
+        while (cursor.next()) {
+            int row = batch.count++;
+            batch.lineNumbers[row] = cursor.index() + 1;
+            batch.meterNumbers[row] = cursor.meterNumber();
+            batch.currentReadings[row] = cursor.readingCentiKwh();
+            batch.readingDates[row] = cursor.readingDate();
+            batch.periodStarts[row] = cursor.periodStart();
+            if (batch.count == batchSize) {
+                report.stageProcessed(Stage.PARSE, batch.count, System.nanoTime() - started);
+                out.put(batch);
+                batch = new Batch(batchSize);
+                started = System.nanoTime();
+            }
+        }
+        if (batch.count > 0) {
+            report.stageProcessed(Stage.PARSE, batch.count, System.nanoTime() - started);
+            out.put(batch);
+        }
+        out.put(END);
+        return null;
+    }
+
+    /**
+     * Enrich stage: resolve each meter to its customer and last billed reading
+     */
+    private static StageWork enricher(MeterStateTable meters) {
+        MeterStateTable.MeterState state = new MeterStateTable.MeterState();
+        return batch -> {
+            for (int row = 0; row < batch.count; row++) {
+                if (batch.statuses[row] != null) {
+                    continue;
+                }
+                if (!meters.lookup(batch.meterNumbers[row], state)) {
+                    batch.reject(row, RowStatus.UNKNOWN_METER, "No active customer has this meter");
+                    continue;
+                }
+                batch.customerDbIds[row] = state.getCustomerDbId();
+                batch.previousReadings[row] = state.getPreviousReadingCentiKwh();
+                batch.lastPeriodEnds[row] = state.getPeriodEnd();
+            }
+        };
+    }
+
+    /**
+     * Validate stage: work out the billing period and usage, allowing for meters that
+     * rolled over, and reject readings that are backwards, already billed or repeated
+     */
+    private static StageWork validator(MeterReadingIngestReport report) {
+        BitSet seenCustomers = new BitSet();
+        return batch -> {
+            for (int row = 0; row < batch.count; row++) {
+                if (batch.statuses[row] != null) {
+                    continue;
+                }
+                LocalDate periodEnd = batch.readingDates[row];
+                LocalDate lastPeriodEnd = batch.lastPeriodEnds[row];
+                if (lastPeriodEnd != null && !periodEnd.isAfter(lastPeriodEnd)) {
+                    batch.reject(row, RowStatus.ALREADY_BILLED, "Meter is billed up to " + lastPeriodEnd);
+                    continue;
+                }
+                LocalDate periodStart = lastPeriodEnd != null ? lastPeriodEnd.plusDays(1)
+                        : batch.periodStarts[row] != null ? batch.periodStarts[row]
+                        : periodEnd.withDayOfMonth(1);
+                if (periodStart.isAfter(periodEnd)) {
+                    batch.reject(row, RowStatus.INVALID, "Period starts after the reading date");
+                    continue;
+                }
+
+                int customerDbId = batch.customerDbIds[row];
+                if (seenCustomers.get(customerDbId)) {
+                    batch.reject(row, RowStatus.DUPLICATE_IN_FILE, "Meter already read earlier in this file");
+                    continue;
+                }
+
+                long previous = batch.previousReadings[row];
+                long current = batch.currentReadings[row];
+                long usage = current - previous;
+                if (usage < 0) {
+                    long range = registerRange(previous);
+                    if (previous * 10 < range * ROLLOVER_TENTHS || current * 10 >= range) {
+                        batch.reject(row, RowStatus.NEGATIVE_USAGE,
+                                "Reading is below the previous reading of " + Money.toPlainString(previous));
+                        continue;
+                    }
+                    usage = range - previous + current;
+                    report.rolloverDetected();
+                }
+
+                seenCustomers.set(customerDbId);
+                batch.usages[row] = usage;
+                batch.readings[row] = new MeterReading(null, Money.toAmount(previous), Money.toAmount(current),
+                        periodStart, periodEnd);
+            }
+        };
+    }
+
+    /**
+     * Range of a meter register in centi-kWh, taken from the digits of a reading on it
+     */
+    static long registerRange(long readingCentiKwh) {
+        long range = 10 * Money.SCALE;
+        while (range <= readingCentiKwh) {
+            range *= 10;
+        }
+        return range;
+    }
+
+    /**
+     * Rate stage: rate the valid rows in bulk on each customer's tariff schedule. Rows are
+     * grouped by schedule so there is one kernel call per schedule in the batch (usually one).
+     */
+    private StageWork rater() {
+        // Schedules are looked up once per class and period for the whole file
+        Map<String, Map<LocalDate, TariffSchedule>> schedules = new HashMap<>();
+        TariffSchedule[] rowSchedules = new TariffSchedule[batchSize];
+        TariffSchedule[] groupedSchedules = new TariffSchedule[batchSize];
+        int[] grouped = new int[batchSize];
+        long[] usages = new long[batchSize];
+        return batch -> {
+            int billable = 0;
+            for (int row = 0; row < batch.count; row++) {
+                if (batch.statuses[row] == null) {
+                    String customerClass = billingService.customerClassOf(batch.customerDbIds[row]);
+                    rowSchedules[billable] = schedules.computeIfAbsent(customerClass, c -> new HashMap<>())
+                            .computeIfAbsent(batch.readings[row].getPeriodEnd(),
+                                    periodEnd -> billingService.scheduleFor(customerClass, periodEnd));
+                    batch.billable[billable++] = row;
+                }
+            }
+            batch.billableCount = billable;
+
+            // Stable grouping by schedule; a batch rarely holds more than a few distinct ones
+            int placed = 0;
+            for (int k = 0; k < billable; k++) {
+                TariffSchedule schedule = rowSchedules[k];
+                if (schedule == null) {
+                    continue;
+                }
+                for (int j = k; j < billable; j++) {
+                    if (rowSchedules[j] == schedule) {
+                        grouped[placed] = batch.billable[j];
+                        groupedSchedules[placed++] = schedule;
+                        rowSchedules[j] = null;
+                    }
+                }
+            }
+            System.arraycopy(grouped, 0, batch.billable, 0, billable);
+            for (int k = 0; k < billable; k++) {
+                usages[k] = batch.usages[batch.billable[k]];
+            }
+            billingService.calculateBills(usages, groupedSchedules, billable, batch.rated);
+        };
+    }
+
+    /**
+     * Persist stage: write each batch's bills in one transaction and its rejects to the
+     * reject file, until the end marker arrives
+     */
+    private Void persist(BlockingQueue<Batch> in, Path rejectFile, MeterReadingIngestReport report,
+                         ProgressListener listener) throws IOException, SQLException, InterruptedException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             BufferedWriter rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+
+            rejects.write(REJECT_HEADER);
+            rejects.newLine();
+            long lastProgress = System.nanoTime();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(BillingService.INSERT_BILL_BY_CUSTOMER_ID)) {
+                while (true) {
+                    report.queueDepth(Stage.PERSIST, in.size());
+                    Batch batch = in.take();
+                    if (batch == END) {
+                        break;
+                    }
+                    long started = System.nanoTime();
+                    writeBills(conn, pstmt, batch, report);
+                    writeRejects(rejects, batch, report);
+                    report.stageProcessed(Stage.PERSIST, batch.count, System.nanoTime() - started);
+
+                    if (listener != null && started - lastProgress >= PROGRESS_INTERVAL_NANOS) {
+                        lastProgress = started;
+                        notifyProgress(listener, report);
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        notifyProgress(listener, report);
+        return null;
+    }
+
+    /**
+     * Insert the batch's bills and commit. If the batch fails it is rolled back and
+     * retried row by row, so only the offending rows are marked as failed. A committed
+     * batch is never replayed; if its results cannot be read back, its rows are marked
+     * unconfirmed and meter state catches up on its next refresh.
+     */
+    private void writeBills(Connection conn, PreparedStatement pstmt, Batch batch, MeterReadingIngestReport report)
+            throws SQLException {
+        int billable = batch.billableCount;
+        if (billable == 0) {
+            return;
+        }
+        String[] billNumbers = billNumberAllocator.nextBillNumbers(LocalDate.now().getYear(), billable);
+        boolean[] written = new boolean[billable];
+
+        int[] counts = null;
+        try {
+            for (int k = 0; k < billable; k++) {
+                int row = batch.billable[k];
+                billingService.bindBill(pstmt, billNumbers[k], batch.customerDbIds[row], batch.readings[row],
+                        batch.rated, k);
+                pstmt.addBatch();
+            }
+            counts = pstmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            logger.warn("Batch of {} bills failed, retrying row by row: {}", billable, e.getMessage());
+            pstmt.clearBatch();
+            conn.rollback();
+            writeRowByRow(conn, pstmt, batch, billNumbers, written);
+        }
+
+        if (counts != null) {
+            try {
+                Set<String> inserted = billingService.insertedBillNumbers(conn, counts, billNumbers, 0, billable);
+                conn.commit();
+                for (int k = 0; k < billable; k++) {
+                    written[k] = inserted.contains(billNumbers[k]);
+                }
+            } catch (SQLException e) {
+                logger.error("Batch of {} bills was committed but its results could not be read back", billable, e);
+                conn.rollback();
+                for (int k = 0; k < billable; k++) {
+                    batch.reject(batch.billable[k], RowStatus.UNCONFIRMED,
+                            "Bill was saved but could not be confirmed: " + e.getMessage());
+                }
+            }
+        }
+
+        for (int k = 0; k < billable; k++) {
+            int row = batch.billable[k];
+            if (written[k]) {
+                batch.statuses[row] = RowStatus.BILLED;
+                report.billed(batch.rated.totalAmount()[k]);
+                MeterStateTable.recordBillIfLoaded(batch.customerDbIds[row], batch.readings[row]);
+            } else if (batch.statuses[row] == null) {
+                batch.reject(row, RowStatus.ALREADY_BILLED, "Billed for this period by another process");
+            }
+        }
+        report.batchCommitted();
+    }
+
+    /**
+     * Insert a rolled-back batch one row at a time, each under its own savepoint
+     */
+    private void writeRowByRow(Connection conn, PreparedStatement pstmt, Batch batch, String[] billNumbers,
+                               boolean[] written) throws SQLException {
+        for (int k = 0; k < written.length; k++) {
+            int row = batch.billable[k];
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                billingService.bindBill(pstmt, billNumbers[k], batch.customerDbIds[row], batch.readings[row],
+                        batch.rated, k);
+                written[k] = pstmt.executeUpdate() > 0;
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException rowError) {
+                conn.rollback(savepoint);
+                batch.reject(row, RowStatus.FAILED, rowError.getMessage());
+                logger.error("Error billing meter: {}", batch.meterNumbers[row], rowError);
+            }
+        }
+        conn.commit();
+    }
+
+    private static void writeRejects(BufferedWriter out, Batch batch, MeterReadingIngestReport report)
+            throws IOException {
+        for (int row = 0; row < batch.count; row++) {
+            RowStatus status = batch.statuses[row];
+            if (status == RowStatus.BILLED) {
+                continue;
+            }
+            report.record(status);
+            out.write(Long.toString(batch.lineNumbers[row]));
+            out.write(',');
+            out.write(csv(batch.meterNumbers[row]));
+            out.write(',');
+            out.write(Money.toPlainString(batch.currentReadings[row]));
+            out.write(',');
+            out.write(batch.readingDates[row] == null ? "" : batch.readingDates[row].toString());
+            out.write(',');
+            out.write(status.name());
+            out.write(',');
+            out.write(csv(batch.details[row]));
+            out.newLine();
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private void notifyProgress(ProgressListener listener, MeterReadingIngestReport report) {
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onProgress(report);
+        } catch (RuntimeException e) {
+            logger.warn("Meter reading progress listener failed", e);
+        }
+    }
+}
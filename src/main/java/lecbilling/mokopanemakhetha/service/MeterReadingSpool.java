@@ -0,0 +1,263 @@
+package lecbilling.mokopanemakhetha.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.zip.CRC32C;
+
+/**
+ * Read side of the binary meter-reading spool: a header followed by fixed-size records,
+ * memory-mapped so records are read in place with no parsing and no copying. Records can
+ * be fetched by index or scanned in order with a reusable Cursor.
+ *
+ * Header (64 bytes, little-endian): magic "MRS1", format version, record size, record
+ * count, CRC32C of the record area and creation time in epoch millis.
+ * Record (72 bytes): reading in centi-kWh, reading date and period start as epoch days,
+ * flags, meter number length and up to MAX_METER_LENGTH Latin-1 meter number bytes.
+ */
+public class MeterReadingSpool implements AutoCloseable {
+    public static final int MAGIC = 0x3153524D; // "MRS1" read as a little-endian int
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+    public static final int RECORD_BYTES = 72;
+    public static final int MAX_METER_LENGTH = 50;
+
+    /** The record carries its own period start */
+    public static final int FLAG_PERIOD_START = 1;
+
+    // Record field offsets
+    static final int READING = 0;
+    static final int READING_DAY = 8;
+    static final int PERIOD_START_DAY = 12;
+    static final int FLAGS = 16;
+    static final int METER_LENGTH = 17;
+    static final int METER = 18;
+
+    // Header field offsets
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_RECORD_BYTES = 8;
+    static final int HEADER_COUNT = 16;
+    static final int HEADER_CHECKSUM = 24;
+    static final int HEADER_CREATED = 32;
+
+    // A single mapping is limited to 2 GB, so large spools are mapped in segments
+    private static final int SEGMENT_RECORDS = Integer.MAX_VALUE / RECORD_BYTES;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long recordCount;
+    private final long checksum;
+    private final long createdAt;
+
+    private MeterReadingSpool(Path file, FileChannel channel, long recordCount, long checksum, long createdAt)
+            throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.recordCount = recordCount;
+        this.checksum = checksum;
+        this.createdAt = createdAt;
+
+        int segmentCount = (int) ((recordCount + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS);
+        segments = new MappedByteBuffer[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            long first = (long) s * SEGMENT_RECORDS;
+            long records = Math.min(SEGMENT_RECORDS, recordCount - first);
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + first * RECORD_BYTES, records * RECORD_BYTES);
+            segments[s].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Map a spool file after checking its header. The checksum is only checked by
+     * verifyChecksum(), so opening stays cheap for random access.
+     */
+    public static MeterReadingSpool open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a meter reading spool (too short): " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // read until the header is full
+            }
+            if (header.getInt(HEADER_MAGIC) != MAGIC) {
+                throw new IOException("Not a meter reading spool: " + file);
+            }
+            if (header.getInt(HEADER_VERSION) != VERSION || header.getInt(HEADER_RECORD_BYTES) != RECORD_BYTES) {
+                throw new IOException("Unsupported meter reading spool version in " + file);
+            }
+            long count = header.getLong(HEADER_COUNT);
+            if (count < 0 || channel.size() != HEADER_BYTES + count * RECORD_BYTES) {
+                throw new IOException("Meter reading spool " + file + " is incomplete: header says "
+                        + count + " records in " + channel.size() + " bytes");
+            }
+            return new MeterReadingSpool(file, channel, count, header.getLong(HEADER_CHECKSUM),
+                    header.getLong(HEADER_CREATED));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Recompute the CRC32C of all records and compare it with the header
+     */
+    public boolean verifyChecksum() {
+        CRC32C crc = new CRC32C();
+        for (MappedByteBuffer segment : segments) {
+            crc.update(segment.duplicate().clear());
+        }
+        return crc.getValue() == checksum;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long size() {
+        return recordCount;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    private ByteBuffer segmentOf(long index) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + recordCount);
+        }
+        return segments[(int) (index / SEGMENT_RECORDS)];
+    }
+
+    private static int offsetOf(long index) {
+        return (int) (index % SEGMENT_RECORDS) * RECORD_BYTES;
+    }
+
+    // Random access by record index
+    public long readingCentiKwh(long index) {
+        return segmentOf(index).getLong(offsetOf(index) + READING);
+    }
+
+    public int readingDay(long index) {
+        return segmentOf(index).getInt(offsetOf(index) + READING_DAY);
+    }
+
+    public int periodStartDay(long index) {
+        return segmentOf(index).getInt(offsetOf(index) + PERIOD_START_DAY);
+    }
+
+    public int flags(long index) {
+        return segmentOf(index).get(offsetOf(index) + FLAGS) & 0xFF;
+    }
+
+    public String meterNumber(long index) {
+        return meterNumber(segmentOf(index), offsetOf(index));
+    }
+
+    private static String meterNumber(ByteBuffer segment, int offset) {
+        int length = segment.get(offset + METER_LENGTH);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (segment.get(offset + METER + i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Sequential reader over the records. Getters read the current record in place;
+     * only meterNumber() allocates.
+     */
+    public final class Cursor {
+        private long index = -1;
+        private ByteBuffer segment;
+        private int offset;
+
+        /**
+         * Move to the next record; returns false past the last one
+         */
+        public boolean next() {
+            if (index + 1 >= recordCount) {
+                index = recordCount;
+                return false;
+            }
+            index++;
+            offset = offsetOf(index);
+            if (offset == 0 || segment == null) {
+                segment = segments[(int) (index / SEGMENT_RECORDS)];
+            }
+            return true;
+        }
+
+        /**
+         * Position the cursor so the next call to next() returns record index
+         */
+        public void seek(long index) {
+            this.index = index - 1;
+            this.segment = null;
+        }
+
+        public long index() {
+            return index;
+        }
+
+        public long readingCentiKwh() {
+            return segment.getLong(offset + READING);
+        }
+
+        public int readingDay() {
+            return segment.getInt(offset + READING_DAY);
+        }
+
+        public LocalDate readingDate() {
+            return LocalDate.ofEpochDay(readingDay());
+        }
+
+        public int flags() {
+            return segment.get(offset + FLAGS) & 0xFF;
+        }
+
+        /**
+         * The record's own period start, or null if it has none
+         */
+        public LocalDate periodStart() {
+            return (flags() & FLAG_PERIOD_START) != 0
+                    ? LocalDate.ofEpochDay(segment.getInt(offset + PERIOD_START_DAY)) : null;
+        }
+
+        public int meterNumberLength() {
+            return segment.get(offset + METER_LENGTH);
+        }
+
+        /**
+         * One byte of the meter number, for callers that hash or compare it in place
+         */
+        public int meterNumberByte(int i) {
+            return segment.get(offset + METER + i) & 0xFF;
+        }
+
+        public String meterNumber() {
+            return MeterReadingSpool.meterNumber(segment, offset);
+        }
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Unmapping happens when the buffers are garbage collected; closing releases the file
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
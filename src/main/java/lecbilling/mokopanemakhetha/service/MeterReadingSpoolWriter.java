@@ -0,0 +1,179 @@
+package lecbilling.mokopanemakhetha.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.zip.CRC32C;
+
+import static lecbilling.mokopanemakhetha.service.MeterReadingSpool.*;
+
+/**
+ * Writes a binary meter-reading spool (see MeterReadingSpool for the layout). Records go
+ * through one reusable buffer; the header, with the record count and checksum, is written
+ * on close(). The spool is built beside the target and moved into place by close(), so
+ * readers never see a partial file; discard() abandons it instead.
+ */
+public class MeterReadingSpoolWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MeterReadingSpoolWriter.class);
+
+    private static final int BUFFER_RECORDS = 1024;
+    private static final int MAX_LOGGED_SKIPS = 20;
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C crc = new CRC32C();
+    private long count;
+    private boolean closed;
+
+    public MeterReadingSpoolWriter(Path target) throws IOException {
+        this.target = target;
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        channel.position(HEADER_BYTES);
+    }
+
+    /**
+     * Whether a meter number fits in a record
+     */
+    public static boolean isWritable(String meterNumber) {
+        if (meterNumber == null || meterNumber.isEmpty() || meterNumber.length() > MAX_METER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < meterNumber.length(); i++) {
+            if (meterNumber.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append one reading. periodStart may be null.
+     */
+    public void append(String meterNumber, long readingCentiKwh, LocalDate readingDate, LocalDate periodStart)
+            throws IOException {
+        if (!isWritable(meterNumber)) {
+            throw new IllegalArgumentException("Meter number cannot be spooled: " + meterNumber);
+        }
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        int base = buffer.position();
+        buffer.putLong(base + READING, readingCentiKwh);
+        buffer.putInt(base + READING_DAY, (int) readingDate.toEpochDay());
+        buffer.putInt(base + PERIOD_START_DAY, periodStart == null ? 0 : (int) periodStart.toEpochDay());
+        buffer.put(base + FLAGS, (byte) (periodStart == null ? 0 : FLAG_PERIOD_START));
+        buffer.put(base + METER_LENGTH, (byte) meterNumber.length());
+        int i = 0;
+        for (; i < meterNumber.length(); i++) {
+            buffer.put(base + METER + i, (byte) meterNumber.charAt(i));
+        }
+        for (; i < RECORD_BYTES - METER; i++) {
+            buffer.put(base + METER + i, (byte) 0);
+        }
+        buffer.position(base + RECORD_BYTES);
+        count++;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Write the header, sync the file and move it into place
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (channel) {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(HEADER_MAGIC, MAGIC)
+                  .putInt(HEADER_VERSION, VERSION)
+                  .putInt(HEADER_RECORD_BYTES, RECORD_BYTES)
+                  .putLong(HEADER_COUNT, count)
+                  .putLong(HEADER_CHECKSUM, crc.getValue())
+                  .putLong(HEADER_CREATED, System.currentTimeMillis());
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Give up on the spool and delete the partial file
+     */
+    public void discard() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        channel.close();
+        Files.deleteIfExists(temp);
+    }
+
+    /**
+     * Convert a meter-reading CSV file into a spool. Lines that do not parse, or whose meter
+     * number cannot be spooled, are logged and left out. Returns the number of records written.
+     */
+    public static long convertCsv(Path csv, Path spool) throws IOException {
+        long skipped = 0;
+        MeterReadingCsv.Row row = new MeterReadingCsv.Row();
+        MeterReadingSpoolWriter out = new MeterReadingSpoolWriter(spool);
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            long lineNo = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank() || (lineNo == 1 && MeterReadingCsv.isHeader(line))) {
+                    continue;
+                }
+                String error = !MeterReadingCsv.parse(line, row) ? row.error
+                        : !isWritable(row.meterNumber) ? "Meter number cannot be spooled" : null;
+                if (error != null) {
+                    if (++skipped <= MAX_LOGGED_SKIPS) {
+                        logger.warn("Skipping line {} of {}: {}", lineNo, csv, error);
+                    }
+                    continue;
+                }
+                out.append(row.meterNumber, row.readingCentiKwh, row.readingDate, row.periodStart);
+            }
+        } catch (IOException | RuntimeException e) {
+            out.discard();
+            throw e;
+        }
+        out.close();
+        logger.info("Converted {} to spool {}: {} records, {} lines skipped", csv, spool, out.getCount(), skipped);
+        return out.getCount();
+    }
+}
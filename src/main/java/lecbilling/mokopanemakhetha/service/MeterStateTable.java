@@ -0,0 +1,510 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.MeterReading;
+import lecbilling.mokopanemakhetha.model.Money;
+import lecbilling.mokopanemakhetha.util.MeterTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Meter number to customer and last billed reading, so meter-reading ingestion can find
+ * the customer and previous reading of each meter without a query per meter. The table
+ * lives off-heap (see MeterTable), is bulk loaded from customers and their latest bill,
+ * follows bills as they are written, and polls for changes made elsewhere.
+ *
+ * The table can be snapshotted to a file. On the next start the snapshot is read straight
+ * into the off-heap slots instead of reloading, and only customers and bills changed since
+ * it was taken are read from the database. The file is never left mapped, so it can be
+ * replaced by the next snapshot on every platform.
+ */
+public class MeterStateTable {
+    private static final Logger logger = LoggerFactory.getLogger(MeterStateTable.class);
+    private static volatile MeterStateTable instance;
+
+    public static final int NOT_FOUND = MeterTable.NOT_FOUND;
+
+    private static final long REFRESH_INTERVAL_SECONDS = 30;
+    private static final int FETCH_SIZE = 5_000;
+
+    // Same overlap as CustomerIdCache: updated_at is the transaction start time
+    private static final long WATERMARK_OVERLAP_MILLIS = 60_000;
+
+    // bills.created_at is the transaction start time too, and a billing run writes a whole
+    // shard in one transaction, so bills are re-read over a window longer than any such
+    // transaction; re-reading is harmless because readings only move forward
+    private static final long BILL_WATERMARK_OVERLAP_MILLIS = 10 * 60_000;
+
+    // Snapshot file: header, then the raw slots
+    private static final int SNAPSHOT_MAGIC = 0x4D545231; // "MTR1"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_BYTES = 64;
+
+    private static final String SELECT_CUSTOMERS =
+            "SELECT id, meter_number, is_active, updated_at FROM customers";
+
+    // Latest bill of every active customer, read through idx_bills_customer_period
+    private static final String SELECT_INITIAL_STATE =
+            "SELECT c.id, c.meter_number, c.updated_at, b.id AS bill_id, " +
+            Money.sqlCents("b.current_reading") + " AS reading_cents, " +
+            "b.billing_period_start, b.billing_period_end " +
+            "FROM customers c LEFT JOIN LATERAL (" +
+            "  SELECT id, current_reading, billing_period_start, billing_period_end FROM bills " +
+            "  WHERE customer_id = c.id ORDER BY billing_period_start DESC, id DESC LIMIT 1" +
+            ") b ON TRUE WHERE c.is_active = TRUE";
+
+    // Read through idx_bills_created_at
+    private static final String SELECT_BILLS_SINCE =
+            "SELECT customer_id, " + Money.sqlCents("current_reading") + " AS reading_cents, " +
+            "billing_period_start, billing_period_end, created_at FROM bills WHERE created_at >= ?";
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Path snapshotFile;
+    private MeterTable table = new MeterTable(1024);
+
+    // Newest customers.updated_at and bills.created_at reflected in the table
+    private volatile Timestamp customerWatermark;
+    private volatile Timestamp billWatermark;
+    private volatile long lastRefreshMillis;
+    private ScheduledExecutorService refreshExecutor;
+
+    // Statistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder billsRecorded = new LongAdder();
+    private volatile boolean warmStarted;
+
+    /**
+     * Last billed state of one meter; filled in by lookup()
+     */
+    public static final class MeterState {
+        private int customerDbId = NOT_FOUND;
+        private long lastReadingCentiKwh;
+        private LocalDate periodStart;
+        private LocalDate periodEnd;
+
+        public int getCustomerDbId() {
+            return customerDbId;
+        }
+
+        /**
+         * Current reading of the meter's latest bill, 0 if it was never billed
+         */
+        public double getPreviousReading() {
+            return Money.toAmount(lastReadingCentiKwh);
+        }
+
+        public long getPreviousReadingCentiKwh() {
+            return lastReadingCentiKwh;
+        }
+
+        public boolean hasBeenBilled() {
+            return periodEnd != null;
+        }
+
+        public LocalDate getPeriodStart() {
+            return periodStart;
+        }
+
+        public LocalDate getPeriodEnd() {
+            return periodEnd;
+        }
+    }
+
+    private MeterStateTable(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public static MeterStateTable getInstance() {
+        MeterStateTable table = instance;
+        if (table == null) {
+            synchronized (MeterStateTable.class) {
+                table = instance;
+                if (table == null) {
+                    table = new MeterStateTable(defaultSnapshotFile());
+                    if (!table.loadSnapshot()) {
+                        table.loadAll();
+                    }
+                    table.startRefresh();
+                    instance = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Snapshot location; METER_STATE_SNAPSHOT overrides the default under the user's home
+     */
+    private static Path defaultSnapshotFile() {
+        String configured = System.getenv("METER_STATE_SNAPSHOT");
+        if (configured != null && !configured.isEmpty()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".lec-billing", "meter-state.bin");
+    }
+
+    /**
+     * Look up a meter. Returns false, leaving out untouched, if no active customer has it.
+     */
+    public boolean lookup(String meterNumber, MeterState out) {
+        lock.readLock().lock();
+        try {
+            int slot = table.find(meterNumber);
+            if (slot == NOT_FOUND) {
+                misses.increment();
+                return false;
+            }
+            out.customerDbId = table.customerIdAt(slot);
+            out.lastReadingCentiKwh = table.lastReadingAt(slot);
+            int periodEnd = table.periodEndAt(slot);
+            out.periodStart = periodEnd == MeterTable.NO_PERIOD ? null : LocalDate.ofEpochDay(table.periodStartAt(slot));
+            out.periodEnd = periodEnd == MeterTable.NO_PERIOD ? null : LocalDate.ofEpochDay(periodEnd);
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * Internal customer id for a meter, or NOT_FOUND
+     */
+    public int customerIdForMeter(String meterNumber) {
+        lock.readLock().lock();
+        try {
+            int slot = table.find(meterNumber);
+            return slot == NOT_FOUND ? NOT_FOUND : table.customerIdAt(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Note a bill that was just committed, if the table is in use. Bill writers call this so
+     * the next reading for the meter starts from this one without waiting for a refresh.
+     */
+    public static void recordBillIfLoaded(int customerDbId, MeterReading reading) {
+        MeterStateTable table = instance;
+        if (table != null) {
+            table.recordBill(customerDbId, Money.toCents(reading.getCurrentReading()),
+                    reading.getPeriodStart(), reading.getPeriodEnd());
+        }
+    }
+
+    private void recordBill(int customerDbId, long readingCentiKwh, LocalDate periodStart, LocalDate periodEnd) {
+        lock.writeLock().lock();
+        try {
+            int slot = table.findByCustomer(customerDbId);
+            // Unknown customers are picked up, with this bill, by the next refresh
+            if (slot != NOT_FOUND && table.advanceReading(slot, readingCentiKwh,
+                    (int) periodStart.toEpochDay(), (int) periodEnd.toEpochDay())) {
+                billsRecorded.increment();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Load every active customer and its latest bill, replacing the current contents
+     */
+    public synchronized boolean loadAll() {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(SELECT_INITIAL_STATE,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+                pstmt.setFetchSize(FETCH_SIZE);
+                MeterTable loaded = new MeterTable(1024);
+                Timestamp newest = null;
+                Timestamp loadedAt = databaseNow(conn);
+                int skipped = 0;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int slot = loaded.put(rs.getString("meter_number"), rs.getInt("id"));
+                        if (slot == NOT_FOUND) {
+                            skipped++;
+                            continue;
+                        }
+                        if (rs.getObject("bill_id") != null) {
+                            loaded.setReading(slot, rs.getLong("reading_cents"),
+                                    (int) rs.getDate("billing_period_start").toLocalDate().toEpochDay(),
+                                    (int) rs.getDate("billing_period_end").toLocalDate().toEpochDay());
+                        }
+                        newest = later(newest, rs.getTimestamp("updated_at"));
+                    }
+                }
+                conn.commit();
+
+                lock.writeLock().lock();
+                try {
+                    table = loaded;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                customerWatermark = newest;
+                billWatermark = loadedAt;
+                lastRefreshMillis = System.currentTimeMillis();
+                if (skipped > 0) {
+                    logger.warn("{} meter numbers are too long or not Latin-1 and were left out", skipped);
+                }
+                logger.info("Loaded {} meters into meter state table ({} KB off-heap)",
+                        loaded.size(), loaded.offHeapBytes() / 1024);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.error("Error loading meter state table", e);
+        }
+        return false;
+    }
+
+    /**
+     * Apply customers and bills changed since the last refresh
+     */
+    public synchronized void refresh() {
+        if (customerWatermark == null) {
+            loadAll();
+            return;
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            Timestamp newest = customerWatermark;
+            int customerRows = 0;
+            try (PreparedStatement pstmt = conn.prepareStatement(SELECT_CUSTOMERS + " WHERE updated_at >= ?")) {
+                pstmt.setTimestamp(1, new Timestamp(customerWatermark.getTime() - WATERMARK_OVERLAP_MILLIS));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    lock.writeLock().lock();
+                    try {
+                        while (rs.next()) {
+                            int id = rs.getInt("id");
+                            if (rs.getBoolean("is_active")) {
+                                table.put(rs.getString("meter_number"), id);
+                            } else {
+                                table.removeCustomer(id);
+                            }
+                            newest = later(newest, rs.getTimestamp("updated_at"));
+                            customerRows++;
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+            }
+
+            Timestamp newestBill = billWatermark;
+            int billRows = 0;
+            try (PreparedStatement pstmt = conn.prepareStatement(SELECT_BILLS_SINCE)) {
+                pstmt.setTimestamp(1, new Timestamp(billWatermark.getTime() - BILL_WATERMARK_OVERLAP_MILLIS));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        recordBill(rs.getInt("customer_id"), rs.getLong("reading_cents"),
+                                rs.getDate("billing_period_start").toLocalDate(),
+                                rs.getDate("billing_period_end").toLocalDate());
+                        newestBill = later(newestBill, rs.getTimestamp("created_at"));
+                        billRows++;
+                    }
+                }
+            }
+
+            customerWatermark = newest;
+            billWatermark = newestBill;
+            lastRefreshMillis = System.currentTimeMillis();
+            logger.debug("Applied {} customer and {} bill changes to meter state table", customerRows, billRows);
+        } catch (SQLException e) {
+            logger.warn("Error refreshing meter state table: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Write the table to the snapshot file. The file is written beside the old one and
+     * moved into place, so a crash mid-write leaves the previous snapshot intact.
+     */
+    public synchronized boolean snapshot() {
+        if (customerWatermark == null) {
+            return false;
+        }
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+                header.putInt(SNAPSHOT_MAGIC)
+                      .putInt(SNAPSHOT_VERSION)
+                      .putInt(MeterTable.SLOT_BYTES)
+                      .putInt(table.capacity())
+                      .putInt(table.size())
+                      .putLong(customerWatermark.getTime())
+                      .putLong(billWatermark.getTime())
+                      .putLong(System.currentTimeMillis());
+                header.clear();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                table.writeTo(channel);
+                channel.force(true);
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Wrote meter state snapshot of {} meters to {}", table.size(), snapshotFile);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Error writing meter state snapshot {}: {}", snapshotFile, e.getMessage());
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read the snapshot file, if there is a usable one, and catch up with the database.
+     * The slots are read into a direct buffer of their own, so the file is closed again
+     * straight away and later changes never touch it.
+     */
+    private synchronized boolean loadSnapshot() {
+        if (!Files.isRegularFile(snapshotFile)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            if (channel.size() < SNAPSHOT_HEADER_BYTES) {
+                logger.warn("Ignoring truncated meter state snapshot {}", snapshotFile);
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+            readFully(channel, header);
+            header.flip();
+            int magic = header.getInt();
+            int version = header.getInt();
+            int slotBytes = header.getInt();
+            int capacity = header.getInt();
+            int size = header.getInt();
+            long customerMillis = header.getLong();
+            long billMillis = header.getLong();
+            long savedAt = header.getLong();
+            if (magic != SNAPSHOT_MAGIC || version != SNAPSHOT_VERSION || slotBytes != MeterTable.SLOT_BYTES
+                    || channel.size() != SNAPSHOT_HEADER_BYTES + (long) capacity * slotBytes) {
+                logger.warn("Ignoring incompatible meter state snapshot {}", snapshotFile);
+                return false;
+            }
+
+            ByteBuffer slots = ByteBuffer.allocateDirect(capacity * slotBytes);
+            readFully(channel, slots);
+            MeterTable loaded = MeterTable.wrap(slots, capacity);
+            if (loaded.size() != size) {
+                logger.warn("Ignoring corrupt meter state snapshot {}", snapshotFile);
+                return false;
+            }
+
+            lock.writeLock().lock();
+            try {
+                table = loaded;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            customerWatermark = new Timestamp(customerMillis);
+            billWatermark = new Timestamp(billMillis);
+            warmStarted = true;
+            logger.info("Read meter state snapshot of {} meters taken {} s ago", size,
+                    (System.currentTimeMillis() - savedAt) / 1000);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Error reading meter state snapshot {}: {}", snapshotFile, e.getMessage());
+            return false;
+        }
+
+        refresh();
+        return true;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer dst) throws IOException {
+        while (dst.hasRemaining()) {
+            if (channel.read(dst) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Snapshot the table if it was ever loaded, e.g. on application shutdown
+     */
+    public static void snapshotIfLoaded() {
+        MeterStateTable table = instance;
+        if (table != null) {
+            table.snapshot();
+        }
+    }
+
+    /**
+     * Start time of the connection's transaction on the database clock, in the same form
+     * as bills.created_at
+     */
+    private static Timestamp databaseNow(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT LOCALTIMESTAMP")) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    private static Timestamp later(Timestamp a, Timestamp b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.after(a) ? b : a;
+    }
+
+    private void startRefresh() {
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "meter-state-table");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(this::refresh,
+                REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return table.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get table statistics
+     */
+    public String getStats() {
+        lock.readLock().lock();
+        try {
+            return String.format(
+                "Meter state table: %d meters, %d KB off-heap, %d KB heap, %d hits, %d misses, " +
+                "%d bills recorded, %s start, staleness %d ms",
+                table.size(), table.offHeapBytes() / 1024, table.heapBytes() / 1024, hits.sum(), misses.sum(),
+                billsRecorded.sum(), warmStarted ? "warm" : "cold",
+                lastRefreshMillis == 0 ? -1 : System.currentTimeMillis() - lastRefreshMillis);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
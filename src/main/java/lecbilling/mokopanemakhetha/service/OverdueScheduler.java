@@ -0,0 +1,218 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.util.IntArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves unpaid bills to OVERDUE on the day after their due date.
+ * Unpaid bill ids are kept in a timing wheel with one slot per day for the next
+ * WHEEL_DAYS days; bills due later wait in an overflow map and drop into the wheel as
+ * days pass. Each tick picks up newly created bills, advances the wheel to today and
+ * flips every bill in the slots it passed with batched UPDATEs, so arrears become a
+ * status lookup instead of a due-date comparison over all unpaid bills.
+ */
+public class OverdueScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(OverdueScheduler.class);
+    private static OverdueScheduler instance;
+
+    private static final int WHEEL_DAYS = 64;
+    private static final long TICK_MINUTES = 5;
+    private static final int UPDATE_CHUNK_SIZE = 1_000;
+
+    private static final String MARK_OVERDUE =
+            "UPDATE bills SET payment_status = 'OVERDUE' WHERE id = ANY(?) AND payment_status = 'UNPAID'";
+
+    // wheel[day % WHEEL_DAYS] holds the bills due on that day, for days
+    // sweptThroughDay + 1 .. sweptThroughDay + WHEEL_DAYS
+    private final IntArrayList[] wheel = new IntArrayList[WHEEL_DAYS];
+    private final TreeMap<Long, IntArrayList> overflow = new TreeMap<>();
+
+    // Bills whose due date has passed but that have not been flipped yet
+    private final IntArrayList lapsed = new IntArrayList(1_024);
+
+    private boolean initialized;
+    private long sweptThroughDay;
+    private int lastSeenBillId;
+    private ScheduledExecutorService tickExecutor;
+
+    // Sweep statistics
+    private long billsTracked;
+    private long billsMarkedOverdue;
+    private long lastTickAt;
+
+    private OverdueScheduler() {
+        for (int i = 0; i < WHEEL_DAYS; i++) {
+            wheel[i] = new IntArrayList();
+        }
+    }
+
+    public static synchronized OverdueScheduler getInstance() {
+        if (instance == null) {
+            instance = new OverdueScheduler();
+            instance.startTicks();
+        }
+        return instance;
+    }
+
+    /**
+     * Pick up new bills, advance to today and flip everything that lapsed
+     */
+    public synchronized void tick() {
+        long today = LocalDate.now().toEpochDay();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            if (!initialized) {
+                markLapsedBefore(conn, today);
+                sweptThroughDay = today - 1;
+                initialized = true;
+            }
+            loadNewBills(conn);
+            boolean newDay = sweptThroughDay < today - 1;
+            advanceTo(today);
+            flushLapsed(conn);
+            if (newDay) {
+                // Safety net for bills committed out of id order and missed by loadNewBills;
+                // normally finds nothing, via the partial index on unpaid due dates
+                markLapsedBefore(conn, today);
+            }
+            lastTickAt = System.currentTimeMillis();
+        } catch (SQLException e) {
+            logger.warn("Overdue sweep failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Flip every unpaid bill due before today in one statement; used to catch up when the
+     * scheduler starts and as a once-a-day check behind the wheel
+     */
+    private void markLapsedBefore(Connection conn, long today) throws SQLException {
+        String query = "UPDATE bills SET payment_status = 'OVERDUE' " +
+                      "WHERE payment_status = 'UNPAID' AND due_date < ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setObject(1, LocalDate.ofEpochDay(today));
+            int flipped = pstmt.executeUpdate();
+            billsMarkedOverdue += flipped;
+            if (flipped > 0) {
+                logger.info("Marked {} lapsed bills as overdue", flipped);
+            }
+        }
+    }
+
+    /**
+     * Add unpaid bills created since the last tick to the wheel
+     */
+    private void loadNewBills(Connection conn) throws SQLException {
+        String query = "SELECT id, due_date FROM bills " +
+                      "WHERE id > ? AND payment_status = 'UNPAID' ORDER BY id";
+        int loaded = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, lastSeenBillId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    schedule(id, rs.getObject(2, LocalDate.class).toEpochDay());
+                    lastSeenBillId = id;
+                    loaded++;
+                }
+            }
+        }
+        if (loaded > 0) {
+            billsTracked += loaded;
+            logger.debug("Scheduled {} new unpaid bills for the overdue sweep", loaded);
+        }
+    }
+
+    private void schedule(int billId, long dueDay) {
+        if (dueDay <= sweptThroughDay) {
+            lapsed.add(billId);
+        } else if (dueDay <= sweptThroughDay + WHEEL_DAYS) {
+            wheel[(int) (dueDay % WHEEL_DAYS)].add(billId);
+        } else {
+            overflow.computeIfAbsent(dueDay, d -> new IntArrayList()).add(billId);
+        }
+    }
+
+    /**
+     * Turn the wheel one day at a time up to yesterday. Each emptied slot is refilled with
+     * the overflow bills due WHEEL_DAYS later, which is the day it now stands for.
+     */
+    private void advanceTo(long today) {
+        while (sweptThroughDay < today - 1) {
+            long day = ++sweptThroughDay;
+            int slot = (int) (day % WHEEL_DAYS);
+            IntArrayList due = wheel[slot];
+            for (int i = 0; i < due.size(); i++) {
+                lapsed.add(due.get(i));
+            }
+            IntArrayList next = overflow.remove(day + WHEEL_DAYS);
+            wheel[slot] = next != null ? next : new IntArrayList();
+        }
+    }
+
+    /**
+     * Flip the lapsed bills in chunks; paid bills are skipped by the status condition.
+     * The list is only cleared once every chunk is written, so a failed flush is retried.
+     */
+    private void flushLapsed(Connection conn) throws SQLException {
+        if (lapsed.isEmpty()) {
+            return;
+        }
+        int flipped = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(MARK_OVERDUE)) {
+            for (int from = 0; from < lapsed.size(); from += UPDATE_CHUNK_SIZE) {
+                int to = Math.min(from + UPDATE_CHUNK_SIZE, lapsed.size());
+                int[] ids = lapsed.toArray(from, to);
+                Integer[] boxed = new Integer[ids.length];
+                for (int i = 0; i < ids.length; i++) {
+                    boxed[i] = ids[i];
+                }
+                pstmt.setArray(1, conn.createArrayOf("integer", boxed));
+                flipped += pstmt.executeUpdate();
+            }
+        }
+        billsMarkedOverdue += flipped;
+        logger.info("Overdue sweep checked {} lapsed bills, {} marked overdue", lapsed.size(), flipped);
+        lapsed.clear();
+    }
+
+    private void startTicks() {
+        tickExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "overdue-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tickExecutor.scheduleWithFixedDelay(this::tick, 0, TICK_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Number of bills waiting in the wheel or the overflow map
+     */
+    public synchronized long getScheduledCount() {
+        long count = 0;
+        for (IntArrayList slot : wheel) {
+            count += slot.size();
+        }
+        for (IntArrayList days : overflow.values()) {
+            count += days.size();
+        }
+        return count;
+    }
+
+    /**
+     * Get sweep statistics
+     */
+    public synchronized String getStats() {
+        return String.format(
+            "Overdue sweep: %d scheduled (%d overflow days), %d tracked, %d marked overdue, last tick: %s",
+            getScheduledCount(), overflow.size(), billsTracked, billsMarkedOverdue,
+            lastTickAt == 0 ? "never" : new Timestamp(lastTickAt).toString());
+    }
+}
@@ -0,0 +1,639 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.Money;
+import lecbilling.mokopanemakhetha.model.PaymentIngestReport;
+import lecbilling.mokopanemakhetha.model.PaymentIngestReport.RowStatus;
+import lecbilling.mokopanemakhetha.util.StringIntMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Posts payments from bank payment files (CSV or fixed width) against unpaid bills.
+ * The file is streamed through a fixed-size NIO buffer and payments are matched against an
+ * in-memory bill_number index of unpaid and overdue bills, then applied with batched updates, one
+ * transaction per batch. Every row is written to a reconciliation report as it is settled,
+ * so memory use depends on the batch size and the number of unpaid bills, not the file size.
+ */
+public class PaymentFileIngester {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentFileIngester.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 1_000;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int NO_SLOT = -1;
+
+    private static final String UPDATE_PAID =
+            "UPDATE bills SET payment_status = 'PAID', payment_date = ? " +
+            "WHERE id = ? AND payment_status IN ('UNPAID', 'OVERDUE')";
+
+    private static final String REPORT_HEADER = "line,bill_number,amount,payment_date,reference,status,detail";
+
+    /**
+     * Layout of a payment file
+     */
+    public enum Format {
+        /** bill_number,amount,payment_date[,reference] with an optional header row */
+        CSV,
+        /** Fixed columns as described by a FixedWidthLayout */
+        FIXED_WIDTH
+    }
+
+    /**
+     * Column positions of a fixed-width payment record as [start, end) character offsets.
+     * Bank files usually carry amounts without a decimal point, in cents.
+     */
+    public static final class FixedWidthLayout {
+        private final int billNumberStart, billNumberEnd;
+        private final int amountStart, amountEnd;
+        private final int dateStart, dateEnd;
+        private final int referenceStart, referenceEnd;
+        private final boolean amountInCents;
+
+        public FixedWidthLayout(int billNumberStart, int billNumberEnd, int amountStart, int amountEnd,
+                                int dateStart, int dateEnd, int referenceStart, int referenceEnd,
+                                boolean amountInCents) {
+            this.billNumberStart = billNumberStart;
+            this.billNumberEnd = billNumberEnd;
+            this.amountStart = amountStart;
+            this.amountEnd = amountEnd;
+            this.dateStart = dateStart;
+            this.dateEnd = dateEnd;
+            this.referenceStart = referenceStart;
+            this.referenceEnd = referenceEnd;
+            this.amountInCents = amountInCents;
+        }
+
+        /**
+         * Bill number 1-20, amount in cents 21-32, date YYYYMMDD 33-40, reference 41-60
+         */
+        public static FixedWidthLayout standard() {
+            return new FixedWidthLayout(0, 20, 20, 32, 32, 40, 40, 60, true);
+        }
+    }
+
+    private final int batchSize;
+
+    // Pending rows of the current batch, reused for every batch
+    private final long[] lineNumbers;
+    private final String[] billNumbers;
+    private final long[] amounts;
+    private final Timestamp[] paidAt;
+    private final String[] references;
+    private final int[] slots;
+    private int pendingCount;
+
+    // Parsed fields of the current line, as offsets into the read buffer
+    private final int[] fieldStarts = new int[4];
+    private final int[] fieldEnds = new int[4];
+
+    public PaymentFileIngester() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    public PaymentFileIngester(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        this.lineNumbers = new long[batchSize];
+        this.billNumbers = new String[batchSize];
+        this.amounts = new long[batchSize];
+        this.paidAt = new Timestamp[batchSize];
+        this.references = new String[batchSize];
+        this.slots = new int[batchSize];
+    }
+
+    /**
+     * Ingest a CSV payment file
+     */
+    public PaymentIngestReport ingestCsv(Path file, Path reportFile) throws IOException, SQLException {
+        return ingest(file, Format.CSV, null, reportFile);
+    }
+
+    /**
+     * Ingest a fixed-width payment file
+     */
+    public PaymentIngestReport ingestFixedWidth(Path file, FixedWidthLayout layout, Path reportFile)
+            throws IOException, SQLException {
+        return ingest(file, Format.FIXED_WIDTH, layout, reportFile);
+    }
+
+    private synchronized PaymentIngestReport ingest(Path file, Format format, FixedWidthLayout layout,
+                                                    Path reportFile) throws IOException, SQLException {
+        logger.info("Ingesting {} payment file {}", format, file);
+        PaymentIngestReport report = new PaymentIngestReport(file, reportFile);
+        pendingCount = 0;
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             BufferedWriter out = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+
+            BillIndex index = BillIndex.load(conn);
+            out.write(REPORT_HEADER);
+            out.newLine();
+
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                 PreparedStatement update = conn.prepareStatement(UPDATE_PAID)) {
+
+                LineSink sink = (buf, from, to, lineNo) ->
+                        processLine(buf, from, to, lineNo, format, layout, index, conn, update, out, report);
+                readLines(channel, sink, out, report);
+                flush(index, conn, update, out, report);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        report.finish();
+        logger.info("Payment file ingested: {}", report);
+        return report;
+    }
+
+    @FunctionalInterface
+    private interface LineSink {
+        void accept(byte[] buf, int from, int to, long lineNo) throws IOException, SQLException;
+    }
+
+    /**
+     * Split the channel into lines through one reusable buffer. A line longer than the buffer
+     * is reported as invalid and skipped up to its newline.
+     */
+    private void readLines(FileChannel channel, LineSink sink, BufferedWriter out, PaymentIngestReport report)
+            throws IOException, SQLException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        byte[] buf = buffer.array();
+        long lineNo = 0;
+        int scanFrom = 0;
+        boolean discarding = false;
+
+        while (true) {
+            int read = channel.read(buffer);
+            int limit = buffer.position();
+            int start = 0;
+
+            for (int i = scanFrom; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    lineNo++;
+                    report.lineRead();
+                    if (discarding) {
+                        discarding = false;
+                    } else {
+                        sink.accept(buf, start, i, lineNo);
+                    }
+                    start = i + 1;
+                }
+            }
+
+            if (read < 0) {
+                if (start < limit && !discarding) {
+                    lineNo++;
+                    report.lineRead();
+                    sink.accept(buf, start, limit, lineNo);
+                }
+                return;
+            }
+
+            if (start == 0 && limit == buf.length) {
+                if (!discarding) {
+                    logger.warn("Payment file line {} exceeds {} bytes, skipping it", lineNo + 1, READ_BUFFER_BYTES);
+                    writeRow(out, lineNo + 1, null, -1, null, null, RowStatus.INVALID, "Line too long", report);
+                }
+                discarding = true;
+                start = limit;
+            }
+
+            // Move the unfinished line to the front of the buffer
+            System.arraycopy(buf, start, buf, 0, limit - start);
+            buffer.position(limit - start);
+            scanFrom = limit - start;
+        }
+    }
+
+    private void processLine(byte[] buf, int from, int to, long lineNo, Format format, FixedWidthLayout layout,
+                             BillIndex index, Connection conn, PreparedStatement update, BufferedWriter out,
+                             PaymentIngestReport report) throws IOException, SQLException {
+        if (to > from && buf[to - 1] == '\r') {
+            to--;
+        }
+        if (isBlank(buf, from, to)) {
+            return;
+        }
+
+        boolean amountInCents;
+        if (format == Format.CSV) {
+            int fields = splitCsv(buf, from, to);
+            if (lineNo == 1 && asciiEqualsIgnoreCase(buf, fieldStarts[0], fieldEnds[0], "bill_number")) {
+                return;
+            }
+            if (fields < 3) {
+                writeRow(out, lineNo, null, -1, null, null, RowStatus.INVALID, "Expected at least 3 fields", report);
+                return;
+            }
+            amountInCents = false;
+        } else {
+            int length = to - from;
+            setField(0, from, length, layout.billNumberStart, layout.billNumberEnd);
+            setField(1, from, length, layout.amountStart, layout.amountEnd);
+            setField(2, from, length, layout.dateStart, layout.dateEnd);
+            setField(3, from, length, layout.referenceStart, layout.referenceEnd);
+            amountInCents = layout.amountInCents;
+        }
+
+        String billNumber = text(buf, fieldStarts[0], fieldEnds[0]);
+        String reference = text(buf, fieldStarts[3], fieldEnds[3]);
+        long amount = parseAmount(buf, fieldStarts[1], fieldEnds[1], amountInCents);
+        Timestamp paymentDate = parseDate(buf, fieldStarts[2], fieldEnds[2]);
+
+        if (billNumber == null) {
+            writeRow(out, lineNo, null, amount, paymentDate, reference, RowStatus.INVALID, "Missing bill number", report);
+            return;
+        }
+        if (amount < 0) {
+            writeRow(out, lineNo, billNumber, -1, paymentDate, reference, RowStatus.INVALID, "Invalid amount", report);
+            return;
+        }
+        if (paymentDate == null) {
+            writeRow(out, lineNo, billNumber, amount, null, reference, RowStatus.INVALID, "Invalid payment date", report);
+            return;
+        }
+
+        int slot = index.slotOf(billNumber);
+        if (slot != NO_SLOT) {
+            if (index.settled[slot]) {
+                writeRow(out, lineNo, billNumber, amount, paymentDate, reference,
+                        RowStatus.DUPLICATE, "Bill already paid earlier in this file", report);
+                return;
+            }
+            if (index.amountCents[slot] != amount) {
+                writeRow(out, lineNo, billNumber, amount, paymentDate, reference, RowStatus.AMOUNT_MISMATCH,
+                        "Bill amount is " + Money.toPlainString(index.amountCents[slot]), report);
+                return;
+            }
+            index.settled[slot] = true;
+        }
+
+        // Matched rows wait for their batch to commit; misses wait to be classified in bulk
+        lineNumbers[pendingCount] = lineNo;
+        billNumbers[pendingCount] = billNumber;
+        amounts[pendingCount] = amount;
+        paidAt[pendingCount] = paymentDate;
+        references[pendingCount] = reference;
+        slots[pendingCount] = slot;
+        if (++pendingCount == batchSize) {
+            flush(index, conn, update, out, report);
+        }
+    }
+
+    /**
+     * Apply the pending batch in one transaction and write its rows to the report.
+     * If the batch fails it is rolled back and retried row by row.
+     */
+    private void flush(BillIndex index, Connection conn, PreparedStatement update, BufferedWriter out,
+                       PaymentIngestReport report) throws IOException, SQLException {
+        if (pendingCount == 0) {
+            return;
+        }
+
+        Map<String, String> knownStatus = classifyMisses(conn);
+
+        int updates = 0;
+        for (int p = 0; p < pendingCount; p++) {
+            if (slots[p] != NO_SLOT) {
+                update.setTimestamp(1, paidAt[p]);
+                update.setInt(2, index.billIds[slots[p]]);
+                update.addBatch();
+                updates++;
+            }
+        }
+
+        int[] counts = new int[pendingCount];
+        Arrays.fill(counts, 1);
+        if (updates > 0) {
+            try {
+                int[] batchCounts = update.executeBatch();
+                conn.commit();
+                for (int p = 0, u = 0; p < pendingCount; p++) {
+                    if (slots[p] != NO_SLOT) {
+                        counts[p] = batchCounts[u++];
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warn("Payment batch of {} updates failed, retrying row by row: {}", updates, e.getMessage());
+                update.clearBatch();
+                conn.rollback();
+                applyRowByRow(index, conn, update, counts);
+            }
+        }
+
+        for (int p = 0; p < pendingCount; p++) {
+            RowStatus status;
+            String detail;
+            if (slots[p] == NO_SLOT) {
+                String existing = knownStatus.get(billNumbers[p]);
+                status = existing == null ? RowStatus.UNMATCHED : RowStatus.DUPLICATE;
+                detail = existing == null ? "No such bill" : "Bill is already " + existing;
+            } else if (counts[p] == 0) {
+                status = RowStatus.DUPLICATE;
+                detail = "Bill was paid by another process";
+            } else if (counts[p] < 0 && counts[p] != Statement.SUCCESS_NO_INFO) {
+                status = RowStatus.INVALID;
+                detail = "Update failed";
+                index.settled[slots[p]] = false;
+            } else {
+                status = RowStatus.MATCHED;
+                detail = "";
+            }
+            writeRow(out, lineNumbers[p], billNumbers[p], amounts[p], paidAt[p], references[p], status, detail, report);
+        }
+
+        report.batchCommitted();
+        Arrays.fill(billNumbers, 0, pendingCount, null);
+        Arrays.fill(paidAt, 0, pendingCount, null);
+        Arrays.fill(references, 0, pendingCount, null);
+        pendingCount = 0;
+    }
+
+    private void applyRowByRow(BillIndex index, Connection conn, PreparedStatement update, int[] counts)
+            throws SQLException {
+        for (int p = 0; p < pendingCount; p++) {
+            if (slots[p] == NO_SLOT) {
+                continue;
+            }
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                update.setTimestamp(1, paidAt[p]);
+                update.setInt(2, index.billIds[slots[p]]);
+                counts[p] = update.executeUpdate();
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                conn.rollback(savepoint);
+                counts[p] = Statement.EXECUTE_FAILED;
+                logger.error("Error applying payment for bill: {}", billNumbers[p], e);
+            }
+        }
+        conn.commit();
+    }
+
+    /**
+     * Look up the bills in the batch that are not in the unpaid index with one query,
+     * so rows for settled bills can be told apart from rows for unknown bill numbers
+     */
+    private Map<String, String> classifyMisses(Connection conn) throws SQLException {
+        int misses = 0;
+        for (int p = 0; p < pendingCount; p++) {
+            if (slots[p] == NO_SLOT) {
+                misses++;
+            }
+        }
+        Map<String, String> statuses = new HashMap<>();
+        if (misses == 0) {
+            return statuses;
+        }
+
+        String[] numbers = new String[misses];
+        for (int p = 0, m = 0; p < pendingCount; p++) {
+            if (slots[p] == NO_SLOT) {
+                numbers[m++] = billNumbers[p];
+            }
+        }
+        String query = "SELECT bill_number, payment_status FROM bills WHERE bill_number = ANY(?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setArray(1, conn.createArrayOf("varchar", numbers));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    statuses.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+        return statuses;
+    }
+
+    private void writeRow(BufferedWriter out, long lineNo, String billNumber, long amount, Timestamp paymentDate,
+                          String reference, RowStatus status, String detail, PaymentIngestReport report)
+            throws IOException {
+        out.write(Long.toString(lineNo));
+        out.write(',');
+        out.write(csv(billNumber));
+        out.write(',');
+        out.write(amount < 0 ? "" : Money.toPlainString(amount));
+        out.write(',');
+        out.write(paymentDate == null ? "" : paymentDate.toLocalDateTime().toLocalDate().toString());
+        out.write(',');
+        out.write(csv(reference));
+        out.write(',');
+        out.write(status.name());
+        out.write(',');
+        out.write(csv(detail));
+        out.newLine();
+        report.record(status, amount);
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Record the field boundaries of a CSV line; returns the number of fields found
+     */
+    private int splitCsv(byte[] buf, int from, int to) {
+        Arrays.fill(fieldStarts, from);
+        Arrays.fill(fieldEnds, from);
+        int field = 0;
+        fieldStarts[0] = from;
+        for (int i = from; i < to && field < fieldStarts.length; i++) {
+            if (buf[i] == ',') {
+                fieldEnds[field++] = i;
+                if (field < fieldStarts.length) {
+                    fieldStarts[field] = i + 1;
+                }
+            }
+        }
+        if (field < fieldStarts.length) {
+            fieldEnds[field++] = to;
+        }
+        return field;
+    }
+
+    private void setField(int field, int from, int length, int start, int end) {
+        fieldStarts[field] = from + Math.min(start, length);
+        fieldEnds[field] = from + Math.min(end, length);
+    }
+
+    /**
+     * Trimmed, unquoted field text, or null if the field is empty
+     */
+    private static String text(byte[] buf, int from, int to) {
+        while (from < to && (buf[from] == ' ' || buf[from] == '"')) {
+            from++;
+        }
+        while (to > from && (buf[to - 1] == ' ' || buf[to - 1] == '"')) {
+            to--;
+        }
+        return from == to ? null : new String(buf, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse an amount straight from the buffer into cents, or -1 if it is malformed.
+     * Amounts without a decimal point are whole Maloti, or cents when amountInCents is set.
+     */
+    static long parseAmount(byte[] buf, int from, int to, boolean amountInCents) {
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = from; i < to; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                if (decimals >= 2 || digits >= 15) {
+                    return -1;
+                }
+                value = value * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b != ' ' && b != '"') {
+                return -1;
+            }
+        }
+        if (digits == 0) {
+            return -1;
+        }
+        if (decimals < 0) {
+            return amountInCents ? value : value * Money.SCALE;
+        }
+        return decimals == 2 ? value : decimals == 1 ? value * 10 : value * Money.SCALE;
+    }
+
+    /**
+     * Parse YYYY-MM-DD or YYYYMMDD (anything after the date is ignored).
+     * An empty field means the payment is dated now; returns null if malformed.
+     */
+    static Timestamp parseDate(byte[] buf, int from, int to) {
+        while (from < to && (buf[from] == ' ' || buf[from] == '"')) {
+            from++;
+        }
+        if (from == to) {
+            return Timestamp.valueOf(LocalDateTime.now());
+        }
+        int[] parts = new int[3];
+        int part = 0;
+        int digits = 0;
+        for (int i = from; i < to && part < 3; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                parts[part] = parts[part] * 10 + (b - '0');
+                digits++;
+                // Compact YYYYMMDD: split on digit count
+                if ((part == 0 && digits == 4) || (part > 0 && digits == 2)) {
+                    part++;
+                    digits = 0;
+                    if (i + 1 < to && buf[i + 1] == '-') {
+                        i++;
+                    }
+                }
+            } else {
+                break;
+            }
+        }
+        if (part < 3) {
+            return null;
+        }
+        try {
+            return Timestamp.valueOf(LocalDate.of(parts[0], parts[1], parts[2]).atStartOfDay());
+        } catch (java.time.DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean isBlank(byte[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] != ' ' && buf[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean asciiEqualsIgnoreCase(byte[] buf, int from, int to, String expected) {
+        String value = text(buf, from, to);
+        return value != null && value.equalsIgnoreCase(expected);
+    }
+
+    /**
+     * bill_number index over the unpaid bills, loaded once per file
+     */
+    private static final class BillIndex {
+        private final StringIntMap slotByNumber;
+        private int[] billIds;
+        private long[] amountCents;
+        private boolean[] settled;
+        private int size;
+
+        private BillIndex(int expected) {
+            slotByNumber = new StringIntMap(expected, NO_SLOT);
+            billIds = new int[Math.max(expected, 16)];
+            amountCents = new long[billIds.length];
+        }
+
+        static BillIndex load(Connection conn) throws SQLException {
+            int expected = 0;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM bills WHERE payment_status IN ('UNPAID', 'OVERDUE')")) {
+                if (rs.next()) {
+                    expected = rs.getInt(1);
+                }
+            }
+
+            BillIndex index = new BillIndex(expected);
+            String query = "SELECT id, bill_number, " + Money.sqlCents("bill_amount") +
+                          " FROM bills WHERE payment_status IN ('UNPAID', 'OVERDUE')";
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    index.add(rs.getString(2), rs.getInt(1), rs.getLong(3));
+                }
+            }
+            index.settled = new boolean[index.size];
+            logger.info("Indexed {} unpaid bills for payment matching", index.size);
+            return index;
+        }
+
+        private void add(String billNumber, int billId, long amount) {
+            if (size == billIds.length) {
+                billIds = Arrays.copyOf(billIds, size * 2);
+                amountCents = Arrays.copyOf(amountCents, size * 2);
+            }
+            billIds[size] = billId;
+            amountCents[size] = amount;
+            slotByNumber.put(billNumber, size++);
+        }
+
+        int slotOf(String billNumber) {
+            return slotByNumber.get(billNumber);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.AccrualReport;
+import lecbilling.mokopanemakhetha.model.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Nightly late-payment accrual over overdue bills.
+ * Overdue bills are split into id ranges; each range is accrued on its own virtual thread
+ * with two set-based INSERT ... SELECT statements (a one-off penalty and the interest for
+ * the accrual date) committed together. Unique keys on bill_adjustments make every insert
+ * ON CONFLICT DO NOTHING, so an interrupted run is resumed by simply running the same
+ * accrual date again.
+ *
+ * A bill is accrued on a date if it was past due and not yet paid on that date, judged from
+ * due_date and payment_date rather than the current status, so a date gives the same result
+ * whenever it is run. Charges are computed from bill_amount only; earlier penalties and
+ * interest do not compound. Each day's interest is the rounded interest for all days overdue
+ * so far less that for the day before, so the daily rows add up to the exact total.
+ */
+public class PenaltyAccrualEngine {
+    private static final Logger logger = LoggerFactory.getLogger(PenaltyAccrualEngine.class);
+
+    // 5% of the bill, once
+    private static final int DEFAULT_PENALTY_BPS = 500;
+    // About 2% of the bill per 30 days, accrued daily
+    private static final int DEFAULT_DAILY_INTEREST_PPM = 667;
+    private static final int DEFAULT_DB_CONCURRENCY = 4;
+    private static final int CHUNK_ID_SPAN = 20_000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 500;
+
+    // Bills past due and still unpaid at the end of the accrual date a.day
+    private static final String OVERDUE_ON_DAY =
+            "FROM (SELECT CAST(? AS DATE) AS day) a, bills b " +
+            "WHERE b.due_date < a.day AND (b.payment_status <> 'PAID' OR b.payment_date >= a.day + 1)";
+
+    private static final String OVERDUE_IN_RANGE = OVERDUE_ON_DAY + " AND b.id >= ? AND b.id < ?";
+
+    private static final String COUNT_OVERDUE = "SELECT COUNT(*) " + OVERDUE_IN_RANGE;
+
+    private static final String INSERT_PENALTIES =
+            "WITH ins AS (" +
+            "INSERT INTO bill_adjustments (bill_id, adjustment_type, accrual_date, amount) " +
+            "SELECT b.id, 'PENALTY', a.day, ROUND(b.bill_amount * ? / 10000, 2) " + OVERDUE_IN_RANGE +
+            " ON CONFLICT (bill_id) WHERE adjustment_type = 'PENALTY' DO NOTHING RETURNING amount) " +
+            "SELECT COUNT(*), " + Money.sqlCents("COALESCE(SUM(amount), 0)") + " FROM ins";
+
+    private static final String INSERT_INTEREST =
+            "WITH ins AS (" +
+            "INSERT INTO bill_adjustments (bill_id, adjustment_type, accrual_date, amount) " +
+            "SELECT b.id, 'INTEREST', a.day, " +
+            "ROUND(b.bill_amount * ? * (a.day - b.due_date) / 1000000, 2) - " +
+            "ROUND(b.bill_amount * ? * (a.day - b.due_date - 1) / 1000000, 2) " + OVERDUE_IN_RANGE +
+            " ON CONFLICT ON CONSTRAINT uq_bill_adjustments_date DO NOTHING RETURNING amount) " +
+            "SELECT COUNT(*), " + Money.sqlCents("COALESCE(SUM(amount), 0)") + " FROM ins";
+
+    private final int penaltyBps;
+    private final int dailyInterestPpm;
+    private final Semaphore dbPermits;
+
+    public PenaltyAccrualEngine() {
+        this(DEFAULT_PENALTY_BPS, DEFAULT_DAILY_INTEREST_PPM, DEFAULT_DB_CONCURRENCY);
+    }
+
+    /**
+     * @param penaltyBps       one-off penalty in basis points of the bill amount
+     * @param dailyInterestPpm daily interest in millionths of the bill amount
+     * @param dbConcurrency    number of chunks writing at once
+     */
+    public PenaltyAccrualEngine(int penaltyBps, int dailyInterestPpm, int dbConcurrency) {
+        if (penaltyBps < 0 || dailyInterestPpm < 0 || dbConcurrency < 1) {
+            throw new IllegalArgumentException("Rates must not be negative and DB concurrency must be positive");
+        }
+        this.penaltyBps = penaltyBps;
+        this.dailyInterestPpm = dailyInterestPpm;
+        this.dbPermits = new Semaphore(dbConcurrency);
+    }
+
+    /**
+     * Accrue every day from one date to another inclusive, e.g. to catch up after missed nights
+     */
+    public List<AccrualReport> runThrough(LocalDate from, LocalDate to) {
+        List<AccrualReport> reports = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            reports.add(run(date));
+        }
+        return reports;
+    }
+
+    /**
+     * Accrue penalties and interest for one date and wait for all chunks to finish
+     */
+    public AccrualReport run(LocalDate accrualDate) {
+        int[] range = overdueIdRange(accrualDate);
+        if (range == null) {
+            AccrualReport report = new AccrualReport(accrualDate, 0);
+            report.finish();
+            return report;
+        }
+
+        int chunks = (int) (((long) range[1] - range[0]) / CHUNK_ID_SPAN + 1);
+        logger.info("Starting accrual for {} over bill ids {}-{} in {} chunks", accrualDate, range[0], range[1], chunks);
+        AccrualReport report = new AccrualReport(accrualDate, chunks);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long from = range[0]; from <= range[1]; from += CHUNK_ID_SPAN) {
+                final int fromId = (int) from;
+                final int toId = (int) Math.min(from + CHUNK_ID_SPAN, (long) range[1] + 1);
+                executor.submit(() -> runChunk(accrualDate, fromId, toId, report));
+            }
+        }
+
+        report.finish();
+        logger.info("Accrual for {} finished: {}", accrualDate, report);
+        return report;
+    }
+
+    /**
+     * Lowest and highest id of the bills overdue on the accrual date, or null if none are
+     */
+    private int[] overdueIdRange(LocalDate accrualDate) {
+        String query = "SELECT MIN(b.id), MAX(b.id) " + OVERDUE_ON_DAY;
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setObject(1, accrualDate);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getObject(1) != null) {
+                    return new int[]{rs.getInt(1), rs.getInt(2)};
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error finding overdue bills for accrual on {}", accrualDate, e);
+        }
+        return null;
+    }
+
+    private void runChunk(LocalDate accrualDate, int fromId, int toId, AccrualReport report) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                accrueChunk(accrualDate, fromId, toId, report);
+                return;
+            } catch (SQLException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    logger.error("Accrual chunk {}-{} failed after {} attempts", fromId, toId, attempt, e);
+                    break;
+                }
+                logger.warn("Accrual chunk {}-{} failed on attempt {}, retrying: {}",
+                        fromId, toId, attempt, e.getMessage());
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        report.chunkFailed();
+    }
+
+    /**
+     * Write the penalty and interest rows for one id range in a single transaction
+     */
+    private void accrueChunk(LocalDate accrualDate, int fromId, int toId, AccrualReport report)
+            throws SQLException, InterruptedException {
+        dbPermits.acquire();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                long scanned = queryPair(conn, COUNT_OVERDUE, accrualDate, fromId, toId)[0];
+                long[] penalties = queryPair(conn, INSERT_PENALTIES, penaltyBps, accrualDate, fromId, toId);
+                long[] interest = queryPair(conn, INSERT_INTEREST, dailyInterestPpm, dailyInterestPpm,
+                        accrualDate, fromId, toId);
+                conn.commit();
+                report.chunkCompleted(scanned, penalties[0], penalties[1], interest[0], interest[1]);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            dbPermits.release();
+        }
+    }
+
+    /**
+     * Run one of the chunk statements with its parameters in order
+     */
+    private long[] queryPair(Connection conn, String sql, Object... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return new long[]{rs.getLong(1), rs.getMetaData().getColumnCount() > 1 ? rs.getLong(2) : 0};
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package lecbilling.mokopanemakhetha.service;
 
 import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.Money;
 import lecbilling.mokopanemakhetha.model.ReportData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,17 +43,21 @@ public class ReportService {
             // Total bills
             stats.put("totalBills", getTotalBillsCount(conn));
             
-            // Unpaid bills
-            stats.put("unpaidBills", getUnpaidBillsCount(conn));
+            // Unpaid bills and outstanding amount, from the running totals
+            long[] unpaid = BillTotalsService.getInstance().readTotals(conn);
+            stats.put("unpaidBills", (int) unpaid[0]);
+
+            // Overdue bills, an indexed status lookup kept current by the overdue sweep
+            stats.put("overdueBills", getOverdueBillsCount(conn));
             
             // Total revenue
-            stats.put("totalRevenue", getTotalRevenue(conn));
+            stats.put("totalRevenue", Money.toAmount(getTotalRevenue(conn)));
             
             // Outstanding amount
-            stats.put("outstandingAmount", getOutstandingAmount(conn));
+            stats.put("outstandingAmount", Money.toAmount(unpaid[1]));
             
             // This month's revenue
-            stats.put("monthlyRevenue", getMonthlyRevenue(conn));
+            stats.put("monthlyRevenue", Money.toAmount(getMonthlyRevenue(conn)));
             
             logger.info("Dashboard statistics retrieved successfully");
         } catch (SQLException e) {
@@ -70,7 +75,7 @@ public class ReportService {
         List<ReportData> data = new ArrayList<>();
         
         String query = "SELECT TO_CHAR(billing_period_start, 'YYYY-MM') as month, " +
-                      "SUM(bill_amount) as revenue, " +
+                      Money.sqlCents("SUM(bill_amount)") + " as revenue_cents, " +
                       "SUM(electricity_usage) as usage, " +
                       "COUNT(*) as bill_count " +
                       "FROM bills " +
@@ -85,7 +90,7 @@ public class ReportService {
             while (rs.next()) {
                 ReportData report = new ReportData();
                 report.setLabel(rs.getString("month"));
-                report.setValue(rs.getDouble("revenue"));
+                report.setValue(Money.toAmount(rs.getLong("revenue_cents")));
                 report.setCount(rs.getInt("bill_count"));
                 data.add(report);
             }
@@ -131,7 +136,7 @@ public class ReportService {
         List<Map<String, Object>> customers = new ArrayList<>();
         
         String query = "SELECT c.customer_id, c.name, SUM(b.electricity_usage) as total_usage, " +
-                      "SUM(b.bill_amount) as total_billed " +
+                      Money.sqlCents("SUM(b.bill_amount)") + " as total_billed_cents " +
                       "FROM customers c " +
                       "JOIN bills b ON c.id = b.customer_id " +
                       "WHERE c.is_active = TRUE " +
@@ -150,7 +155,7 @@ public class ReportService {
                     customer.put("customerId", rs.getString("customer_id"));
                     customer.put("name", rs.getString("name"));
                     customer.put("totalUsage", rs.getDouble("total_usage"));
-                    customer.put("totalBilled", rs.getDouble("total_billed"));
+                    customer.put("totalBilled", Money.toAmount(rs.getLong("total_billed_cents")));
                     customers.add(customer);
                 }
             }
@@ -180,36 +185,29 @@ public class ReportService {
         }
     }
 
-    private int getUnpaidBillsCount(Connection conn) throws SQLException {
-        String query = "SELECT COUNT(*) FROM bills WHERE payment_status = 'UNPAID'";
+    private int getOverdueBillsCount(Connection conn) throws SQLException {
+        String query = "SELECT COUNT(*) FROM bills WHERE payment_status = 'OVERDUE'";
         try (Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
             return rs.next() ? rs.getInt(1) : 0;
         }
     }
 
-    private double getTotalRevenue(Connection conn) throws SQLException {
-        String query = "SELECT COALESCE(SUM(bill_amount), 0) FROM bills WHERE payment_status = 'PAID'";
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            return rs.next() ? rs.getDouble(1) : 0.0;
-        }
-    }
-
-    private double getOutstandingAmount(Connection conn) throws SQLException {
-        String query = "SELECT COALESCE(SUM(bill_amount), 0) FROM bills WHERE payment_status = 'UNPAID'";
+    private long getTotalRevenue(Connection conn) throws SQLException {
+        String query = "SELECT " + Money.sqlCents("COALESCE(SUM(bill_amount), 0)") +
+                      " FROM bills WHERE payment_status = 'PAID'";
         try (Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
-            return rs.next() ? rs.getDouble(1) : 0.0;
+            return rs.next() ? rs.getLong(1) : 0;
         }
     }
 
-    private double getMonthlyRevenue(Connection conn) throws SQLException {
-        String query = "SELECT COALESCE(SUM(bill_amount), 0) FROM bills " +
+    private long getMonthlyRevenue(Connection conn) throws SQLException {
+        String query = "SELECT " + Money.sqlCents("COALESCE(SUM(bill_amount), 0)") + " FROM bills " +
                       "WHERE billing_period_start >= DATE_TRUNC('month', CURRENT_DATE)";
         try (Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(query)) {
-            return rs.next() ? rs.getDouble(1) : 0.0;
+            return rs.next() ? rs.getLong(1) : 0;
         }
     }
 }
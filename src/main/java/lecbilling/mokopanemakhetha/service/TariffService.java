@@ -0,0 +1,194 @@
+package lecbilling.mokopanemakhetha.service;
+
+import lecbilling.mokopanemakhetha.config.DatabaseConfig;
+import lecbilling.mokopanemakhetha.model.TariffSchedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service for loading versioned tariff schedules from the database.
+ * Schedules are compiled once into immutable TariffSchedule objects and published as a
+ * single snapshot; a background check reloads them when new versions are added.
+ */
+public class TariffService {
+    private static final Logger logger = LoggerFactory.getLogger(TariffService.class);
+    private static TariffService instance;
+
+    private static final long RELOAD_CHECK_MINUTES = 5;
+
+    private final TariffSchedule fallback = TariffSchedule.defaultSchedule();
+
+    // Schedules per customer class, sorted by effective date then version
+    private volatile Map<String, TariffSchedule[]> schedules = Collections.emptyMap();
+    private volatile String loadedSignature = "";
+    private ScheduledExecutorService reloadExecutor;
+
+    private TariffService() {
+    }
+
+    public static synchronized TariffService getInstance() {
+        if (instance == null) {
+            instance = new TariffService();
+            instance.reload();
+            instance.startReloadCheck();
+        }
+        return instance;
+    }
+
+    /**
+     * Get the schedule in force for a customer class on a date. A class with no schedule in
+     * force yet is billed on the residential schedule; the built-in default is only used
+     * when the database has no residential schedule in force either.
+     */
+    public TariffSchedule getSchedule(String customerClass, LocalDate date) {
+        TariffSchedule schedule = inForce(schedules.get(customerClass), date);
+        if (schedule == null && !TariffSchedule.DEFAULT_CUSTOMER_CLASS.equals(customerClass)) {
+            schedule = inForce(schedules.get(TariffSchedule.DEFAULT_CUSTOMER_CLASS), date);
+        }
+        return schedule != null ? schedule : fallback;
+    }
+
+    private static TariffSchedule inForce(TariffSchedule[] candidates, LocalDate date) {
+        if (candidates != null) {
+            for (int i = candidates.length - 1; i >= 0; i--) {
+                if (!candidates[i].getEffectiveFrom().isAfter(date)) {
+                    return candidates[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the residential schedule in force today
+     */
+    public TariffSchedule getCurrentSchedule() {
+        return getSchedule(TariffSchedule.DEFAULT_CUSTOMER_CLASS, LocalDate.now());
+    }
+
+    /**
+     * Load all tariff schedules from the database and publish them atomically.
+     * The previous snapshot stays in use if loading fails.
+     */
+    public synchronized boolean reload() {
+        String query = "SELECT s.id, s.name, s.customer_class, s.version, s.effective_from, " +
+                      "CAST(t.lower_bound_kwh * 100 AS BIGINT) AS lower_bound_centi_kwh, " +
+                      "CAST(t.rate * 10000 AS BIGINT) AS rate_units " +
+                      "FROM tariff_schedules s JOIN tariff_tiers t ON t.schedule_id = s.id " +
+                      "ORDER BY s.customer_class, s.effective_from, s.version, t.tier_number";
+
+        Map<String, List<TariffSchedule>> loaded = new HashMap<>();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            String signature = readSignature(conn);
+
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(query)) {
+
+                int currentId = -1;
+                String name = null, customerClass = null;
+                int version = 0;
+                LocalDate effectiveFrom = null;
+                List<long[]> tiers = new ArrayList<>();
+
+                while (rs.next()) {
+                    int id = rs.getInt("id");
+                    if (id != currentId && currentId != -1) {
+                        addSchedule(loaded, currentId, name, customerClass, version, effectiveFrom, tiers);
+                        tiers.clear();
+                    }
+                    currentId = id;
+                    name = rs.getString("name");
+                    customerClass = rs.getString("customer_class");
+                    version = rs.getInt("version");
+                    effectiveFrom = rs.getDate("effective_from").toLocalDate();
+                    tiers.add(new long[]{rs.getLong("lower_bound_centi_kwh"), rs.getLong("rate_units")});
+                }
+                if (currentId != -1) {
+                    addSchedule(loaded, currentId, name, customerClass, version, effectiveFrom, tiers);
+                }
+            }
+
+            Map<String, TariffSchedule[]> snapshot = new HashMap<>();
+            loaded.forEach((cls, list) -> snapshot.put(cls, list.toArray(new TariffSchedule[0])));
+            schedules = Collections.unmodifiableMap(snapshot);
+            loadedSignature = signature;
+            logger.info("Loaded tariff schedules for {} customer classes", snapshot.size());
+            return true;
+        } catch (SQLException | IllegalArgumentException e) {
+            logger.error("Error loading tariff schedules, keeping current tariffs", e);
+        }
+        return false;
+    }
+
+    private void addSchedule(Map<String, List<TariffSchedule>> loaded, int id, String name, String customerClass,
+                             int version, LocalDate effectiveFrom, List<long[]> tiers) {
+        long[] bounds = new long[tiers.size()];
+        long[] rates = new long[tiers.size()];
+        for (int i = 0; i < tiers.size(); i++) {
+            bounds[i] = tiers.get(i)[0];
+            rates[i] = tiers.get(i)[1];
+        }
+        loaded.computeIfAbsent(customerClass, k -> new ArrayList<>())
+              .add(new TariffSchedule(id, name, customerClass, version, effectiveFrom, bounds, rates));
+    }
+
+    /**
+     * Cheap fingerprint of the tariff tables used to detect new versions.
+     * Tiers carry no timestamp, so their contents are hashed; the table holds a few rows
+     * per schedule.
+     */
+    private String readSignature(Connection conn) throws SQLException {
+        String query = "SELECT COUNT(*), COALESCE(MAX(id), 0), COALESCE(MAX(created_at), 'epoch'), " +
+                      "(SELECT md5(COALESCE(string_agg(schedule_id || ':' || tier_number || ':' || " +
+                      "lower_bound_kwh || ':' || rate, ',' ORDER BY schedule_id, tier_number), '')) " +
+                      "FROM tariff_tiers) " +
+                      "FROM tariff_schedules";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getTimestamp(3) + ":" + rs.getString(4);
+        }
+    }
+
+    /**
+     * Reload the schedules if the tariff tables changed since the last load
+     */
+    public void reloadIfChanged() {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            if (!readSignature(conn).equals(loadedSignature)) {
+                logger.info("New tariff version detected, reloading");
+                reload();
+            }
+        } catch (SQLException e) {
+            logger.warn("Error checking for tariff changes: {}", e.getMessage());
+        }
+    }
+
+    private void startReloadCheck() {
+        reloadExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tariff-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloadExecutor.scheduleWithFixedDelay(this::reloadIfChanged,
+                RELOAD_CHECK_MINUTES, RELOAD_CHECK_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Get pricing rates information for a schedule
+     */
+    public String getPricingInfo(TariffSchedule schedule) {
+        StringBuilder sb = new StringBuilder("Tiered Pricing Rates:");
+        for (int i = 0; i < schedule.getTierCount(); i++) {
+            sb.append(String.format("\nTier %d (%s): M%.2f per kWh", i + 1, schedule.getTierLabel(i), schedule.getRate(i)));
+        }
+        return sb.toString();
+    }
+}
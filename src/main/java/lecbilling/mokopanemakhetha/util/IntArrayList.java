@@ -0,0 +1,63 @@
+package lecbilling.mokopanemakhetha.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, for id lists that would otherwise be boxed.
+ * Not thread-safe.
+ */
+public final class IntArrayList {
+    private int[] values;
+    private int size;
+
+    public IntArrayList() {
+        this(16);
+    }
+
+    public IntArrayList(int initialCapacity) {
+        values = new int[Math.max(initialCapacity, 4)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove and return the last value
+     */
+    public int removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("List is empty");
+        }
+        return values[--size];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copy of the values in [from, to)
+     */
+    public int[] toArray(int from, int to) {
+        return Arrays.copyOfRange(values, from, to);
+    }
+}
@@ -0,0 +1,367 @@
+package lecbilling.mokopanemakhetha.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from meter number to an internal customer id and that
+ * meter's last billed reading and period, stored off-heap in fixed-size slots of a
+ * direct (or mapped) ByteBuffer. Linear probing with backward-shift deletion, as in
+ * StringIntMap, so the slot array is self-contained and can be copied to a file as is.
+ *
+ * Meter numbers are stored inline, so keys are limited to MAX_KEY_LENGTH Latin-1
+ * characters; put() refuses anything else. A small on-heap index from customer id to
+ * slot lets bill writers, who only know the customer, update the row. Not thread-safe;
+ * callers synchronize.
+ */
+public final class MeterTable {
+    public static final int NOT_FOUND = -1;
+
+    // Period day value of a meter that has never been billed
+    public static final int NO_PERIOD = Integer.MIN_VALUE;
+
+    public static final int MAX_KEY_LENGTH = 50;
+
+    // Slot layout: hash (0 = empty), customer id, last reading in centi-kWh,
+    // period start and end as epoch days, key length and the key's Latin-1 bytes
+    public static final int SLOT_BYTES = 80;
+    private static final int HASH = 0;
+    private static final int CUSTOMER_ID = 4;
+    private static final int LAST_READING = 8;
+    private static final int PERIOD_START = 16;
+    private static final int PERIOD_END = 20;
+    private static final int KEY_LENGTH = 24;
+    private static final int KEY = 25;
+
+    private static final float MAX_LOAD = 0.7f;
+
+    // A direct buffer holds at most Integer.MAX_VALUE bytes
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int mask;
+    private int size;
+    private int[] slotByCustomer = new int[1024];
+
+    public MeterTable(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+        Arrays.fill(slotByCustomer, NOT_FOUND);
+    }
+
+    private MeterTable(ByteBuffer slots, int capacity) {
+        this.slots = slots;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        Arrays.fill(slotByCustomer, NOT_FOUND);
+        for (int slot = 0; slot < capacity; slot++) {
+            if (hashAt(slot) != 0) {
+                size++;
+                index(customerIdAt(slot), slot);
+            }
+        }
+    }
+
+    /**
+     * Use slots previously written out with writeTo(), e.g. read back from a snapshot file.
+     * The buffer must be writable and is used in place.
+     */
+    public static MeterTable wrap(ByteBuffer slots, int capacity) {
+        if (Integer.bitCount(capacity) != 1 || slots.capacity() < (long) capacity * SLOT_BYTES) {
+            throw new IllegalArgumentException("Slot buffer does not hold " + capacity + " slots");
+        }
+        return new MeterTable(slots, capacity);
+    }
+
+    private void allocate(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Meter table cannot grow beyond " + MAX_CAPACITY + " slots");
+        }
+        this.slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 8) / MAX_LOAD);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    /**
+     * Whether a meter number fits inline in a slot
+     */
+    public static boolean isStorable(String meterNumber) {
+        if (meterNumber == null || meterNumber.length() > MAX_KEY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < meterNumber.length(); i++) {
+            if (meterNumber.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h == 0 ? 1 : h;
+    }
+
+    private int hashAt(int slot) {
+        return slots.getInt(slot * SLOT_BYTES + HASH);
+    }
+
+    private boolean keyEquals(int slot, String key) {
+        int base = slot * SLOT_BYTES;
+        int length = slots.get(base + KEY_LENGTH);
+        if (length != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((slots.get(base + KEY + i) & 0xFF) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Slot of a meter number, or NOT_FOUND
+     */
+    public int find(String meterNumber) {
+        if (!isStorable(meterNumber)) {
+            return NOT_FOUND;
+        }
+        int h = hash(meterNumber);
+        int slot = h & mask;
+        int stored;
+        while ((stored = hashAt(slot)) != 0) {
+            if (stored == h && keyEquals(slot, meterNumber)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Slot of a customer's meter, or NOT_FOUND
+     */
+    public int findByCustomer(int customerId) {
+        return customerId >= 0 && customerId < slotByCustomer.length ? slotByCustomer[customerId] : NOT_FOUND;
+    }
+
+    /**
+     * Map a meter number to a customer and return its slot. The last reading belongs to
+     * the meter: a meter taken over by another customer keeps it, and a customer moving
+     * to a meter new to the table starts from zero. The billed period belongs to the
+     * customer and moves with it, so a period is never billed twice across a meter change.
+     * Returns NOT_FOUND if the meter number cannot be stored.
+     */
+    public int put(String meterNumber, int customerId) {
+        if (!isStorable(meterNumber) || customerId < 0) {
+            return NOT_FOUND;
+        }
+        int slot = find(meterNumber);
+        if (slot != NOT_FOUND && customerIdAt(slot) == customerId) {
+            return slot;
+        }
+
+        int periodStart = NO_PERIOD;
+        int periodEnd = NO_PERIOD;
+        int oldSlot = findByCustomer(customerId);
+        if (oldSlot != NOT_FOUND) {
+            periodStart = periodStartAt(oldSlot);
+            periodEnd = periodEndAt(oldSlot);
+            removeSlot(oldSlot);
+        }
+
+        if (slot != NOT_FOUND) {
+            // Removing the old slot may have shifted this one back
+            slot = find(meterNumber);
+            unindex(customerIdAt(slot), slot);
+            slots.putInt(slot * SLOT_BYTES + CUSTOMER_ID, customerId);
+            index(customerId, slot);
+            setReading(slot, lastReadingAt(slot), periodStart, periodEnd);
+            return slot;
+        }
+
+        if (size + 1 > capacity * MAX_LOAD) {
+            rehash(capacity * 2);
+        }
+        slot = insert(hash(meterNumber), meterNumber, customerId);
+        setReading(slot, 0, periodStart, periodEnd);
+        size++;
+        return slot;
+    }
+
+    private int insert(int h, String meterNumber, int customerId) {
+        int slot = h & mask;
+        while (hashAt(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        int base = slot * SLOT_BYTES;
+        slots.putInt(base + HASH, h);
+        slots.putInt(base + CUSTOMER_ID, customerId);
+        slots.put(base + KEY_LENGTH, (byte) meterNumber.length());
+        for (int i = 0; i < meterNumber.length(); i++) {
+            slots.put(base + KEY + i, (byte) meterNumber.charAt(i));
+        }
+        index(customerId, slot);
+        return slot;
+    }
+
+    /**
+     * Record a billed reading, keeping the latest period if bills arrive out of order.
+     * Returns false if the bill is not for a later period than the one already held, so a
+     * bill seen twice cannot bring back the reading of a meter the customer has left.
+     */
+    public boolean advanceReading(int slot, long readingCentiKwh, int periodStartDay, int periodEndDay) {
+        if (periodEndDay <= periodEndAt(slot)) {
+            return false;
+        }
+        setReading(slot, readingCentiKwh, periodStartDay, periodEndDay);
+        return true;
+    }
+
+    public void setReading(int slot, long readingCentiKwh, int periodStartDay, int periodEndDay) {
+        int base = slot * SLOT_BYTES;
+        slots.putLong(base + LAST_READING, readingCentiKwh);
+        slots.putInt(base + PERIOD_START, periodStartDay);
+        slots.putInt(base + PERIOD_END, periodEndDay);
+    }
+
+    /**
+     * Drop a customer's meter; returns false if the customer had none
+     */
+    public boolean removeCustomer(int customerId) {
+        int slot = findByCustomer(customerId);
+        if (slot == NOT_FOUND) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    private void removeSlot(int slot) {
+        unindex(customerIdAt(slot), slot);
+        size--;
+
+        // Backward-shift deletion: pull later entries of the probe run into the gap
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        int h;
+        while ((h = hashAt(next)) != 0) {
+            int home = h & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                slots.put(gap * SLOT_BYTES, slots, next * SLOT_BYTES, SLOT_BYTES);
+                index(customerIdAt(gap), gap);
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots.putInt(gap * SLOT_BYTES + HASH, 0);
+    }
+
+    private void rehash(int newCapacity) {
+        ByteBuffer old = slots;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int h = old.getInt(slot * SLOT_BYTES + HASH);
+            if (h == 0) {
+                continue;
+            }
+            int target = h & mask;
+            while (hashAt(target) != 0) {
+                target = (target + 1) & mask;
+            }
+            slots.put(target * SLOT_BYTES, old, slot * SLOT_BYTES, SLOT_BYTES);
+            index(old.getInt(slot * SLOT_BYTES + CUSTOMER_ID), target);
+        }
+    }
+
+    private void index(int customerId, int slot) {
+        if (customerId >= slotByCustomer.length) {
+            int oldLength = slotByCustomer.length;
+            slotByCustomer = Arrays.copyOf(slotByCustomer, Math.max(customerId + 1, oldLength * 2));
+            Arrays.fill(slotByCustomer, oldLength, slotByCustomer.length, NOT_FOUND);
+        }
+        slotByCustomer[customerId] = slot;
+    }
+
+    private void unindex(int customerId, int slot) {
+        if (findByCustomer(customerId) == slot) {
+            slotByCustomer[customerId] = NOT_FOUND;
+        }
+    }
+
+    public int customerIdAt(int slot) {
+        return slots.getInt(slot * SLOT_BYTES + CUSTOMER_ID);
+    }
+
+    public long lastReadingAt(int slot) {
+        return slots.getLong(slot * SLOT_BYTES + LAST_READING);
+    }
+
+    public int periodStartAt(int slot) {
+        return slots.getInt(slot * SLOT_BYTES + PERIOD_START);
+    }
+
+    public int periodEndAt(int slot) {
+        return slots.getInt(slot * SLOT_BYTES + PERIOD_END);
+    }
+
+    public String meterNumberAt(int slot) {
+        int base = slot * SLOT_BYTES;
+        int length = slots.get(base + KEY_LENGTH);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (slots.get(base + KEY + i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Write the raw slots to a channel at its position, capacity() * SLOT_BYTES bytes
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer src = slots.duplicate().position(0).limit(capacity * SLOT_BYTES);
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+
+    public void clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            slots.putInt(slot * SLOT_BYTES + HASH, 0);
+        }
+        Arrays.fill(slotByCustomer, NOT_FOUND);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Off-heap bytes held by the slots
+     */
+    public long offHeapBytes() {
+        return (long) capacity * SLOT_BYTES;
+    }
+
+    /**
+     * On-heap bytes held by the customer index
+     */
+    public long heapBytes() {
+        return 16L + slotByCustomer.length * 4L;
+    }
+}
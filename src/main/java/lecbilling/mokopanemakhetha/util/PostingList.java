@@ -0,0 +1,111 @@
+package lecbilling.mokopanemakhetha.util;
+
+import java.util.Arrays;
+
+/**
+ * Append-only list of ascending non-negative ints stored as variable-length deltas.
+ * Dense id lists cost one or two bytes per entry instead of four. Not thread-safe.
+ */
+public final class PostingList {
+    private byte[] data;
+    private int length;
+    private int size;
+    private int last = -1;
+
+    public PostingList() {
+        data = new byte[8];
+    }
+
+    /**
+     * Append a value, which must be greater than every value already added
+     */
+    public void add(int value) {
+        if (value <= last) {
+            throw new IllegalArgumentException("Value " + value + " is not greater than " + last);
+        }
+        int delta = last < 0 ? value : value - last;
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+        }
+        while ((delta & ~0x7F) != 0) {
+            data[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+        last = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int last() {
+        return last;
+    }
+
+    /**
+     * Decode every value into a new array
+     */
+    public int[] toArray() {
+        int[] out = new int[size];
+        int pos = 0;
+        int value = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value = i == 0 ? delta : value + delta;
+            out[i] = value;
+        }
+        return out;
+    }
+
+    /**
+     * Keep only the values of sorted[0..count) that are also in this list, compacting
+     * them to the front of the array. Returns the number kept.
+     */
+    public int retainAll(int[] sorted, int count) {
+        int kept = 0;
+        int pos = 0;
+        int value = 0;
+        int decoded = 0;
+        for (int i = 0; i < count; i++) {
+            int wanted = sorted[i];
+            while (decoded < size && (decoded == 0 || value < wanted)) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value = decoded == 0 ? delta : value + delta;
+                decoded++;
+                if (value >= wanted) {
+                    break;
+                }
+            }
+            if (decoded == 0 || value < wanted) {
+                break;
+            }
+            if (value == wanted) {
+                sorted[kept++] = wanted;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Bytes held by the backing array
+     */
+    public long bytes() {
+        return data.length;
+    }
+}
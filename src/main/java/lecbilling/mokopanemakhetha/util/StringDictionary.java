@@ -0,0 +1,87 @@
+package lecbilling.mokopanemakhetha.util;
+
+import java.util.Arrays;
+
+/**
+ * Reference-counted dictionary that maps each distinct string to a small int code, so a
+ * column of repeated values stores one int per row and one String per distinct value.
+ * A code is recycled once no row uses it. Null is code 0. Not thread-safe.
+ */
+public final class StringDictionary {
+    public static final int NULL_CODE = 0;
+
+    private final StringIntMap codes;
+    private String[] values;
+    private int[] refCounts;
+    private int nextCode = 1;
+    private final IntArrayList freeCodes = new IntArrayList();
+
+    public StringDictionary(int expectedDistinct) {
+        codes = new StringIntMap(expectedDistinct, NULL_CODE);
+        values = new String[Math.max(expectedDistinct, 16)];
+        refCounts = new int[values.length];
+    }
+
+    /**
+     * Get the code for a value, adding it if new, and count one more use of it
+     */
+    public int acquire(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        int code = codes.get(value);
+        if (code == NULL_CODE) {
+            code = freeCodes.isEmpty() ? nextCode++ : popFreeCode();
+            if (code >= values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+                refCounts = Arrays.copyOf(refCounts, values.length);
+            }
+            values[code] = value;
+            codes.put(value, code);
+        }
+        refCounts[code]++;
+        return code;
+    }
+
+    /**
+     * Count one less use of a code, dropping the value when it is no longer used
+     */
+    public void release(int code) {
+        if (code == NULL_CODE) {
+            return;
+        }
+        if (--refCounts[code] == 0) {
+            codes.remove(values[code]);
+            values[code] = null;
+            freeCodes.add(code);
+        }
+    }
+
+    private int popFreeCode() {
+        return freeCodes.removeLast();
+    }
+
+    public String get(int code) {
+        return values[code];
+    }
+
+    /**
+     * Number of distinct values in use
+     */
+    public int size() {
+        return codes.size();
+    }
+
+    /**
+     * Approximate bytes held, including the distinct strings
+     */
+    public long estimateBytes() {
+        long bytes = codes.tableBytes() + 16L + values.length * 4L + 16L + refCounts.length * 4L;
+        for (int code = 1; code < nextCode; code++) {
+            if (values[code] != null) {
+                bytes += 40 + values[code].length();
+            }
+        }
+        return bytes;
+    }
+}
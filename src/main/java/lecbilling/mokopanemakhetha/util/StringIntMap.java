@@ -0,0 +1,160 @@
+package lecbilling.mokopanemakhetha.util;
+
+/**
+ * Open-addressing hash map from String keys to primitive int values.
+ * Uses linear probing with backward-shift deletion, so values are never boxed and
+ * removals leave no tombstones behind. Not thread-safe; callers synchronize.
+ */
+public final class StringIntMap {
+    private static final float MAX_LOAD = 0.7f;
+
+    private final int missingValue;
+    private String[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * @param expectedSize number of entries to size the table for
+     * @param missingValue value returned by get() for absent keys
+     */
+    public StringIntMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 8) / MAX_LOAD);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Get the value for a key, or the missing value if absent
+     */
+    public int get(String key) {
+        int i = hash(key) & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (k.equals(key)) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(String key) {
+        int i = hash(key) & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (k.equals(key)) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Associate a value with a key, replacing any previous value
+     */
+    public void put(String key, int value) {
+        int i = hash(key) & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (k.equals(key)) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * MAX_LOAD) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Remove a key; returns true if it was present
+     */
+    public boolean remove(String key) {
+        int i = hash(key) & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (k.equals(key)) {
+                shiftBack(i);
+                size--;
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Close the gap at a removed slot by moving later entries of the probe run back
+     */
+    private void shiftBack(int gap) {
+        int j = gap;
+        while (true) {
+            j = (j + 1) & mask;
+            String k = keys[j];
+            if (k == null) {
+                break;
+            }
+            int home = hash(k) & mask;
+            // Move the entry unless its home slot lies cyclically in (gap, j]
+            boolean stays = gap <= j ? (home > gap && home <= j) : (home > gap || home <= j);
+            if (!stays) {
+                keys[gap] = k;
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = null;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Approximate heap used by the table arrays, excluding the key strings themselves
+     */
+    public long tableBytes() {
+        return (long) keys.length * (4 + 4);
+    }
+}
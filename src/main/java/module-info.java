@@ -24,4 +24,5 @@ module lecbilling.mokopanemakhetha {
     exports lecbilling.mokopanemakhetha.config;
     exports lecbilling.mokopanemakhetha.service;
     exports lecbilling.mokopanemakhetha.model;
+    exports lecbilling.mokopanemakhetha.util;
 }
\ No newline at end of file
@@ -3,10 +3,14 @@
 -- =====================================================
 
 -- Drop existing tables if they exist
+DROP TABLE IF EXISTS bill_adjustments CASCADE;
+DROP TABLE IF EXISTS bill_totals CASCADE;
 DROP TABLE IF EXISTS bills CASCADE;
 DROP TABLE IF EXISTS customers CASCADE;
 DROP TABLE IF EXISTS users CASCADE;
 DROP TABLE IF EXISTS audit_log CASCADE;
+DROP TABLE IF EXISTS tariff_tiers CASCADE;
+DROP TABLE IF EXISTS tariff_schedules CASCADE;
 
 -- =====================================================
 -- Users Table
@@ -37,6 +41,7 @@ CREATE TABLE customers (
     name VARCHAR(100) NOT NULL,
     address VARCHAR(255) NOT NULL,
     meter_number VARCHAR(50) UNIQUE NOT NULL,
+    customer_class VARCHAR(20) NOT NULL DEFAULT 'RESIDENTIAL',
     phone_number VARCHAR(20),
     email VARCHAR(100),
     is_active BOOLEAN DEFAULT TRUE,
@@ -51,6 +56,22 @@ CREATE INDEX idx_customers_meter_number ON customers(meter_number);
 CREATE INDEX idx_customers_active ON customers(is_active);
 CREATE INDEX idx_customers_name ON customers(name);
 
+-- Delta reads of changed customers (CustomerCache, CustomerIdCache and MeterStateTable
+-- poll WHERE updated_at >= ?); not partial, since deactivations must be seen too
+CREATE INDEX idx_customers_updated_at ON customers(updated_at);
+
+-- Keyset pagination of active customers in each sortable order
+CREATE INDEX idx_customers_active_name_page ON customers(name, customer_id) WHERE is_active = TRUE;
+CREATE INDEX idx_customers_active_address_page ON customers(address, customer_id) WHERE is_active = TRUE;
+CREATE INDEX idx_customers_active_meter_page ON customers(meter_number, customer_id) WHERE is_active = TRUE;
+
+-- Trigram indexes for the paged customer filter (LOWER(column) LIKE '%term%')
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX idx_customers_active_name_trgm ON customers USING gin (LOWER(name) gin_trgm_ops) WHERE is_active = TRUE;
+CREATE INDEX idx_customers_active_customer_id_trgm ON customers USING gin (LOWER(customer_id) gin_trgm_ops) WHERE is_active = TRUE;
+CREATE INDEX idx_customers_active_meter_trgm ON customers USING gin (LOWER(meter_number) gin_trgm_ops) WHERE is_active = TRUE;
+CREATE INDEX idx_customers_active_address_trgm ON customers USING gin (LOWER(address) gin_trgm_ops) WHERE is_active = TRUE;
+
 -- =====================================================
 -- Bills Table
 -- =====================================================
@@ -71,18 +92,81 @@ CREATE TABLE bills (
     rate_tier_3_amount DECIMAL(10, 2) DEFAULT 0.00,
     bill_amount DECIMAL(10, 2) NOT NULL,
     due_date DATE NOT NULL,
-    payment_status VARCHAR(20) DEFAULT 'UNPAID',
+    payment_status VARCHAR(20) DEFAULT 'UNPAID', -- UNPAID, OVERDUE (set by OverdueScheduler) or PAID
     payment_date TIMESTAMP,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    created_by INTEGER REFERENCES users(id)
+    created_by INTEGER REFERENCES users(id),
+    -- One bill per customer and period; bill inserts use ON CONFLICT on this key so
+    -- a retried insert can never bill a customer twice
+    CONSTRAINT uq_bills_customer_period UNIQUE (customer_id, billing_period_start, billing_period_end)
 );
 
+-- Bill numbers come from one sequence per year (bill_number_seq_YYYY), created on
+-- demand by BillNumberAllocator. Each nextval reserves a block of 50 numbers.
+
 -- Indexes for faster queries
-CREATE INDEX idx_bills_customer_id ON bills(customer_id);
+CREATE INDEX idx_bills_customer_period ON bills(customer_id, billing_period_start DESC, id DESC);
 CREATE INDEX idx_bills_bill_number ON bills(bill_number);
 CREATE INDEX idx_bills_payment_status ON bills(payment_status);
 CREATE INDEX idx_bills_billing_period ON bills(billing_period_start, billing_period_end);
 CREATE INDEX idx_bills_due_date ON bills(due_date);
+CREATE INDEX idx_bills_unpaid_due_date ON bills(due_date) WHERE payment_status = 'UNPAID';
+-- MeterStateTable catches up on new bills by created_at
+CREATE INDEX idx_bills_created_at ON bills(created_at);
+
+-- Running totals of unpaid (UNPAID or OVERDUE) bills, kept by the maintain_bill_totals
+-- triggers and spread over 16 slots. Each transaction adds its changes to a single slot
+-- (txid_current() % 16), so concurrent billing transactions never lock each other's slots.
+-- The dashboard sums the slots instead of scanning bills; BillTotalsService periodically
+-- reconciles them against bills and repairs any drift.
+CREATE TABLE bill_totals (
+    slot SMALLINT PRIMARY KEY,
+    unpaid_count BIGINT NOT NULL DEFAULT 0,
+    outstanding_amount DECIMAL(14, 2) NOT NULL DEFAULT 0.00
+);
+
+-- Late-payment charges written by the nightly PenaltyAccrualEngine. A bill gets one
+-- PENALTY row, on the first accrual date it is overdue, and one INTEREST row per accrual
+-- date while it is overdue; the unique keys make re-running an accrual date a no-op.
+-- bill_amount itself is never changed.
+CREATE TABLE bill_adjustments (
+    id BIGSERIAL PRIMARY KEY,
+    bill_id INTEGER NOT NULL REFERENCES bills(id) ON DELETE CASCADE,
+    adjustment_type VARCHAR(20) NOT NULL,
+    accrual_date DATE NOT NULL,
+    amount DECIMAL(10, 2) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uq_bill_adjustments_date UNIQUE (bill_id, adjustment_type, accrual_date)
+);
+
+CREATE UNIQUE INDEX uq_bill_adjustments_penalty ON bill_adjustments(bill_id) WHERE adjustment_type = 'PENALTY';
+CREATE INDEX idx_bill_adjustments_accrual_date ON bill_adjustments(accrual_date);
+
+-- =====================================================
+-- Tariff Tables
+-- =====================================================
+-- A schedule is in force for its customer class from effective_from until a newer
+-- schedule takes over. New versions are picked up by TariffService without a restart.
+CREATE TABLE tariff_schedules (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    customer_class VARCHAR(20) NOT NULL DEFAULT 'RESIDENTIAL',
+    version INTEGER NOT NULL,
+    effective_from DATE NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE (customer_class, version)
+);
+
+-- Each tier starts at lower_bound_kwh and ends where the next tier starts
+CREATE TABLE tariff_tiers (
+    schedule_id INTEGER NOT NULL REFERENCES tariff_schedules(id) ON DELETE CASCADE,
+    tier_number INTEGER NOT NULL,
+    lower_bound_kwh DECIMAL(10, 2) NOT NULL,
+    rate DECIMAL(10, 4) NOT NULL,
+    PRIMARY KEY (schedule_id, tier_number)
+);
+
+CREATE INDEX idx_tariff_schedules_class ON tariff_schedules(customer_class, effective_from);
 
 -- =====================================================
 -- Audit Log Table
@@ -110,6 +194,17 @@ INSERT INTO users (username, password, role, full_name, email) VALUES
 ('admin', 'admin123', 'Administrator', 'System Administrator', 'admin@lecbilling.ls'),
 ('staff', 'staff123', 'Staff', 'Staff Member', 'staff@lecbilling.ls');
 
+-- =====================================================
+-- Insert Default Tariff
+-- =====================================================
+INSERT INTO tariff_schedules (name, customer_class, version, effective_from) VALUES
+('Residential tariff 2024', 'RESIDENTIAL', 1, '2024-01-01');
+
+INSERT INTO tariff_tiers (schedule_id, tier_number, lower_bound_kwh, rate) VALUES
+(1, 1, 0, 1.20),
+(1, 2, 100, 1.50),
+(1, 3, 300, 2.00);
+
 -- =====================================================
 -- Insert Sample Customers
 -- =====================================================
@@ -163,10 +258,10 @@ SELECT
     c.meter_number,
     COUNT(b.id) as total_bills,
     SUM(CASE WHEN b.payment_status = 'PAID' THEN 1 ELSE 0 END) as paid_bills,
-    SUM(CASE WHEN b.payment_status = 'UNPAID' THEN 1 ELSE 0 END) as unpaid_bills,
+    SUM(CASE WHEN b.payment_status IN ('UNPAID', 'OVERDUE') THEN 1 ELSE 0 END) as unpaid_bills,
     SUM(b.bill_amount) as total_billed,
     SUM(CASE WHEN b.payment_status = 'PAID' THEN b.bill_amount ELSE 0 END) as total_paid,
-    SUM(CASE WHEN b.payment_status = 'UNPAID' THEN b.bill_amount ELSE 0 END) as total_outstanding
+    SUM(CASE WHEN b.payment_status IN ('UNPAID', 'OVERDUE') THEN b.bill_amount ELSE 0 END) as total_outstanding
 FROM customers c
 LEFT JOIN bills b ON c.id = b.customer_id
 WHERE c.is_active = TRUE
@@ -180,7 +275,7 @@ SELECT
     SUM(electricity_usage) as total_usage,
     SUM(bill_amount) as total_revenue,
     SUM(CASE WHEN payment_status = 'PAID' THEN bill_amount ELSE 0 END) as collected_revenue,
-    SUM(CASE WHEN payment_status = 'UNPAID' THEN bill_amount ELSE 0 END) as outstanding_revenue
+    SUM(CASE WHEN payment_status IN ('UNPAID', 'OVERDUE') THEN bill_amount ELSE 0 END) as outstanding_revenue
 FROM bills
 GROUP BY TO_CHAR(billing_period_start, 'YYYY-MM')
 ORDER BY month DESC;
@@ -206,6 +301,59 @@ CREATE TRIGGER update_customers_updated_at BEFORE UPDATE ON customers
 CREATE TRIGGER update_users_updated_at BEFORE UPDATE ON users
     FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
 
+-- Function to keep bill_totals in step with unpaid (UNPAID or OVERDUE) bills. Runs once
+-- per statement over its transition tables and applies the net change to the slot of the
+-- current transaction, so a bulk insert updates one bill_totals row once.
+CREATE OR REPLACE FUNCTION maintain_bill_totals()
+RETURNS TRIGGER AS $$
+DECLARE
+    count_delta BIGINT := 0;
+    amount_delta DECIMAL(14, 2) := 0;
+    part_count BIGINT;
+    part_amount DECIMAL(14, 2);
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        SELECT COUNT(*), COALESCE(SUM(bill_amount), 0) INTO part_count, part_amount
+          FROM old_bills WHERE payment_status IN ('UNPAID', 'OVERDUE');
+        count_delta := count_delta - part_count;
+        amount_delta := amount_delta - part_amount;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        SELECT COUNT(*), COALESCE(SUM(bill_amount), 0) INTO part_count, part_amount
+          FROM new_bills WHERE payment_status IN ('UNPAID', 'OVERDUE');
+        count_delta := count_delta + part_count;
+        amount_delta := amount_delta + part_amount;
+    END IF;
+    IF count_delta <> 0 OR amount_delta <> 0 THEN
+        UPDATE bill_totals
+           SET unpaid_count = unpaid_count + count_delta,
+               outstanding_amount = outstanding_amount + amount_delta
+         WHERE slot = txid_current() % 16;
+    END IF;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+-- Triggers for bills table. Transition tables allow only one event per trigger.
+CREATE TRIGGER maintain_bill_totals_insert AFTER INSERT ON bills
+    REFERENCING NEW TABLE AS new_bills
+    FOR EACH STATEMENT EXECUTE FUNCTION maintain_bill_totals();
+
+CREATE TRIGGER maintain_bill_totals_update AFTER UPDATE ON bills
+    REFERENCING OLD TABLE AS old_bills NEW TABLE AS new_bills
+    FOR EACH STATEMENT EXECUTE FUNCTION maintain_bill_totals();
+
+CREATE TRIGGER maintain_bill_totals_delete AFTER DELETE ON bills
+    REFERENCING OLD TABLE AS old_bills
+    FOR EACH STATEMENT EXECUTE FUNCTION maintain_bill_totals();
+
+-- Seed the totals from the bills inserted above
+INSERT INTO bill_totals (slot, unpaid_count, outstanding_amount)
+SELECT s.slot, COUNT(b.id), COALESCE(SUM(b.bill_amount), 0)
+FROM generate_series(0, 15) AS s(slot)
+LEFT JOIN bills b ON b.id % 16 = s.slot AND b.payment_status IN ('UNPAID', 'OVERDUE')
+GROUP BY s.slot;
+
 -- =====================================================
 -- Grant Permissions (adjust as needed)
 -- =====================================================